@@ -1,13 +1,24 @@
 package groundTruthExtractor;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -24,7 +35,10 @@ import org.junit.runner.Result;
 
 import groundTruthExtractor.tests.ExtractorTest;
 import utils.FileUtils;
+import utils.LineIntervalIndex;
+import utils.TraceFile;
 import utils.TraceIdUtils;
+import utils.TraceSink;
 
 /**
  * Extracting the ground truth from the jpp annotations
@@ -47,6 +61,11 @@ public class GroundTruthExtractor {
 	private static final String JPPELSE = "//#else";
 	private static final String JPPCOMMENT = "//#";
 
+	// Parse the files in parallel during the extraction
+	private static final boolean PARALLEL_EXTRACTION = true;
+	// Only parse the files that changed since the last extraction
+	private static final boolean INCREMENTAL_EXTRACTION = true;
+
 	/**
 	 * Go through all ArgoUML projects
 	 * 
@@ -55,12 +74,31 @@ public class GroundTruthExtractor {
 	public static void main(String[] args) {
 		System.out.println("ArgoUML SPL ground-truth extractor");
 
-		// Launch tests
-		JUnitCore junit = new JUnitCore();
-		Result result = junit.run(ExtractorTest.class);
-		if (result.getFailureCount() > 0) {
-			System.err.println("JUnit tests failed. Ground truth extraction cancelled.");
-			return;
+		File outputFolder = new File("groundTruth");
+		GroundTruthManifest manifest = null;
+		if (INCREMENTAL_EXTRACTION) {
+			manifest = GroundTruthManifest.load(new File(outputFolder, GroundTruthManifest.FILE_NAME));
+		}
+
+		// Launch tests if their inputs changed since the last extraction
+		String selfTestHash = null;
+		try {
+			selfTestHash = GroundTruthManifest.getSelfTestHash(new File("tests/groundTruthExtractor"));
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		if (manifest != null && selfTestHash != null && selfTestHash.equals(manifest.getSelfTestHash())) {
+			System.out.println("The inputs of the JUnit tests did not change. Tests skipped.");
+		} else {
+			JUnitCore junit = new JUnitCore();
+			Result result = junit.run(ExtractorTest.class);
+			if (result.getFailureCount() > 0) {
+				System.err.println("JUnit tests failed. Ground truth extraction cancelled.");
+				return;
+			}
+			if (manifest != null) {
+				manifest.setSelfTestHash(selfTestHash);
+			}
 		}
 
 		// the argoUML SPL projects must be imported in the workspace in the same parent
@@ -70,7 +108,11 @@ public class GroundTruthExtractor {
 		// get all relevant Java files
 		List<File> javaFiles = getAllArgoUMLSPLRelevantJavaFiles(argoUMLSPLContainingFolder);
 
-		extractGroundTruth(javaFiles, new File("groundTruth"));
+		if (manifest != null) {
+			extractGroundTruthIncrementally(javaFiles, outputFolder, manifest, PARALLEL_EXTRACTION);
+		} else {
+			extractGroundTruth(javaFiles, outputFolder, PARALLEL_EXTRACTION);
+		}
 	}
 
 	/**
@@ -109,36 +151,365 @@ public class GroundTruthExtractor {
 	 *            for the txt files of the groundtruth
 	 */
 	public static void extractGroundTruth(List<File> allJavaFiles, File outputFolder) {
+		extractGroundTruth(allJavaFiles, outputFolder, false);
+	}
+
+	/**
+	 * Extract groundTruth
+	 * 
+	 * @param allJavaFiles
+	 *            files with java extension
+	 * @param outputFolder
+	 *            for the txt files of the groundtruth
+	 * @param parallel
+	 *            true to parse the files in parallel. The txt files are the same
+	 *            in both modes.
+	 */
+	public static void extractGroundTruth(List<File> allJavaFiles, File outputFolder, boolean parallel) {
 
 		if (!outputFolder.exists()) {
 			outputFolder.mkdirs();
 		} else {
-			// clean groundTruth folder
-			System.out.println("Cleaning " + outputFolder.getAbsolutePath());
-			for (File f1 : outputFolder.listFiles()) {
-				if (f1.getName().endsWith(".txt")) {
-					System.out.println("Deleting " + f1.getAbsolutePath());
-					f1.delete();
-				}
-			}
+			cleanOutputFolder(outputFolder);
 		}
 
 		System.out.println("Ground-truth extraction started");
-		for (File f : allJavaFiles) {
-			Map<String, List<String>> map = parseFile(f);
+		long start = System.currentTimeMillis();
+		List<List<LineIntervalIndex.Block>> blocks = new ArrayList<List<LineIntervalIndex.Block>>();
+		List<Map<String, List<String>>> maps = parseFiles(allJavaFiles, parallel, blocks);
+		long endParsing = System.currentTimeMillis();
+
+		// merge following the order of the files so the txt files are the same
+		// in both modes
+		Map<String, List<String>> groundTruth = new LinkedHashMap<String, List<String>>();
+		for (Map<String, List<String>> map : maps) {
 			for (String feature : map.keySet()) {
-				File file = new File(outputFolder, feature + ".txt");
 				for (String id : map.get(feature)) {
-					try {
-						FileUtils.appendToFile(file, id);
-					} catch (Exception e) {
-						e.printStackTrace();
+					addMapping(groundTruth, feature, id);
+				}
+			}
+		}
+		writeGroundTruth(groundTruth, outputFolder);
+		writeLineIntervalIndex(blocks, outputFolder);
+		long end = System.currentTimeMillis();
+
+		System.out.println("Ground-truth extraction finished");
+		System.out.println("Feature traces at " + outputFolder.getAbsolutePath());
+		System.out.println("Time spent (ms): " + (end - start) + " (parsing: " + (endParsing - start) + ", writing: "
+				+ (end - endParsing) + ") for " + allJavaFiles.size() + " files"
+				+ (parallel ? " using " + Runtime.getRuntime().availableProcessors() + " threads" : ""));
+	}
+
+	/**
+	 * Extract groundTruth parsing only the files that were added or changed since
+	 * the extraction stored in the manifest. Only the txt files of the features
+	 * related to added, changed or deleted files, and the missing txt files, are
+	 * written again. The trace file is written with all the features. The result
+	 * is the same as a complete extraction.
+	 * 
+	 * @param allJavaFiles
+	 *            files with java extension
+	 * @param outputFolder
+	 *            for the txt files of the groundtruth
+	 * @param manifest
+	 *            of the previous extraction. It is updated and saved in the
+	 *            output folder.
+	 * @param parallel
+	 *            true to parse the files in parallel
+	 */
+	public static void extractGroundTruthIncrementally(List<File> allJavaFiles, File outputFolder,
+			GroundTruthManifest manifest, boolean parallel) {
+
+		if (!outputFolder.exists()) {
+			outputFolder.mkdirs();
+		} else if (manifest.isEmpty()) {
+			// nothing to reuse
+			cleanOutputFolder(outputFolder);
+		}
+
+		System.out.println("Incremental ground-truth extraction started");
+		long start = System.currentTimeMillis();
+
+		// find added and changed files. The content is only read if the size or
+		// the modification time changed
+		Set<String> affectedFeatures = new HashSet<String>();
+		Set<String> currentPaths = new HashSet<String>();
+		List<File> toParse = new ArrayList<File>();
+		List<String> toParseHashes = new ArrayList<String>();
+		for (File f : allJavaFiles) {
+			currentPaths.add(f.getPath());
+			GroundTruthManifest.Entry entry = manifest.get(f);
+			if (entry != null && entry.hasSameAttributes(f)) {
+				continue;
+			}
+			String hash = null;
+			try {
+				hash = FileUtils.getContentHash(f);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			if (entry != null && hash != null && hash.equals(entry.hash)) {
+				// touched but not modified
+				manifest.put(f, new GroundTruthManifest.Entry(f.length(), f.lastModified(), hash, entry.getTraces(),
+						entry.getBlocks()));
+				continue;
+			}
+			if (entry != null) {
+				affectedFeatures.addAll(entry.getTraces().keySet());
+			}
+			toParse.add(f);
+			toParseHashes.add(hash);
+		}
+
+		// deleted files
+		int deleted = 0;
+		for (String path : new ArrayList<String>(manifest.getPaths())) {
+			if (!currentPaths.contains(path)) {
+				affectedFeatures.addAll(manifest.remove(path).getTraces().keySet());
+				deleted++;
+			}
+		}
+
+		// txt files removed since the last extraction
+		for (File f : allJavaFiles) {
+			GroundTruthManifest.Entry entry = manifest.get(f);
+			if (entry != null) {
+				for (String feature : entry.getTraces().keySet()) {
+					if (!affectedFeatures.contains(feature) && !getTxtFile(outputFolder, feature).exists()) {
+						affectedFeatures.add(feature);
 					}
 				}
 			}
 		}
+
+		if (toParse.isEmpty() && deleted == 0 && affectedFeatures.isEmpty()) {
+			if (TraceFile.openIfUpToDate(outputFolder) == null) {
+				writeTraceFile(getGroundTruth(allJavaFiles, manifest), outputFolder);
+			}
+			if (!new File(outputFolder, LineIntervalIndex.FILE_NAME).exists()) {
+				writeLineIntervalIndex(allJavaFiles, manifest, outputFolder);
+			}
+			manifest.save(new File(outputFolder, GroundTruthManifest.FILE_NAME));
+			System.out.println("Ground truth is up to date. Time spent (ms): " + (System.currentTimeMillis() - start));
+			return;
+		}
+
+		List<List<LineIntervalIndex.Block>> blocks = new ArrayList<List<LineIntervalIndex.Block>>();
+		List<Map<String, List<String>>> maps = parseFiles(toParse, parallel, blocks);
+		for (int i = 0; i < toParse.size(); i++) {
+			File f = toParse.get(i);
+			manifest.put(f, new GroundTruthManifest.Entry(f.length(), f.lastModified(), toParseHashes.get(i),
+					maps.get(i), blocks.get(i)));
+			affectedFeatures.addAll(maps.get(i).keySet());
+		}
+		long endParsing = System.currentTimeMillis();
+
+		// create again the affected features following the order of the files
+		Map<String, List<String>> groundTruth = getGroundTruth(allJavaFiles, manifest);
+		Map<String, List<String>> affectedGroundTruth = new LinkedHashMap<String, List<String>>();
+		for (String feature : groundTruth.keySet()) {
+			if (affectedFeatures.contains(feature)) {
+				affectedGroundTruth.put(feature, groundTruth.get(feature));
+			}
+		}
+		for (String feature : affectedFeatures) {
+			if (!groundTruth.containsKey(feature)) {
+				// the feature does not have implementation elements anymore
+				File file = getTxtFile(outputFolder, feature);
+				System.out.println("Deleting " + file.getAbsolutePath());
+				file.delete();
+			}
+		}
+		writeTxtFiles(affectedGroundTruth, outputFolder);
+		writeTraceFile(groundTruth, outputFolder);
+		writeLineIntervalIndex(allJavaFiles, manifest, outputFolder);
+		manifest.save(new File(outputFolder, GroundTruthManifest.FILE_NAME));
+		long end = System.currentTimeMillis();
+
 		System.out.println("Ground-truth extraction finished");
 		System.out.println("Feature traces at " + outputFolder.getAbsolutePath());
+		System.out.println("Parsed " + toParse.size() + " added or changed files and removed " + deleted
+				+ " deleted files. Updated features: " + affectedGroundTruth.keySet());
+		System.out.println("Time spent (ms): " + (end - start) + " (parsing: " + (endParsing - start) + ", writing: "
+				+ (end - endParsing) + ") for " + allJavaFiles.size() + " files");
+	}
+
+	/**
+	 * Merge the implementation elements stored in the manifest following the
+	 * order of the files
+	 * 
+	 * @param allJavaFiles
+	 * @param manifest
+	 * @return map of features to implementation elements
+	 */
+	private static Map<String, List<String>> getGroundTruth(List<File> allJavaFiles, GroundTruthManifest manifest) {
+		Map<String, List<String>> groundTruth = new LinkedHashMap<String, List<String>>();
+		for (File f : allJavaFiles) {
+			Map<String, List<String>> map = manifest.get(f).getTraces();
+			for (String feature : map.keySet()) {
+				for (String id : map.get(feature)) {
+					addMapping(groundTruth, feature, id);
+				}
+			}
+		}
+		return groundTruth;
+	}
+
+	private static File getTxtFile(File outputFolder, String feature) {
+		return new File(outputFolder, feature + TraceSink.TXT_EXTENSION);
+	}
+
+	/**
+	 * Remove the txt files of a previous extraction
+	 * 
+	 * @param outputFolder
+	 */
+	private static void cleanOutputFolder(File outputFolder) {
+		// clean groundTruth folder
+		System.out.println("Cleaning " + outputFolder.getAbsolutePath());
+		for (File f1 : outputFolder.listFiles()) {
+			if (f1.getName().endsWith(".txt")) {
+				System.out.println("Deleting " + f1.getAbsolutePath());
+				f1.delete();
+			}
+		}
+	}
+
+	/**
+	 * Parse the files
+	 * 
+	 * @param javaFiles
+	 * @param parallel
+	 * @param blocks
+	 *            where the jpp blocks of each file are added in the order of the
+	 *            files
+	 * @return the maps of features to implementation elements in the order of
+	 *         the files
+	 */
+	private static List<Map<String, List<String>>> parseFiles(List<File> javaFiles, boolean parallel,
+			List<List<LineIntervalIndex.Block>> blocks) {
+		if (parallel) {
+			return parseFilesInParallel(javaFiles, blocks);
+		}
+		List<Map<String, List<String>>> maps = new ArrayList<Map<String, List<String>>>();
+		for (File f : javaFiles) {
+			List<LineIntervalIndex.Block> fileBlocks = new ArrayList<LineIntervalIndex.Block>();
+			maps.add(parseFile(f, System.out, fileBlocks));
+			blocks.add(fileBlocks);
+		}
+		return maps;
+	}
+
+	/**
+	 * Parse the files using all the available processors. The console output of
+	 * each file is buffered and printed in the same order as the sequential
+	 * extraction.
+	 * 
+	 * @param javaFiles
+	 * @param blocks
+	 *            where the jpp blocks of each file are added in the order of the
+	 *            files
+	 * @return the maps of features to implementation elements in the order of
+	 *         the files
+	 */
+	private static List<Map<String, List<String>>> parseFilesInParallel(List<File> javaFiles,
+			List<List<LineIntervalIndex.Block>> blocks) {
+		ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		List<Future<Map<String, List<String>>>> futures = new ArrayList<Future<Map<String, List<String>>>>();
+		List<ByteArrayOutputStream> logs = new ArrayList<ByteArrayOutputStream>();
+		for (File javaFile : javaFiles) {
+			ByteArrayOutputStream log = new ByteArrayOutputStream();
+			logs.add(log);
+			List<LineIntervalIndex.Block> fileBlocks = new ArrayList<LineIntervalIndex.Block>();
+			blocks.add(fileBlocks);
+			futures.add(executor.submit(() -> {
+				PrintStream out = new PrintStream(log);
+				Map<String, List<String>> map = parseFile(javaFile, out, fileBlocks);
+				out.flush();
+				return map;
+			}));
+		}
+		List<Map<String, List<String>>> maps = new ArrayList<Map<String, List<String>>>();
+		try {
+			for (int i = 0; i < futures.size(); i++) {
+				maps.add(futures.get(i).get());
+				System.out.print(logs.get(i).toString());
+				logs.set(i, null);
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			throw new RuntimeException("Ground-truth extraction failed", e);
+		} finally {
+			executor.shutdownNow();
+		}
+		return maps;
+	}
+
+	/**
+	 * Write the txt file of each feature (see TraceSink) and the trace file with
+	 * all of them (see TraceFile). Each file is opened only once.
+	 * 
+	 * @param groundTruth
+	 *            map of features to implementation elements
+	 * @param outputFolder
+	 */
+	public static void writeGroundTruth(Map<String, List<String>> groundTruth, File outputFolder) {
+		writeTxtFiles(groundTruth, outputFolder);
+		// after the txt files so it is up to date
+		writeTraceFile(groundTruth, outputFolder);
+	}
+
+	private static void writeTxtFiles(Map<String, List<String>> groundTruth, File outputFolder) {
+		try (TraceSink sink = new TraceSink(outputFolder)) {
+			for (String feature : groundTruth.keySet()) {
+				sink.write(feature, groundTruth.get(feature));
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private static void writeTraceFile(Map<String, List<String>> groundTruth, File outputFolder) {
+		try {
+			TraceFile.write(new File(outputFolder, TraceFile.FILE_NAME), groundTruth);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Write the line-level ground truth (see LineIntervalIndex)
+	 * 
+	 * @param blocks
+	 *            jpp blocks of each file
+	 * @param outputFolder
+	 */
+	public static void writeLineIntervalIndex(List<List<LineIntervalIndex.Block>> blocks, File outputFolder) {
+		List<LineIntervalIndex.Block> allBlocks = new ArrayList<LineIntervalIndex.Block>();
+		for (List<LineIntervalIndex.Block> fileBlocks : blocks) {
+			allBlocks.addAll(fileBlocks);
+		}
+		try {
+			new LineIntervalIndex(allBlocks).write(new File(outputFolder, LineIntervalIndex.FILE_NAME));
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Write the line-level ground truth with the jpp blocks stored in the
+	 * manifest
+	 * 
+	 * @param allJavaFiles
+	 * @param manifest
+	 * @param outputFolder
+	 */
+	private static void writeLineIntervalIndex(List<File> allJavaFiles, GroundTruthManifest manifest,
+			File outputFolder) {
+		List<List<LineIntervalIndex.Block>> blocks = new ArrayList<List<LineIntervalIndex.Block>>();
+		for (File f : allJavaFiles) {
+			blocks.add(manifest.get(f).getBlocks());
+		}
+		writeLineIntervalIndex(blocks, outputFolder);
 	}
 
 	/**
@@ -148,6 +519,132 @@ public class GroundTruthExtractor {
 	 * @return a map of features to implementation elements
 	 */
 	public static Map<String, List<String>> parseFile(File javaFile) {
+		return parseFile(javaFile, System.out);
+	}
+
+	/**
+	 * Parse a java file to get variability info
+	 * 
+	 * @param javaFile
+	 * @param out
+	 *            where the extraction information is printed
+	 * @return a map of features to implementation elements
+	 */
+	public static Map<String, List<String>> parseFile(File javaFile, PrintStream out) {
+		return parseFile(javaFile, out, null);
+	}
+
+	/**
+	 * Parse a java file to get variability info
+	 * 
+	 * @param javaFile
+	 * @param out
+	 *            where the extraction information is printed
+	 * @param blocks
+	 *            where the jpp blocks of the file are added, it can be null
+	 * @return a map of features to implementation elements
+	 */
+	public static Map<String, List<String>> parseFile(File javaFile, PrintStream out,
+			List<LineIntervalIndex.Block> blocks) {
+		// Pre-scan: the AST is only needed if the file contains jpp comments
+		byte[] content;
+		try {
+			content = Files.readAllBytes(javaFile.toPath());
+		} catch (IOException e) {
+			e.printStackTrace();
+			return parseFileWithAST(javaFile, out, blocks);
+		}
+		if (containsJPPComment(content)) {
+			return parseFileWithAST(javaFile, out, blocks);
+		}
+		out.println("########################");
+		out.println(javaFile.getAbsolutePath());
+		int coreLines = getLinesOfCodeWithoutJPPComments(content);
+		if (coreLines > 0) {
+			out.println("LoC_info;CORE;" + coreLines + ";" + javaFile.getName());
+		}
+		return new HashMap<String, List<String>>();
+	}
+
+	/**
+	 * Check if the content of a file contains the jpp comment marker
+	 * 
+	 * @param content
+	 *            bytes of the file
+	 * @return true if the marker is found
+	 */
+	public static boolean containsJPPComment(byte[] content) {
+		byte[] marker = JPPCOMMENT.getBytes(StandardCharsets.US_ASCII);
+		int last = content.length - marker.length;
+		for (int i = 0; i <= last; i++) {
+			if (content[i] == marker[0] && content[i + 1] == marker[1] && content[i + 2] == marker[2]) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Same as getLinesOfCode(source, true) for the content of a file without jpp
+	 * comments but counting directly on the bytes.
+	 * 
+	 * @param content
+	 *            bytes of the file
+	 * @return the number of lines
+	 */
+	public static int getLinesOfCodeWithoutJPPComments(byte[] content) {
+		byte[] granularity = GRANULARITY.getBytes(StandardCharsets.US_ASCII);
+		int counter = 0;
+		int i = 0;
+		while (i < content.length) {
+			// skip the whitespaces in the beginning of the line
+			while (i < content.length && content[i] != '\n' && content[i] != '\r' && (content[i] & 0xFF) <= ' ') {
+				i++;
+			}
+			if (i < content.length && content[i] != '\n' && content[i] != '\r') {
+				// not empty, ignore granularity comments
+				boolean isGranularity = i + granularity.length <= content.length;
+				for (int j = 0; isGranularity && j < granularity.length; j++) {
+					isGranularity = content[i + j] == granularity[j];
+				}
+				if (!isGranularity) {
+					counter++;
+				}
+				// go to the end of the line
+				while (i < content.length && content[i] != '\n' && content[i] != '\r') {
+					i++;
+				}
+			}
+			// skip the line separator
+			i++;
+		}
+		return counter;
+	}
+
+	/**
+	 * Parse a java file with the JDT parser to get variability info
+	 * 
+	 * @param javaFile
+	 * @param out
+	 *            where the extraction information is printed
+	 * @return a map of features to implementation elements
+	 */
+	static Map<String, List<String>> parseFileWithAST(File javaFile, PrintStream out) {
+		return parseFileWithAST(javaFile, out, null);
+	}
+
+	/**
+	 * Parse a java file with the JDT parser to get variability info
+	 * 
+	 * @param javaFile
+	 * @param out
+	 *            where the extraction information is printed
+	 * @param blocks
+	 *            where the jpp blocks of the file are added, it can be null
+	 * @return a map of features to implementation elements
+	 */
+	static Map<String, List<String>> parseFileWithAST(File javaFile, PrintStream out,
+			List<LineIntervalIndex.Block> blocks) {
 
 		// This is a stack because we can have #ifdefined(A) for the class and
 		// then #ifdefined(B) for the method
@@ -167,12 +664,18 @@ public class GroundTruthExtractor {
 
 		// Get the AST
 		CompilationUnit cu = (CompilationUnit) parser.createAST(null);
-		System.out.println("########################");
-		System.out.println(javaFile.getAbsolutePath());
+		out.println("########################");
+		out.println(javaFile.getAbsolutePath());
 
 		// Empty list of already added refinements
 		cuRefinements.clear();
 
+		// path of the file from its package root for the line-level ground truth
+		String path = javaFile.getName();
+		if (cu.getPackage() != null) {
+			path = cu.getPackage().getName().getFullyQualifiedName().replace('.', '/') + "/" + path;
+		}
+
 		// Get a list of methods
 		List<MethodDeclaration> methods = getMethods(cu);
 		List<String> currentFeatures = new ArrayList<String>();
@@ -182,7 +685,7 @@ public class GroundTruthExtractor {
 		// cu.toString does not include comments
 		int coreLines = getLinesOfCode(source, true);
 		if (coreLines > 0) {
-			System.out.println("LoC_info;CORE;" + coreLines + ";" + javaFile.getName());
+			out.println("LoC_info;CORE;" + coreLines + ";" + javaFile.getName());
 		}
 		for (LineComment node : jppComments) {
 			int start = node.getStartPosition();
@@ -192,27 +695,31 @@ public class GroundTruthExtractor {
 			// End of block
 			if (comment.startsWith(JPPENDIF) || comment.startsWith(JPPELIFDEFINED) || comment.startsWith(JPPELSE)) {
 				// We finished a block
-				System.out.println("--------");
-				System.out.println("Features: " + currentBlockFeatures);
+				out.println("--------");
+				out.println("Features: " + currentBlockFeatures);
 				String blockText = source.substring(currentBlockStart.peek(), end);
 				String granularity = getJPPGranularity(blockText);
 				if (granularity == null) {
 					granularity = "Undefined";
 				}
-				System.out.println("Granularity: " + granularity);
-				// System.out.println(blockText);
+				out.println("Granularity: " + granularity);
+				// out.println(blockText);
+				if (blocks != null) {
+					blocks.add(new LineIntervalIndex.Block(path, currentBlockStart.peek(), end,
+							cu.getLineNumber(currentBlockStart.peek()), cu.getLineNumber(start), currentFeatures));
+				}
 
 				for (String feature : currentFeatures) {
 					try {
 						// print loc info, and then we print the id
-						System.out.print("LoC_info;" + feature + ";" + getLinesOfCode(blockText, false) + ";"
+						out.print("LoC_info;" + feature + ";" + getLinesOfCode(blockText, false) + ";"
 								+ currentBlockFeatures + ";");
 						if (granularity.equals(GRANULARITY_PACKAGE) || granularity.equals(GRANULARITY_CLASS)) {
 							List<?> types = cu.types();
 							for (Object type : types) {
 								String id = TraceIdUtils.getId((TypeDeclaration) type);
 								addMapping(featureToImplementationMap, feature, id);
-								System.out.println(id);
+								out.println(id);
 							}
 						} else if (granularity.equals(GRANULARITY_METHOD) || granularity.equals(GRANULARITY_INTERFACEMETHOD)) {
 							List<MethodDeclaration> wrappingMethods = getWrappingMethods(methods,
@@ -221,7 +728,7 @@ public class GroundTruthExtractor {
 								for (MethodDeclaration method : wrappingMethods) {
 									String id = TraceIdUtils.getId(method);
 									addMapping(featureToImplementationMap, feature, id);
-									System.out.println(id);
+									out.println(id);
 								}
 							} else {
 								System.err.println("Should not happen");
@@ -237,7 +744,7 @@ public class GroundTruthExtractor {
 									cuRefinements.add(feature + " " + id);
 									addMapping(featureToImplementationMap, feature, id);
 								}
-								System.out.println(id);
+								out.println(id);
 							} else {
 								// it is somewhere in the class (import,
 								// variable etc.)
@@ -248,7 +755,7 @@ public class GroundTruthExtractor {
 										cuRefinements.add(feature + " " + id);
 										addMapping(featureToImplementationMap, feature, id);
 									}
-									System.out.println(id);
+									out.println(id);
 								}
 							}
 						}
@@ -0,0 +1,75 @@
+package groundTruthExtractor;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.Map;
+
+import utils.FileUtils;
+
+/**
+ * Compare the time of parsing all the files with the JDT parser against the
+ * pre-scan that only parses the files containing jpp comments. It uses the
+ * argouml-app project.
+ * 
+ * @author jabier.martinez
+ */
+public class GroundTruthExtractorBenchmark {
+
+	private static final int WARMUP_ITERATIONS = 1;
+	private static final int ITERATIONS = 3;
+
+	public static void main(String[] args) {
+		List<File> javaFiles = FileUtils.getAllJavaFilesIgnoringStagingFolder(new File("../argouml-app"));
+		PrintStream out = new PrintStream(new OutputStream() {
+			@Override
+			public void write(int b) {
+				// ignore the extraction information
+			}
+		});
+
+		int annotatedFiles = 0;
+		for (File javaFile : javaFiles) {
+			Map<String, List<String>> withAST = GroundTruthExtractor.parseFileWithAST(javaFile, out);
+			Map<String, List<String>> withPreScan = GroundTruthExtractor.parseFile(javaFile, out);
+			if (!withAST.equals(withPreScan)) {
+				System.err.println("Different results for " + javaFile.getAbsolutePath());
+				return;
+			}
+			if (!withAST.isEmpty()) {
+				annotatedFiles++;
+			}
+		}
+		System.out.println(javaFiles.size() + " files in argouml-app, " + annotatedFiles
+				+ " with implementation elements of features");
+
+		for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+			parseAll(javaFiles, out, false);
+			parseAll(javaFiles, out, true);
+		}
+		long ast = 0;
+		long preScan = 0;
+		for (int i = 0; i < ITERATIONS; i++) {
+			ast += parseAll(javaFiles, out, false);
+			preScan += parseAll(javaFiles, out, true);
+		}
+		ast = ast / ITERATIONS;
+		preScan = preScan / ITERATIONS;
+		System.out.println("JDT parsing of all files (ms): " + ast);
+		System.out.println("Pre-scan and JDT parsing of files with jpp comments (ms): " + preScan);
+		System.out.println("Reduction: " + (100 - (preScan * 100 / Math.max(ast, 1))) + "%");
+	}
+
+	private static long parseAll(List<File> javaFiles, PrintStream out, boolean preScan) {
+		long start = System.currentTimeMillis();
+		for (File javaFile : javaFiles) {
+			if (preScan) {
+				GroundTruthExtractor.parseFile(javaFile, out);
+			} else {
+				GroundTruthExtractor.parseFileWithAST(javaFile, out);
+			}
+		}
+		return System.currentTimeMillis() - start;
+	}
+}
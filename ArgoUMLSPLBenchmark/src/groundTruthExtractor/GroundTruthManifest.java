@@ -0,0 +1,292 @@
+package groundTruthExtractor;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import groundTruthExtractor.tests.ExtractorTest;
+import utils.FileUtils;
+import utils.LineIntervalIndex;
+import utils.TraceIdUtils;
+
+/**
+ * Persistent information of a previous ground-truth extraction. For each Java
+ * file it stores the path, size, last modification time, content hash and the
+ * feature to implementation elements map and the jpp blocks (see
+ * LineIntervalIndex) produced by the file. It also stores
+ * the hash of the extractor itself and of the inputs of the extractor tests so
+ * we know when the stored information is not valid anymore.
+ * 
+ * @author jabier.martinez
+ */
+public class GroundTruthManifest {
+
+	public static final String FILE_NAME = "extraction.manifest";
+
+	private static final String SEPARATOR = "\t";
+	private static final String EXTRACTOR = "extractor";
+	private static final String SELFTEST = "selftest";
+	private static final String FILE = "file";
+	private static final String TRACE = "trace";
+	private static final String BLOCK = "block";
+
+	// classes used during the extraction, their nested and anonymous classes
+	// are also hashed
+	private static final Class<?>[] EXTRACTOR_CLASSES = { GroundTruthExtractor.class, GroundTruthManifest.class,
+			TraceIdUtils.class, LineIntervalIndex.class, FileUtils.class };
+
+	private String extractorHash = null;
+	private String selfTestHash = null;
+	private Map<String, Entry> entries = new LinkedHashMap<String, Entry>();
+
+	/**
+	 * Information of one Java file
+	 */
+	public static class Entry {
+		long size;
+		long lastModified;
+		String hash;
+		Map<String, List<String>> traces;
+		List<LineIntervalIndex.Block> blocks;
+
+		public Entry(long size, long lastModified, String hash, Map<String, List<String>> traces,
+				List<LineIntervalIndex.Block> blocks) {
+			this.size = size;
+			this.lastModified = lastModified;
+			this.hash = hash;
+			this.traces = traces;
+			this.blocks = blocks;
+		}
+
+		public Map<String, List<String>> getTraces() {
+			return traces;
+		}
+
+		public List<LineIntervalIndex.Block> getBlocks() {
+			return blocks;
+		}
+
+		/**
+		 * Check the size and the modification time of the file. It does not read
+		 * the content.
+		 * 
+		 * @param javaFile
+		 * @return whether the file looks the same as when it was extracted
+		 */
+		public boolean hasSameAttributes(File javaFile) {
+			return size == javaFile.length() && lastModified == javaFile.lastModified();
+		}
+	}
+
+	/**
+	 * Load a manifest. If the file does not exist or it was created by another
+	 * version of the extractor, an empty manifest is returned.
+	 * 
+	 * @param manifestFile
+	 * @return the manifest
+	 */
+	public static GroundTruthManifest load(File manifestFile) {
+		GroundTruthManifest manifest = new GroundTruthManifest(getExtractorHash());
+		if (!manifestFile.exists()) {
+			return manifest;
+		}
+		if (manifest.extractorHash == null) {
+			System.out.println("The classes of the extractor cannot be read. Manifest ignored.");
+			return manifest;
+		}
+		Map<String, List<String>> currentTraces = null;
+		List<LineIntervalIndex.Block> currentBlocks = null;
+		for (String line : FileUtils.getLinesOfFile(manifestFile)) {
+			String[] parts = line.split(SEPARATOR);
+			if (parts[0].equals(EXTRACTOR)) {
+				if (!parts[1].equals(manifest.extractorHash)) {
+					System.out.println("The extractor changed since the last extraction. Manifest ignored.");
+					return new GroundTruthManifest(manifest.extractorHash);
+				}
+			} else if (parts[0].equals(SELFTEST)) {
+				manifest.selfTestHash = parts[1];
+			} else if (parts[0].equals(FILE)) {
+				currentTraces = new LinkedHashMap<String, List<String>>();
+				currentBlocks = new ArrayList<LineIntervalIndex.Block>();
+				manifest.entries.put(parts[1], new Entry(Long.parseLong(parts[2]), Long.parseLong(parts[3]), parts[4],
+						currentTraces, currentBlocks));
+			} else if (parts[0].equals(TRACE)) {
+				GroundTruthExtractor.addMapping(currentTraces, parts[1], parts[2]);
+			} else if (parts[0].equals(BLOCK)) {
+				currentBlocks.add(LineIntervalIndex.Block.parse(line.substring(BLOCK.length() + SEPARATOR.length())));
+			}
+		}
+		return manifest;
+	}
+
+	private GroundTruthManifest(String extractorHash) {
+		this.extractorHash = extractorHash;
+	}
+
+	/**
+	 * Save the manifest
+	 * 
+	 * @param manifestFile
+	 */
+	public void save(File manifestFile) {
+		if (extractorHash == null) {
+			// it could not be validated when loaded
+			manifestFile.delete();
+			return;
+		}
+		try (BufferedWriter output = new BufferedWriter(new FileWriter(manifestFile, false))) {
+			output.append(EXTRACTOR + SEPARATOR + extractorHash);
+			output.newLine();
+			if (selfTestHash != null) {
+				output.append(SELFTEST + SEPARATOR + selfTestHash);
+				output.newLine();
+			}
+			for (String path : entries.keySet()) {
+				Entry entry = entries.get(path);
+				output.append(FILE + SEPARATOR + path + SEPARATOR + entry.size + SEPARATOR + entry.lastModified
+						+ SEPARATOR + entry.hash);
+				output.newLine();
+				for (String feature : entry.traces.keySet()) {
+					for (String id : entry.traces.get(feature)) {
+						output.append(TRACE + SEPARATOR + feature + SEPARATOR + id);
+						output.newLine();
+					}
+				}
+				for (LineIntervalIndex.Block block : entry.blocks) {
+					output.append(BLOCK + SEPARATOR + block);
+					output.newLine();
+				}
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+
+	public boolean isEmpty() {
+		return entries.isEmpty();
+	}
+
+	public Entry get(File javaFile) {
+		return entries.get(javaFile.getPath());
+	}
+
+	public void put(File javaFile, Entry entry) {
+		entries.put(javaFile.getPath(), entry);
+	}
+
+	public Entry remove(String path) {
+		return entries.remove(path);
+	}
+
+	public Set<String> getPaths() {
+		return Collections.unmodifiableSet(entries.keySet());
+	}
+
+	public String getSelfTestHash() {
+		return selfTestHash;
+	}
+
+	public void setSelfTestHash(String selfTestHash) {
+		this.selfTestHash = selfTestHash;
+	}
+
+	/**
+	 * Hash of the inputs of the extractor tests: the java files used as input,
+	 * the compiled tests and the compiled extractor.
+	 * 
+	 * @param testsFolder
+	 *            folder with the java files used as input of the tests
+	 * @return the hash
+	 * @throws IOException
+	 */
+	public static String getSelfTestHash(File testsFolder) throws IOException {
+		String extractorHash = getExtractorHash();
+		String testHash = getClassHash(ExtractorTest.class);
+		if (extractorHash == null || testHash == null) {
+			throw new IOException("The classes of the extractor or of the tests cannot be read");
+		}
+		List<File> testFiles = FileUtils.getAllJavaFiles(testsFolder);
+		Collections.sort(testFiles);
+		StringBuilder hashes = new StringBuilder(extractorHash);
+		hashes.append(testHash);
+		for (File testFile : testFiles) {
+			hashes.append(testFile.getName());
+			hashes.append(FileUtils.getContentHash(testFile));
+		}
+		return FileUtils.getContentHash(new ByteArrayInputStream(hashes.toString().getBytes(StandardCharsets.UTF_8)));
+	}
+
+	/**
+	 * Hash of the compiled classes that create the traces and the manifest
+	 * 
+	 * @return the hash or null if a class cannot be read, so nothing stored can
+	 *         be reused
+	 */
+	private static String getExtractorHash() {
+		StringBuilder hashes = new StringBuilder();
+		for (Class<?> c : EXTRACTOR_CLASSES) {
+			String hash = getClassHash(c);
+			if (hash == null) {
+				return null;
+			}
+			hashes.append(hash);
+		}
+		try {
+			return FileUtils
+					.getContentHash(new ByteArrayInputStream(hashes.toString().getBytes(StandardCharsets.UTF_8)));
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * Hash of a compiled class with its nested and anonymous classes
+	 * 
+	 * @param c
+	 * @return the hash or null if a class file cannot be read
+	 */
+	private static String getClassHash(Class<?> c) {
+		// name of the class file relative to the package, e.g. Outer$Inner
+		String name = c.getName().substring(c.getName().lastIndexOf('.') + 1);
+		StringBuilder hashes = new StringBuilder();
+		try {
+			try (InputStream in = c.getResourceAsStream(name + ".class")) {
+				if (in == null) {
+					return null;
+				}
+				hashes.append(FileUtils.getContentHash(in));
+			}
+			// anonymous classes are numbered from 1 without gaps
+			for (int i = 1;; i++) {
+				try (InputStream in = c.getResourceAsStream(name + "$" + i + ".class")) {
+					if (in == null) {
+						break;
+					}
+					hashes.append(FileUtils.getContentHash(in));
+				}
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+		for (Class<?> nested : c.getDeclaredClasses()) {
+			String hash = getClassHash(nested);
+			if (hash == null) {
+				return null;
+			}
+			hashes.append(hash);
+		}
+		return hashes.toString();
+	}
+}
@@ -0,0 +1,172 @@
+package metricsCalculation;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+import utils.FileUtils;
+
+/**
+ * Metrics calculation of all the scenarios. Each folder inside yourResults is
+ * the result of one scenario. The ground-truth is loaded once and the scenarios
+ * are calculated in parallel. The results of all the scenarios are written in
+ * one csv file and one json file.
+ * 
+ * @author jabier.martinez
+ */
+public class BatchMetricsCalculation {
+
+	private static final String RESULTS_FILE_NAME = "resultPrecisionRecallAllScenarios";
+
+	public static void main(String[] args) {
+		System.out.println("Batch metrics calculation");
+		File groundTruth = new File("groundTruth");
+		File yourResults = new File("yourResults");
+		File yourResultsMetrics = new File("yourResultsMetrics");
+
+		List<File> scenarioFolders = new ArrayList<File>();
+		for (File f : yourResults.listFiles()) {
+			if (f.isDirectory()) {
+				scenarioFolders.add(f);
+			}
+		}
+		File[] sorted = scenarioFolders.toArray(new File[scenarioFolders.size()]);
+		Arrays.sort(sorted);
+
+		long start = System.currentTimeMillis();
+		List<MetricsResults> results = calculate(GroundTruth.load(groundTruth), Arrays.asList(sorted));
+		System.out.println(results.size() + " scenarios calculated in " + (System.currentTimeMillis() - start) + " ms");
+
+		yourResultsMetrics.mkdirs();
+		try {
+			FileUtils.writeFile(new File(yourResultsMetrics, RESULTS_FILE_NAME + ".csv"), toCsv(results));
+			FileUtils.writeFile(new File(yourResultsMetrics, RESULTS_FILE_NAME + ".json"), toJson(results));
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+		System.out.println("Results files created in " + yourResultsMetrics.getAbsolutePath());
+	}
+
+	/**
+	 * Calculate the metrics of several retrieved folders in parallel
+	 * 
+	 * @param groundTruth
+	 *            the actual values, shared by all the calculations
+	 * @param retrievedFolders
+	 * @return the results in the same order as the retrieved folders
+	 * @throws RuntimeException
+	 *             naming the retrieved folder whose calculation failed
+	 */
+	public static List<MetricsResults> calculate(final GroundTruth groundTruth, List<File> retrievedFolders) {
+		List<MetricsResults> results = new ArrayList<MetricsResults>();
+		int threads = Math.max(1, Math.min(retrievedFolders.size(), Runtime.getRuntime().availableProcessors()));
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<MetricsResults>> futures = new ArrayList<Future<MetricsResults>>();
+			for (final File retrievedFolder : retrievedFolders) {
+				futures.add(executor.submit(new Callable<MetricsResults>() {
+					@Override
+					public MetricsResults call() {
+						return MetricsCalculation.calculate(groundTruth, retrievedFolder);
+					}
+				}));
+			}
+			for (int i = 0; i < futures.size(); i++) {
+				try {
+					results.add(futures.get(i).get());
+				} catch (ExecutionException e) {
+					throw new RuntimeException("Metrics calculation failed for " + retrievedFolders.get(i), e.getCause());
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Metrics calculation interrupted", e);
+		} finally {
+			executor.shutdownNow();
+		}
+		return results;
+	}
+
+	/**
+	 * One row per scenario and actual feature and one row per scenario with the
+	 * averages
+	 * 
+	 * @param results
+	 * @return csv content
+	 */
+	public static String toCsv(List<MetricsResults> results) {
+		StringBuilder content = new StringBuilder();
+		content.append("Scenario,Name,Precision,Recall,FScore,FeaturesWithoutRetrieved,InexistentFeaturesRetrieved\n");
+		for (MetricsResults metricsResults : results) {
+			for (String feature : metricsResults.getFeatureMetrics().keySet()) {
+				content.append(metricsResults.getName() + ",");
+				MetricsResults.appendRow(content, feature, metricsResults.getFeatureMetrics().get(feature));
+			}
+			content.append(metricsResults.getName() + ",Average,");
+			content.append(MetricsResults.getValueOrZero(metricsResults.getPrecisionAverage()) + ",");
+			content.append(MetricsResults.getValueOrZero(metricsResults.getRecallAverage()) + ",");
+			content.append(MetricsResults.getValueOrZero(metricsResults.getF1Average()) + ",");
+			content.append(metricsResults.getFailedToRetrieve() + ",");
+			content.append(metricsResults.getInexistentFeatures().size() + "\n");
+		}
+		return content.toString();
+	}
+
+	/**
+	 * Json with the averages, the features and the inexistent features of each
+	 * scenario
+	 * 
+	 * @param results
+	 * @return json content
+	 */
+	public static String toJson(List<MetricsResults> results) {
+		JsonArray scenarios = new JsonArray();
+		for (MetricsResults metricsResults : results) {
+			JsonObject scenario = new JsonObject();
+			scenario.addProperty("name", metricsResults.getName());
+			scenario.addProperty("precision", getValueOrZero(metricsResults.getPrecisionAverage()));
+			scenario.addProperty("recall", getValueOrZero(metricsResults.getRecallAverage()));
+			scenario.addProperty("fscore", getValueOrZero(metricsResults.getF1Average()));
+			scenario.addProperty("featuresWithoutRetrieved", metricsResults.getFailedToRetrieve());
+			JsonArray inexistent = new JsonArray();
+			for (String feature : metricsResults.getInexistentFeatures()) {
+				inexistent.add(new JsonPrimitive(feature));
+			}
+			scenario.add("inexistentFeaturesRetrieved", inexistent);
+			JsonArray features = new JsonArray();
+			for (String feature : metricsResults.getFeatureMetrics().keySet()) {
+				FeatureMetrics metrics = metricsResults.getFeatureMetrics().get(feature);
+				JsonObject featureObject = new JsonObject();
+				featureObject.addProperty("name", feature);
+				featureObject.addProperty("precision", getValueOrZero(metrics.getPrecision()));
+				featureObject.addProperty("recall", getValueOrZero(metrics.getRecall()));
+				featureObject.addProperty("fscore", getValueOrZero(metrics.getF1()));
+				featureObject.addProperty("actual", metrics.getActual());
+				featureObject.addProperty("retrieved", metrics.getRetrieved());
+				featureObject.addProperty("truePositives", metrics.getTruePositives());
+				features.add(featureObject);
+			}
+			scenario.add("features", features);
+			scenarios.add(scenario);
+		}
+		return new GsonBuilder().setPrettyPrinting().create().toJson(scenarios);
+	}
+
+	private static double getValueOrZero(double value) {
+		if (Double.isNaN(value)) {
+			return 0;
+		}
+		return value;
+	}
+}
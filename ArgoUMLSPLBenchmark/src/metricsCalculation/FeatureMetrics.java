@@ -0,0 +1,223 @@
+package metricsCalculation;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Precision and recall of the retrieved traces of one feature. The true
+ * positives, false positives and actual traces are counted in one pass and
+ * separately for each granularity of the traces.
+ * 
+ * Repeated lines are counted as many times as they appear, as in the previous
+ * list based calculation, so the metrics are the same.
+ * 
+ * @author jabier.martinez
+ */
+public class FeatureMetrics {
+
+	/**
+	 * Granularity of a trace. LINE is the granularity of the line-level metrics
+	 * (see LineIntervalIndex), a trace is never a LINE.
+	 */
+	public enum Granularity {
+		CLASS("Class"), METHOD("Method"), REFINEMENT("Refinement"), LINE("Line");
+
+		private static final String REFINEMENT_SUFFIX = " Refinement";
+
+		private final String name;
+
+		private Granularity(String name) {
+			this.name = name;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * Get the granularity of a trace. For example org.argouml.x.Y is a Class,
+		 * org.argouml.x.Y m(String) is a Method and org.argouml.x.Y Refinement or
+		 * org.argouml.x.Y m(String) Refinement are a Refinement
+		 * 
+		 * @param trace
+		 * @return the granularity
+		 */
+		public static Granularity of(String trace) {
+			if (trace.endsWith(REFINEMENT_SUFFIX)) {
+				return REFINEMENT;
+			}
+			if (trace.indexOf(' ') != -1) {
+				return METHOD;
+			}
+			return CLASS;
+		}
+	}
+
+	private final int[] actual = new int[Granularity.values().length];
+	private final int[] retrieved = new int[Granularity.values().length];
+	private final int[] truePositives = new int[Granularity.values().length];
+
+	private FeatureMetrics() {
+	}
+
+	/**
+	 * Calculate the metrics of one feature
+	 * 
+	 * @param actualLines
+	 * @param retrievedLines
+	 * @return the metrics
+	 */
+	public static FeatureMetrics calculate(List<String> actualLines, List<String> retrievedLines) {
+		return calculate(new HashSet<String>(actualLines), actualLines, retrievedLines);
+	}
+
+	/**
+	 * Calculate the metrics of one feature when the set of actual lines is
+	 * already available
+	 * 
+	 * @param actualSet
+	 *            the actual lines without repetitions
+	 * @param actualLines
+	 * @param retrievedLines
+	 * @return the metrics
+	 */
+	public static FeatureMetrics calculate(Set<String> actualSet, Collection<String> actualLines,
+			Collection<String> retrievedLines) {
+		FeatureMetrics metrics = new FeatureMetrics();
+		for (String a : actualLines) {
+			metrics.actual[Granularity.of(a).ordinal()]++;
+		}
+		for (String r : retrievedLines) {
+			int granularity = Granularity.of(r).ordinal();
+			metrics.retrieved[granularity]++;
+			if (actualSet.contains(r)) {
+				metrics.truePositives[granularity]++;
+			}
+		}
+		return metrics;
+	}
+
+	/**
+	 * Calculate the metrics of one feature with the ids of a trace dictionary
+	 * 
+	 * @param actualIds
+	 *            sorted ids of the actual lines
+	 * @param retrievedIds
+	 *            sorted ids of the retrieved lines
+	 * @param granularities
+	 *            granularity of each id
+	 * @return the metrics
+	 */
+	public static FeatureMetrics calculate(int[] actualIds, int[] retrievedIds, Granularity[] granularities) {
+		FeatureMetrics metrics = new FeatureMetrics();
+		for (int a : actualIds) {
+			metrics.actual[granularities[a].ordinal()]++;
+		}
+		// both are sorted so the true positives are found in one pass
+		int i = 0;
+		for (int r : retrievedIds) {
+			int granularity = granularities[r].ordinal();
+			metrics.retrieved[granularity]++;
+			while (i < actualIds.length && actualIds[i] < r) {
+				i++;
+			}
+			if (i < actualIds.length && actualIds[i] == r) {
+				metrics.truePositives[granularity]++;
+			}
+		}
+		return metrics;
+	}
+
+	/**
+	 * Metrics of one feature with the lines of the source files
+	 * 
+	 * @param actualLines
+	 *            number of lines owned by the feature
+	 * @param retrievedLines
+	 *            number of distinct retrieved lines
+	 * @param truePositives
+	 *            number of retrieved lines owned by the feature
+	 * @return the metrics
+	 */
+	public static FeatureMetrics ofLines(int actualLines, int retrievedLines, int truePositives) {
+		FeatureMetrics metrics = new FeatureMetrics();
+		metrics.actual[Granularity.LINE.ordinal()] = actualLines;
+		metrics.retrieved[Granularity.LINE.ordinal()] = retrievedLines;
+		metrics.truePositives[Granularity.LINE.ordinal()] = truePositives;
+		return metrics;
+	}
+
+	public int getActual() {
+		return sum(actual);
+	}
+
+	public int getActual(Granularity granularity) {
+		return actual[granularity.ordinal()];
+	}
+
+	public int getRetrieved() {
+		return sum(retrieved);
+	}
+
+	public int getRetrieved(Granularity granularity) {
+		return retrieved[granularity.ordinal()];
+	}
+
+	public int getTruePositives() {
+		return sum(truePositives);
+	}
+
+	public int getTruePositives(Granularity granularity) {
+		return truePositives[granularity.ordinal()];
+	}
+
+	public int getFalsePositives() {
+		return getRetrieved() - getTruePositives();
+	}
+
+	public int getFalsePositives(Granularity granularity) {
+		return getRetrieved(granularity) - getTruePositives(granularity);
+	}
+
+	public double getPrecision() {
+		return getPrecision(getTruePositives(), getFalsePositives());
+	}
+
+	public double getPrecision(Granularity granularity) {
+		return getPrecision(getTruePositives(granularity), getFalsePositives(granularity));
+	}
+
+	public double getRecall() {
+		return getRecall(getTruePositives(), getActual());
+	}
+
+	public double getRecall(Granularity granularity) {
+		return getRecall(getTruePositives(granularity), getActual(granularity));
+	}
+
+	public double getF1() {
+		return MetricsCalculation.getF1(getPrecision(), getRecall());
+	}
+
+	public double getF1(Granularity granularity) {
+		return MetricsCalculation.getF1(getPrecision(granularity), getRecall(granularity));
+	}
+
+	private static double getPrecision(int truePositives, int falsePositives) {
+		return (double) truePositives / (double) ((double) truePositives + (double) falsePositives);
+	}
+
+	private static double getRecall(int truePositives, int actual) {
+		return (double) truePositives / (double) actual;
+	}
+
+	private static int sum(int[] counters) {
+		int sum = 0;
+		for (int counter : counters) {
+			sum += counter;
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,172 @@
+package metricsCalculation;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import metricsCalculation.FeatureMetrics.Granularity;
+import utils.FileUtils;
+import utils.TraceDictionary;
+import utils.TraceFile;
+import utils.TraceSink;
+
+/**
+ * Actual traces of the features, loaded once from the ground-truth folder. It
+ * cannot be modified so the same instance can be shared by several threads
+ * calculating the metrics of different scenarios.
+ * 
+ * The traces are kept as sorted ids of a trace dictionary. They are read from
+ * the trace file of the folder (see TraceFile) if it is up to date, otherwise
+ * from the txt files. The txt files can be compressed (feature.txt.gz, see
+ * TraceSink).
+ * 
+ * @author jabier.martinez
+ */
+public class GroundTruth {
+
+	public static final String EXTENSION = ".txt";
+	public static final String GZIP_EXTENSION = EXTENSION + TraceSink.GZIP_EXTENSION;
+
+	private final TraceDictionary dictionary;
+	// feature name to sorted actual ids, in the order of the files in the folder
+	private final Map<String, int[]> actualIds;
+	// granularity of each id of the dictionary
+	private final Granularity[] granularities;
+
+	private GroundTruth(TraceDictionary dictionary, Map<String, int[]> actualIds) {
+		this.dictionary = dictionary;
+		this.actualIds = Collections.unmodifiableMap(actualIds);
+		this.granularities = new Granularity[dictionary.size()];
+		for (int id = 0; id < granularities.length; id++) {
+			granularities[id] = Granularity.of(dictionary.getTrace(id));
+		}
+	}
+
+	/**
+	 * Load the ground-truth folder
+	 * 
+	 * @param actualFolder
+	 *            containing txt files with the actual values
+	 * @return the ground-truth
+	 */
+	public static GroundTruth load(File actualFolder) {
+		TraceFile traceFile = TraceFile.openIfUpToDate(actualFolder);
+		TraceDictionary dictionary = traceFile == null ? new TraceDictionary() : traceFile.getDictionary();
+		Map<String, int[]> actualIds = new LinkedHashMap<String, int[]>();
+		for (File f : actualFolder.listFiles()) {
+			// be sure that it is a correct file
+			if (isFeatureFile(f)) {
+				String name = getFeatureName(f);
+				int[] ids = traceFile == null ? null : traceFile.getIds(name);
+				if (ids == null) {
+					ids = dictionary.getIds(FileUtils.getLinesOfFile(f));
+				}
+				actualIds.put(name, ids);
+			}
+		}
+		return new GroundTruth(dictionary, actualIds);
+	}
+
+	/**
+	 * Get the name of the feature by removing the file extension
+	 * 
+	 * @param file
+	 * @return feature name
+	 */
+	public static String getFeatureName(File file) {
+		String extension = file.getName().endsWith(GZIP_EXTENSION) ? GZIP_EXTENSION : EXTENSION;
+		return file.getName().substring(0, file.getName().length() - extension.length());
+	}
+
+	/**
+	 * Whether a file contains the traces of a feature
+	 * 
+	 * @param file
+	 * @return true if it is a txt file, compressed or not
+	 */
+	public static boolean isFeatureFile(File file) {
+		return file.getName().endsWith(EXTENSION) || file.getName().endsWith(GZIP_EXTENSION);
+	}
+
+	/**
+	 * Get the file of a feature in a folder, the txt file or the compressed one
+	 * 
+	 * @param folder
+	 * @param feature
+	 * @return the txt file if the compressed one does not exist, it might not
+	 *         exist either
+	 */
+	public static File getFeatureFile(File folder, String feature) {
+		File gzipFile = new File(folder, feature + GZIP_EXTENSION);
+		return gzipFile.exists() ? gzipFile : new File(folder, feature + EXTENSION);
+	}
+
+	/**
+	 * Features of the ground-truth, including those without actual lines
+	 * 
+	 * @return feature names
+	 */
+	public Set<String> getFeatures() {
+		return actualIds.keySet();
+	}
+
+	public boolean contains(String feature) {
+		return actualIds.containsKey(feature);
+	}
+
+	/**
+	 * Dictionary of the actual traces. Extend it to add other traces without
+	 * modifying it.
+	 * 
+	 * @return the dictionary
+	 */
+	public TraceDictionary getDictionary() {
+		return dictionary;
+	}
+
+	/**
+	 * Get the ids of the actual traces of a feature
+	 * 
+	 * @param feature
+	 * @return the sorted ids, do not modify them
+	 */
+	public int[] getActualIds(String feature) {
+		return actualIds.get(feature);
+	}
+
+	/**
+	 * Get the granularity of each id of a dictionary that extends the
+	 * dictionary of the ground-truth
+	 * 
+	 * @param extendedDictionary
+	 * @return the granularities indexed by id
+	 */
+	public Granularity[] getGranularities(TraceDictionary extendedDictionary) {
+		Granularity[] result = Arrays.copyOf(granularities, extendedDictionary.size());
+		for (int id = granularities.length; id < result.length; id++) {
+			result[id] = Granularity.of(extendedDictionary.getTrace(id));
+		}
+		return result;
+	}
+
+	/**
+	 * Get the actual lines of a feature
+	 * 
+	 * @param feature
+	 * @return the lines in the order of their ids
+	 */
+	public List<String> getActualLines(String feature) {
+		int[] ids = actualIds.get(feature);
+		return ids == null ? null : Collections.unmodifiableList(dictionary.getTraces(ids));
+	}
+
+	public Set<String> getActualSet(String feature) {
+		List<String> lines = getActualLines(feature);
+		return lines == null ? null : Collections.unmodifiableSet(new HashSet<String>(lines));
+	}
+}
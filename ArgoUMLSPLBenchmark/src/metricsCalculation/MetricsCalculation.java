@@ -2,9 +2,19 @@ package metricsCalculation;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import metricsCalculation.FeatureMetrics.Granularity;
 import utils.FileUtils;
+import utils.LineIntervalIndex;
+import utils.TraceDictionary;
+import utils.TraceFile;
 
 /**
  * Metrics calculation
@@ -21,21 +31,37 @@ import utils.FileUtils;
  */
 public class MetricsCalculation {
 
-	private static final String EXTENSION = ".txt";
+	/**
+	 * Line-level mode, the retrieved lines are in yourResultsLines (see
+	 * calculateLines)
+	 */
+	public static final String LINES_MODE = "lines";
 
 	public static void main(String[] args) {
 		System.out.println("Metrics calculation");
 		File groundTruth = new File("groundTruth");// changed back to groundTruth
 		File yourResults = new File("yourResults");
 		File yourResultsMetrics = new File("yourResultsMetrics");
-		String results = getResults(groundTruth, yourResults);
+		if (args.length > 0 && args[0].equals(LINES_MODE)) {
+			mainLines(groundTruth, new File("yourResultsLines"), yourResultsMetrics);
+			return;
+		}
+		MetricsResults metricsResults = calculate(GroundTruth.load(groundTruth), yourResults);
 		File resultsFile = new File(yourResultsMetrics, "resultPrecisionRecall_" + System.currentTimeMillis() + ".csv");
 		try {
-			FileUtils.writeFile(resultsFile, results);
+			FileUtils.writeFile(resultsFile, metricsResults.toCsv());
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
 		System.out.println("Results file created");
+		File granularityFile = new File(yourResultsMetrics,
+				"resultPrecisionRecallByGranularity_" + System.currentTimeMillis() + ".csv");
+		try {
+			FileUtils.writeFile(granularityFile, metricsResults.toGranularityCsv());
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+		System.out.println("Results by granularity file created");
 		System.out.println("Gnuplot script:");
 
 		System.out.println("cd '" + resultsFile.getAbsoluteFile().getParentFile().getAbsolutePath() + "'");
@@ -45,16 +71,39 @@ public class MetricsCalculation {
 		System.out.println("set style fill empty"); 
 		System.out.println("set xtics ('Names' 1, 'Precision' 2, 'Recall' 3, 'FScore' 4) scale 0.0");
 		System.out.println("set yrange [-0.04:1.04]");
-		System.out.println("set title \"Actual features where nothing was retrieved= " + (int) failedToRetrieve_counter
-				+ " out of 24\\nInexistent features where something was retrieved= "
-				+ retrievedInexistentFeature_counter + "\\nMetrics for actual features:\"");
+		System.out.println("set title \"Actual features where nothing was retrieved= "
+				+ metricsResults.getFailedToRetrieve() + " out of 24\\nInexistent features where something was retrieved= "
+				+ metricsResults.getInexistentFeatures().size() + "\\nMetrics for actual features:\"");
 		// [i=2:4] because the first column is for names
 		// every ::1::24 to ignore the last row with the global results
 		System.out.println("plot for [i=2:4] '" + resultsFile.getName()
 				+ "' every ::1::24 using (i):i notitle pointsize .8 lc rgb 'black'");
 	}
 
+	private static void mainLines(File groundTruth, File yourResultsLines, File yourResultsMetrics) {
+		LineIntervalIndex index = LineIntervalIndex.load(new File(groundTruth, LineIntervalIndex.FILE_NAME));
+		if (index == null) {
+			System.err.println("Line-level ground truth not found. Run the ground-truth extractor first.");
+			return;
+		}
+		MetricsResults metricsResults = calculateLines(index, yourResultsLines);
+		File resultsFile = new File(yourResultsMetrics,
+				"resultPrecisionRecallLines_" + System.currentTimeMillis() + ".csv");
+		try {
+			FileUtils.writeFile(resultsFile, metricsResults.toCsv());
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+		System.out.println("Line-level results file created");
+	}
+
+	/**
+	 * Values of the last call to getResults. They are shared by all the
+	 * callers, use the MetricsResults returned by calculate instead.
+	 */
+	@Deprecated
 	public static int retrievedInexistentFeature_counter;
+	@Deprecated
 	public static double failedToRetrieve_counter;
 
 	/**
@@ -66,125 +115,186 @@ public class MetricsCalculation {
 	 *            containing txt files with the retrieved values
 	 */
 	public static String getResults(File actualFolder, File retrievedFolder) {
-		StringBuilder resultsContent = new StringBuilder();
-		resultsContent.append("Name,Precision,Recall,FScore,FeaturesWithoutRetrieved,InexistentFeaturesRetrieved\n");
-		double precisionAvg = 0;
-		failedToRetrieve_counter = 0;
-		double recallAvg = 0;
-		double f1measureAvg = 0;
-		double numberOfActualFiles = 0;
-		// Go through the ground-truth folder
-		for (File f : actualFolder.listFiles()) {
-			// be sure that it is a correct file
-			if (f.getName().endsWith(EXTENSION)) {
-				numberOfActualFiles++;
-				List<String> actualLines = FileUtils.getLinesOfFile(f);
-				if (!actualLines.isEmpty()) {
-					List<String> retrievedLines = null;
-					// get its counterpart in the retrieved folder
-					File f2 = new File(retrievedFolder, f.getName());
-					if (f2.exists()) {
-						retrievedLines = FileUtils.getLinesOfFile(f2);
-					} else {
-						// no file was created so it did not find anything
-						retrievedLines = new ArrayList<String>();
-					}
-					
-					// Calculate metrics
-					double precision = getPrecision(actualLines, retrievedLines);
-					double recall = getRecall(actualLines, retrievedLines);
-					double f1measure = getF1(precision, recall);
-					
-					// Append the row to the results file
-					// get the name by removing the file extension
-					String name = f.getName().substring(0, f.getName().length() - EXTENSION.length());
-					resultsContent.append(name + ",");
-					
-					// precision
-					if (Double.isNaN(precision)) {
-						resultsContent.append("0,");
-					} else {
-						precisionAvg += precision;
-						resultsContent.append(precision + ",");
-					}
-					
-					// recall
-					if (Double.isNaN(recall)) {
-						resultsContent.append("0,");
-					} else {
-						recallAvg += recall;
-						resultsContent.append(recall + ",");
-					}
-					
-					// f1score
-					if (Double.isNaN(f1measure)) {
-						resultsContent.append("0,");
-					} else {
-						f1measureAvg += f1measure;
-						resultsContent.append(f1measure + ",");
-					}
-					
-					// something retrieved or not
-					if (retrievedLines.isEmpty()) {
-						failedToRetrieve_counter++;
-						resultsContent.append("NothingRetrieved\n");
-					} else {
-						resultsContent.append("SomethingRetrieved\n");
-					}
+		MetricsResults metricsResults = calculate(GroundTruth.load(actualFolder), retrievedFolder);
+		failedToRetrieve_counter = metricsResults.getFailedToRetrieve();
+		retrievedInexistentFeature_counter = metricsResults.getInexistentFeatures().size();
+		return metricsResults.toCsv();
+	}
+
+	/**
+	 * Metrics of each granularity (Class, Method and Refinement) of each actual
+	 * feature. One row per feature and granularity.
+	 * 
+	 * @param actualFolder
+	 *            containing txt files with the actual values
+	 * @param retrievedFolder
+	 *            containing txt files with the retrieved values
+	 * @return csv content
+	 */
+	public static String getResultsByGranularity(File actualFolder, File retrievedFolder) {
+		return calculate(GroundTruth.load(actualFolder), retrievedFolder).toGranularityCsv();
+	}
+
+	/**
+	 * Calculate the metrics of a retrieved folder. It does not modify any
+	 * shared state so it can be called concurrently with the same ground-truth.
+	 * 
+	 * The retrieved traces are read from the trace file of the folder (see
+	 * TraceFile) if it is up to date, otherwise from the txt files, and they
+	 * are compared as ids of a dictionary extending the one of the
+	 * ground-truth.
+	 * 
+	 * @param groundTruth
+	 *            the actual values
+	 * @param retrievedFolder
+	 *            containing txt files with the retrieved values
+	 * @return the metrics results
+	 */
+	public static MetricsResults calculate(GroundTruth groundTruth, File retrievedFolder) {
+		TraceDictionary dictionary = new TraceDictionary(groundTruth.getDictionary());
+		TraceFile traceFile = TraceFile.openIfUpToDate(retrievedFolder);
+		// ids of the trace file to ids of the dictionary, -1 if not mapped yet
+		int[] traceFileIds = null;
+		if (traceFile != null) {
+			traceFileIds = new int[traceFile.size()];
+			Arrays.fill(traceFileIds, -1);
+		}
+		Map<String, int[]> retrievedIds = new LinkedHashMap<String, int[]>();
+		for (String feature : groundTruth.getFeatures()) {
+			if (groundTruth.getActualIds(feature).length > 0) {
+				int[] ids = null;
+				// get its counterpart in the retrieved folder
+				File f2 = GroundTruth.getFeatureFile(retrievedFolder, feature);
+				if (!f2.exists()) {
+					// no file was created so it did not find anything
+					ids = new int[0];
+				} else if (traceFile != null && traceFile.contains(feature)) {
+					ids = getIds(traceFile, traceFileIds, feature, dictionary);
+				} else {
+					ids = dictionary.getIds(FileUtils.getLinesOfFile(f2));
 				}
+				retrievedIds.put(feature, ids);
 			}
 		}
-
-		resultsContent.append("Average,");
-		// precision avg.
-		precisionAvg = precisionAvg / numberOfActualFiles;
-		if(Double.isNaN(precisionAvg)){
-			resultsContent.append("0,");
-		} else {
-			resultsContent.append(precisionAvg + ",");
+		Granularity[] granularities = groundTruth.getGranularities(dictionary);
+		Map<String, FeatureMetrics> featureMetrics = new LinkedHashMap<String, FeatureMetrics>();
+		for (String feature : retrievedIds.keySet()) {
+			featureMetrics.put(feature, FeatureMetrics.calculate(groundTruth.getActualIds(feature),
+					retrievedIds.get(feature), granularities));
 		}
-		
-		// recall avg.
-		recallAvg = recallAvg / numberOfActualFiles;
-		if(Double.isNaN(recallAvg)){
-			resultsContent.append("0,");
-		} else {
-			resultsContent.append(recallAvg + ",");
+
+		// Check retrieved but inexistent in the actual folder
+		List<String> inexistent = new ArrayList<String>();
+		File[] retrievedFiles = retrievedFolder.listFiles();
+		if (retrievedFiles != null) {
+			for (File f : retrievedFiles) {
+				if (GroundTruth.isFeatureFile(f) && !groundTruth.contains(GroundTruth.getFeatureName(f))) {
+					inexistent.add(GroundTruth.getFeatureName(f));
+				}
+			}
 		}
-		
-		// f1score avg.
-		f1measureAvg = f1measureAvg / numberOfActualFiles;
-		if(Double.isNaN(f1measureAvg)){
-			resultsContent.append("0,");
-		} else {
-			resultsContent.append( f1measureAvg + ",");
+		return new MetricsResults(retrievedFolder.getName(), featureMetrics, groundTruth.getFeatures().size(),
+				inexistent);
+	}
+
+	/**
+	 * Calculate the line-level metrics of a retrieved folder. Each txt file of
+	 * the folder contains the retrieved lines of a feature, one line per
+	 * retrieved line or range of lines with the path of the file from its
+	 * package root, for example org/argouml/kernel/Project.java:120 or
+	 * org/argouml/kernel/Project.java:120-135. A retrieved line is a true
+	 * positive if the feature owns it in the line-level ground truth. Repeated
+	 * lines are counted once.
+	 * 
+	 * @param index
+	 *            the line-level ground truth
+	 * @param retrievedFolder
+	 *            containing txt files with the retrieved lines
+	 * @return the metrics results
+	 */
+	public static MetricsResults calculateLines(LineIntervalIndex index, File retrievedFolder) {
+		Map<String, FeatureMetrics> featureMetrics = new LinkedHashMap<String, FeatureMetrics>();
+		for (String feature : index.getFeatures()) {
+			File f2 = GroundTruth.getFeatureFile(retrievedFolder, feature);
+			int retrieved = 0;
+			int truePositives = 0;
+			if (f2.exists()) {
+				for (Map.Entry<String, BitSet> file : getRetrievedLines(f2).entrySet()) {
+					BitSet lines = file.getValue();
+					retrieved += lines.cardinality();
+					for (int line = lines.nextSetBit(0); line >= 0; line = lines.nextSetBit(line + 1)) {
+						if (index.getFeatures(file.getKey(), line).contains(feature)) {
+							truePositives++;
+						}
+					}
+				}
+			}
+			featureMetrics.put(feature, FeatureMetrics.ofLines(index.getLineCount(feature), retrieved, truePositives));
 		}
-		
-		// total failed to retrieve
-		resultsContent.append(failedToRetrieve_counter + ",");
-		
-		// Check retrieved but inexistent in the actual folder
-		StringBuilder inexistent = new StringBuilder();
-		retrievedInexistentFeature_counter = 0;
-		for (File f : retrievedFolder.listFiles()) {
-			File fInActualFolder = new File(actualFolder, f.getName());
-			if (f.getName().endsWith(EXTENSION) && !fInActualFolder.exists()) {
-				// it does not exist in actual folder
-				retrievedInexistentFeature_counter++;
-				String name = f.getName().substring(0, f.getName().length() - EXTENSION.length());
-				inexistent.append(name);
-				inexistent.append(",");
+
+		// Check retrieved but inexistent in the line-level ground truth
+		List<String> inexistent = new ArrayList<String>();
+		File[] retrievedFiles = retrievedFolder.listFiles();
+		if (retrievedFiles != null) {
+			for (File f : retrievedFiles) {
+				if (GroundTruth.isFeatureFile(f) && !index.getFeatures().contains(GroundTruth.getFeatureName(f))) {
+					inexistent.add(GroundTruth.getFeatureName(f));
+				}
 			}
 		}
-		resultsContent.append(retrievedInexistentFeature_counter + ",");
-		if(retrievedInexistentFeature_counter > 0){
-			// remove last comma
-			inexistent.setLength(inexistent.length() - 1);
-			// append list
-			resultsContent.append(inexistent.toString());
+		return new MetricsResults(retrievedFolder.getName(), featureMetrics, index.getFeatures().size(), inexistent);
+	}
+
+	/**
+	 * Read the retrieved lines of a feature
+	 * 
+	 * @param file
+	 *            txt file of the feature
+	 * @return path to the retrieved lines of the file
+	 */
+	private static Map<String, BitSet> getRetrievedLines(File file) {
+		Map<String, BitSet> retrievedLines = new LinkedHashMap<String, BitSet>();
+		FileUtils.forEachLine(file, line -> {
+			int separator = line.lastIndexOf(':');
+			if (separator == -1) {
+				System.err.println("Ignored line without line number in " + file.getName() + ": " + line);
+				return;
+			}
+			String path = line.substring(0, separator);
+			String range = line.substring(separator + 1).trim();
+			int dash = range.indexOf('-');
+			try {
+				int first = Integer.parseInt(dash == -1 ? range : range.substring(0, dash));
+				int last = dash == -1 ? first : Integer.parseInt(range.substring(dash + 1));
+				BitSet lines = retrievedLines.get(path);
+				if (lines == null) {
+					lines = new BitSet();
+					retrievedLines.put(path, lines);
+				}
+				lines.set(first, last + 1);
+			} catch (NumberFormatException e) {
+				System.err.println("Ignored line with a wrong line number in " + file.getName() + ": " + line);
+			}
+		});
+		return retrievedLines;
+	}
+
+	/**
+	 * Get the ids of the traces of a feature in a trace file as ids of the
+	 * dictionary. Each trace of the file is decoded only once.
+	 */
+	private static int[] getIds(TraceFile traceFile, int[] traceFileIds, String feature,
+			TraceDictionary dictionary) {
+		int[] ids = traceFile.getIds(feature);
+		for (int i = 0; i < ids.length; i++) {
+			int id = ids[i];
+			if (traceFileIds[id] == -1) {
+				traceFileIds[id] = dictionary.getId(traceFile.getTrace(id));
+			}
+			ids[i] = traceFileIds[id];
 		}
-		
-		return resultsContent.toString();
+		Arrays.sort(ids);
+		return ids;
 	}
 
 	/**
@@ -195,9 +305,10 @@ public class MetricsCalculation {
 	 * @return
 	 */
 	public static List<String> getTruePositives(List<String> actualLines, List<String> retrievedLines) {
+		Set<String> actualSet = new HashSet<String>(actualLines);
 		List<String> found = new ArrayList<String>();
 		for (String a : retrievedLines) {
-			if (actualLines.contains(a)) {
+			if (actualSet.contains(a)) {
 				found.add(a);
 			}
 		}
@@ -212,9 +323,10 @@ public class MetricsCalculation {
 	 * @return
 	 */
 	public static List<String> getFalsePositives(List<String> actualLines, List<String> retrievedLines) {
+		Set<String> actualSet = new HashSet<String>(actualLines);
 		List<String> found = new ArrayList<String>();
 		for (String a : retrievedLines) {
-			if (!actualLines.contains(a)) {
+			if (!actualSet.contains(a)) {
 				found.add(a);
 			}
 		}
@@ -222,17 +334,11 @@ public class MetricsCalculation {
 	}
 
 	public static double getPrecision(List<String> actualLines, List<String> retrievedLines) {
-		List<String> truePositives = getTruePositives(actualLines, retrievedLines);
-		List<String> falsePositives = getFalsePositives(actualLines, retrievedLines);
-		double precision = (double) truePositives.size()
-				/ (double) ((double) truePositives.size() + (double) falsePositives.size());
-		return precision;
+		return FeatureMetrics.calculate(actualLines, retrievedLines).getPrecision();
 	}
 
 	public static double getRecall(List<String> actualLines, List<String> retrievedLines) {
-		List<String> truePositives = getTruePositives(actualLines, retrievedLines);
-		double recall = (double) truePositives.size() / (double) actualLines.size();
-		return recall;
+		return FeatureMetrics.calculate(actualLines, retrievedLines).getRecall();
 	}
 
 	public static double getF1(double precision, double recall) {
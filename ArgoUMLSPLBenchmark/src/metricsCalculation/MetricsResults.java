@@ -0,0 +1,192 @@
+package metricsCalculation;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import metricsCalculation.FeatureMetrics.Granularity;
+
+/**
+ * Metrics of the retrieved traces of one scenario compared with the
+ * ground-truth. Once created it cannot be modified.
+ * 
+ * @author jabier.martinez
+ */
+public class MetricsResults {
+
+	private final String name;
+	// features with actual lines, in the order of the ground-truth
+	private final Map<String, FeatureMetrics> featureMetrics;
+	private final int numberOfActualFeatures;
+	private final List<String> inexistentFeatures;
+
+	public MetricsResults(String name, Map<String, FeatureMetrics> featureMetrics, int numberOfActualFeatures,
+			List<String> inexistentFeatures) {
+		this.name = name;
+		this.featureMetrics = Collections.unmodifiableMap(featureMetrics);
+		this.numberOfActualFeatures = numberOfActualFeatures;
+		this.inexistentFeatures = Collections.unmodifiableList(inexistentFeatures);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public Map<String, FeatureMetrics> getFeatureMetrics() {
+		return featureMetrics;
+	}
+
+	/**
+	 * Number of features in the ground-truth, including those without actual
+	 * lines
+	 * 
+	 * @return number of features
+	 */
+	public int getNumberOfActualFeatures() {
+		return numberOfActualFeatures;
+	}
+
+	/**
+	 * Features that were retrieved but do not exist in the ground-truth
+	 * 
+	 * @return feature names
+	 */
+	public List<String> getInexistentFeatures() {
+		return inexistentFeatures;
+	}
+
+	/**
+	 * Actual features where nothing was retrieved
+	 * 
+	 * @return number of features
+	 */
+	public int getFailedToRetrieve() {
+		int failedToRetrieve = 0;
+		for (FeatureMetrics metrics : featureMetrics.values()) {
+			if (metrics.getRetrieved() == 0) {
+				failedToRetrieve++;
+			}
+		}
+		return failedToRetrieve;
+	}
+
+	public double getPrecisionAverage() {
+		double precisionAvg = 0;
+		for (FeatureMetrics metrics : featureMetrics.values()) {
+			if (!Double.isNaN(metrics.getPrecision())) {
+				precisionAvg += metrics.getPrecision();
+			}
+		}
+		return precisionAvg / numberOfActualFeatures;
+	}
+
+	public double getRecallAverage() {
+		double recallAvg = 0;
+		for (FeatureMetrics metrics : featureMetrics.values()) {
+			if (!Double.isNaN(metrics.getRecall())) {
+				recallAvg += metrics.getRecall();
+			}
+		}
+		return recallAvg / numberOfActualFeatures;
+	}
+
+	public double getF1Average() {
+		double f1measureAvg = 0;
+		for (FeatureMetrics metrics : featureMetrics.values()) {
+			if (!Double.isNaN(metrics.getF1())) {
+				f1measureAvg += metrics.getF1();
+			}
+		}
+		return f1measureAvg / numberOfActualFeatures;
+	}
+
+	/**
+	 * Results file content. One row per actual feature and a last row with the
+	 * averages.
+	 * 
+	 * @return csv content
+	 */
+	public String toCsv() {
+		StringBuilder resultsContent = new StringBuilder();
+		resultsContent.append("Name,Precision,Recall,FScore,FeaturesWithoutRetrieved,InexistentFeaturesRetrieved\n");
+		for (String feature : featureMetrics.keySet()) {
+			appendRow(resultsContent, feature, featureMetrics.get(feature));
+		}
+		resultsContent.append("Average,");
+		resultsContent.append(getValueOrZero(getPrecisionAverage()) + ",");
+		resultsContent.append(getValueOrZero(getRecallAverage()) + ",");
+		resultsContent.append(getValueOrZero(getF1Average()) + ",");
+		// total failed to retrieve
+		resultsContent.append((double) getFailedToRetrieve() + ",");
+		resultsContent.append(inexistentFeatures.size() + ",");
+		for (int i = 0; i < inexistentFeatures.size(); i++) {
+			if (i > 0) {
+				resultsContent.append(",");
+			}
+			resultsContent.append(inexistentFeatures.get(i));
+		}
+		return resultsContent.toString();
+	}
+
+	/**
+	 * Append the row of one feature: name, precision, recall, fscore and
+	 * whether something was retrieved
+	 * 
+	 * @param resultsContent
+	 * @param feature
+	 * @param metrics
+	 */
+	static void appendRow(StringBuilder resultsContent, String feature, FeatureMetrics metrics) {
+		resultsContent.append(feature + ",");
+		resultsContent.append(getValueOrZero(metrics.getPrecision()) + ",");
+		resultsContent.append(getValueOrZero(metrics.getRecall()) + ",");
+		resultsContent.append(getValueOrZero(metrics.getF1()) + ",");
+		if (metrics.getRetrieved() == 0) {
+			resultsContent.append("NothingRetrieved\n");
+		} else {
+			resultsContent.append("SomethingRetrieved\n");
+		}
+	}
+
+	/**
+	 * Metrics of each granularity of the traces of each actual feature. One row
+	 * per feature and granularity.
+	 * 
+	 * @return csv content
+	 */
+	public String toGranularityCsv() {
+		StringBuilder resultsContent = new StringBuilder();
+		resultsContent.append("Name,Granularity,Actual,Retrieved,TruePositives,Precision,Recall,FScore\n");
+		for (String feature : featureMetrics.keySet()) {
+			FeatureMetrics metrics = featureMetrics.get(feature);
+			for (Granularity granularity : Granularity.values()) {
+				if (granularity == Granularity.LINE) {
+					// only in the line-level metrics
+					continue;
+				}
+				resultsContent.append(feature + ",");
+				resultsContent.append(granularity.getName() + ",");
+				resultsContent.append(metrics.getActual(granularity) + ",");
+				resultsContent.append(metrics.getRetrieved(granularity) + ",");
+				resultsContent.append(metrics.getTruePositives(granularity) + ",");
+				resultsContent.append(getValueOrZero(metrics.getPrecision(granularity)) + ",");
+				resultsContent.append(getValueOrZero(metrics.getRecall(granularity)) + ",");
+				resultsContent.append(getValueOrZero(metrics.getF1(granularity)) + "\n");
+			}
+		}
+		return resultsContent.toString();
+	}
+
+	/**
+	 * NaN values are reported as 0
+	 * 
+	 * @param value
+	 * @return the value or 0
+	 */
+	public static String getValueOrZero(double value) {
+		if (Double.isNaN(value)) {
+			return "0";
+		}
+		return Double.toString(value);
+	}
+}
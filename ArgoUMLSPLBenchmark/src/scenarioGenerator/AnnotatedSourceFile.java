@@ -0,0 +1,340 @@
+package scenarioGenerator;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * A source file with the annotations of the javapp preprocessor used by
+ * ArgoUML SPL (//#if, //#elif, //#else and //#endif). The file is tokenized
+ * once in a tree of text blocks and conditions so the code of any variant can
+ * be obtained by evaluating the tree with the features of its configuration.
+ * 
+ * The lines of the output are the same as the ones of javapp: the text before
+ * a directive stays in the enclosing block and the end of the line of an
+ * //#if, //#elif or //#else is part of the conditional block. The lines with
+ * variability comments (@#$LPS) are removed as in the scenario build files.
+ * Property substitution and //#define are not supported because ArgoUML SPL
+ * does not use them.
+ * 
+ * Unlike javapp, the line terminators of the file are kept as they are and no
+ * line terminator is added at the end of the file. The content is read and
+ * written as ISO-8859-1 by the callers, so the bytes that are not ASCII are
+ * kept too.
+ * 
+ * @author jabier.martinez
+ */
+public class AnnotatedSourceFile {
+
+	public static final String PREFIX = "//#";
+	public static final String LPS_COMMENT = "@#$LPS";
+
+	private static final String IF = "if";
+	private static final String ELIF = "elif";
+	private static final String ELSE = "else";
+	private static final String ENDIF = "endif";
+
+	private final List<Node> nodes;
+	private final boolean annotated;
+	private final Set<String> features;
+
+	private AnnotatedSourceFile(List<Node> nodes, boolean annotated, Set<String> features) {
+		this.nodes = nodes;
+		this.annotated = annotated;
+		this.features = Collections.unmodifiableSet(features);
+	}
+
+	/**
+	 * Whether the file has preprocessor directives or variability comments. If
+	 * not, the code is the same for all the variants.
+	 * 
+	 * @return true if annotated
+	 */
+	public boolean isAnnotated() {
+		return annotated;
+	}
+
+	/**
+	 * Get the features used in the conditions. The code of a variant only
+	 * depends on which of these features are selected.
+	 * 
+	 * @return the features
+	 */
+	public Set<String> getFeatures() {
+		return features;
+	}
+
+	/**
+	 * Whether the file needs to be tokenized. It is cheaper than parsing.
+	 * 
+	 * @param content
+	 * @return true if the content contains directives or variability comments
+	 */
+	public static boolean isAnnotated(String content) {
+		return content.contains(PREFIX) || content.contains(LPS_COMMENT);
+	}
+
+	/**
+	 * Get the code of a variant
+	 * 
+	 * @param features
+	 *            the features of the configuration
+	 * @return the preprocessed code
+	 */
+	public String getVariant(Set<String> features) {
+		StringBuilder code = new StringBuilder();
+		for (Node node : nodes) {
+			node.append(code, features);
+		}
+		return removeLPSComments(code);
+	}
+
+	/**
+	 * Tokenize the content of a file
+	 * 
+	 * @param content
+	 * @return the annotated source file
+	 * @throws IllegalArgumentException
+	 *             if the directives are not balanced or a condition is not
+	 *             supported
+	 */
+	public static AnnotatedSourceFile parse(String content) {
+		List<Node> root = new ArrayList<Node>();
+		Set<String> features = new TreeSet<String>();
+		if (!isAnnotated(content)) {
+			root.add(new Text(content));
+			return new AnnotatedSourceFile(root, false, new TreeSet<String>());
+		}
+		List<Conditional> openConditionals = new ArrayList<Conditional>();
+		List<Node> current = root;
+		int position = 0;
+		int directive = content.indexOf(PREFIX);
+		while (directive != -1) {
+			int keyword = directive + PREFIX.length();
+			String name = getDirective(content, keyword);
+			if (name == null) {
+				// not a directive, keep it as text
+				directive = content.indexOf(PREFIX, keyword);
+				continue;
+			}
+			addText(current, content.substring(position, directive));
+			position = keyword + name.length();
+			if (name.equals(IF) || name.equals(ELIF)) {
+				int endOfLine = getEndOfLine(content, position);
+				Condition condition = Condition.parse(content.substring(position, endOfLine));
+				condition.addFeatures(features);
+				position = endOfLine;
+				if (name.equals(IF)) {
+					Conditional conditional = new Conditional();
+					current.add(conditional);
+					openConditionals.add(conditional);
+					current = conditional.addBranch(condition);
+				} else {
+					current = getLast(openConditionals, content, directive).addBranch(condition);
+				}
+			} else if (name.equals(ELSE)) {
+				current = getLast(openConditionals, content, directive).addBranch(null);
+			} else {
+				getLast(openConditionals, content, directive);
+				openConditionals.remove(openConditionals.size() - 1);
+				current = openConditionals.isEmpty() ? root
+						: openConditionals.get(openConditionals.size() - 1).getLastBranch();
+			}
+			directive = content.indexOf(PREFIX, position);
+		}
+		if (!openConditionals.isEmpty()) {
+			throw new IllegalArgumentException(PREFIX + ENDIF + " missing at the end of the file");
+		}
+		addText(current, content.substring(position));
+		return new AnnotatedSourceFile(root, true, features);
+	}
+
+	private static String getDirective(String content, int keyword) {
+		// longest first, else is a prefix of elif
+		for (String name : new String[] { ENDIF, ELIF, ELSE, IF }) {
+			if (content.startsWith(name, keyword)) {
+				return name;
+			}
+		}
+		return null;
+	}
+
+	private static int getEndOfLine(String content, int position) {
+		int endOfLine = position;
+		while (endOfLine < content.length() && content.charAt(endOfLine) != '\n'
+				&& content.charAt(endOfLine) != '\r') {
+			endOfLine++;
+		}
+		return endOfLine;
+	}
+
+	private static Conditional getLast(List<Conditional> openConditionals, String content, int directive) {
+		if (openConditionals.isEmpty()) {
+			int line = 1;
+			for (int i = 0; i < directive; i++) {
+				if (content.charAt(i) == '\n') {
+					line++;
+				}
+			}
+			throw new IllegalArgumentException("Directive without " + PREFIX + IF + " at line " + line);
+		}
+		return openConditionals.get(openConditionals.size() - 1);
+	}
+
+	private static void addText(List<Node> nodes, String text) {
+		if (!text.isEmpty()) {
+			nodes.add(new Text(text));
+		}
+	}
+
+	/**
+	 * Remove the lines containing variability comments keeping the line
+	 * terminators of the other lines
+	 */
+	private static String removeLPSComments(StringBuilder code) {
+		if (code.indexOf(LPS_COMMENT) == -1) {
+			return code.toString();
+		}
+		StringBuilder filtered = new StringBuilder(code.length());
+		int start = 0;
+		while (start < code.length()) {
+			int end = code.indexOf("\n", start);
+			end = end == -1 ? code.length() : end + 1;
+			String line = code.substring(start, end);
+			if (!line.contains(LPS_COMMENT)) {
+				filtered.append(line);
+			}
+			start = end;
+		}
+		return filtered.toString();
+	}
+
+	/**
+	 * Element of the tree
+	 */
+	private interface Node {
+		void append(StringBuilder code, Set<String> features);
+	}
+
+	private static class Text implements Node {
+		private final String text;
+
+		Text(String text) {
+			this.text = text;
+		}
+
+		@Override
+		public void append(StringBuilder code, Set<String> features) {
+			code.append(text);
+		}
+	}
+
+	/**
+	 * An //#if with its //#elif and //#else branches. The first branch with a
+	 * true condition is the one included.
+	 */
+	private static class Conditional implements Node {
+		private final List<Condition> conditions = new ArrayList<Condition>();
+		private final List<List<Node>> branches = new ArrayList<List<Node>>();
+
+		List<Node> addBranch(Condition condition) {
+			List<Node> branch = new ArrayList<Node>();
+			conditions.add(condition);
+			branches.add(branch);
+			return branch;
+		}
+
+		List<Node> getLastBranch() {
+			return branches.get(branches.size() - 1);
+		}
+
+		@Override
+		public void append(StringBuilder code, Set<String> features) {
+			for (int i = 0; i < conditions.size(); i++) {
+				Condition condition = conditions.get(i);
+				if (condition == null || condition.evaluate(features)) {
+					for (Node node : branches.get(i)) {
+						node.append(code, features);
+					}
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Disjunction of conjunctions of defined(FEATURE) or !defined(FEATURE).
+	 * The "and" operator has precedence over "or" as in javapp.
+	 */
+	static class Condition {
+		private static final String DEFINED = "defined(";
+		private static final String NOT = "!";
+
+		private final List<List<String>> definedTerms = new ArrayList<List<String>>();
+		private final List<List<String>> notDefinedTerms = new ArrayList<List<String>>();
+
+		static Condition parse(String text) {
+			Condition condition = new Condition();
+			condition.addTerm();
+			boolean expectOperand = true;
+			for (String token : text.trim().split("\\s+")) {
+				if (expectOperand) {
+					boolean negated = token.startsWith(NOT);
+					String operand = negated ? token.substring(NOT.length()) : token;
+					if (!operand.startsWith(DEFINED) || !operand.endsWith(")")) {
+						throw new IllegalArgumentException("Unsupported condition: " + text.trim());
+					}
+					String feature = operand.substring(DEFINED.length(), operand.length() - 1);
+					(negated ? condition.getLast(condition.notDefinedTerms)
+							: condition.getLast(condition.definedTerms)).add(feature);
+				} else if (token.equals("or")) {
+					condition.addTerm();
+				} else if (!token.equals("and")) {
+					throw new IllegalArgumentException("Unsupported condition: " + text.trim());
+				}
+				expectOperand = !expectOperand;
+			}
+			if (expectOperand) {
+				throw new IllegalArgumentException("Unsupported condition: " + text.trim());
+			}
+			return condition;
+		}
+
+		private void addTerm() {
+			definedTerms.add(new ArrayList<String>());
+			notDefinedTerms.add(new ArrayList<String>());
+		}
+
+		private List<String> getLast(List<List<String>> terms) {
+			return terms.get(terms.size() - 1);
+		}
+
+		void addFeatures(Set<String> features) {
+			for (int i = 0; i < definedTerms.size(); i++) {
+				features.addAll(definedTerms.get(i));
+				features.addAll(notDefinedTerms.get(i));
+			}
+		}
+
+		boolean evaluate(Collection<String> features) {
+			for (int i = 0; i < definedTerms.size(); i++) {
+				if (features.containsAll(definedTerms.get(i)) && !containsAny(features, notDefinedTerms.get(i))) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private static boolean containsAny(Collection<String> features, List<String> notDefined) {
+			for (String feature : notDefined) {
+				if (features.contains(feature)) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+}
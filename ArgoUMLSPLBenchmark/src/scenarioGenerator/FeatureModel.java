@@ -0,0 +1,288 @@
+package scenarioGenerator;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import utils.FileUtils;
+
+/**
+ * Feature model of featuresInfo/featureModel.txt. Each line is a feature and
+ * the children of a feature are indented with one more tab than the feature.
+ * Features prefixed with [optional] are optional, the others are mandatory.
+ * 
+ * The configurations are bit sets where the bit i is the i-th optional feature
+ * in the order of the file. Mandatory features are in all the configurations
+ * so they are not part of the bit sets. An optional feature can only be
+ * selected if its optional ancestors are selected.
+ * 
+ * @author jabier.martinez
+ */
+public class FeatureModel {
+
+	private static final String OPTIONAL = "[optional]";
+
+	// optional features
+	private List<String> features = new ArrayList<String>();
+	private Map<String, Integer> featureIndexes = new HashMap<String, Integer>();
+	// index of the closest optional ancestor, -1 if there is none
+	private List<Integer> parents = new ArrayList<Integer>();
+	private List<BitSet> ancestors = new ArrayList<BitSet>();
+	private List<BitSet> descendants = new ArrayList<BitSet>();
+	// optional features without optional ancestors
+	private List<Integer> roots = new ArrayList<Integer>();
+	private List<List<Integer>> children = new ArrayList<List<Integer>>();
+	// number of configurations of the subtree of a selected feature
+	private double[] subtreeConfigurations;
+
+	/**
+	 * Read the feature model
+	 * 
+	 * @param featureModelFile
+	 * @throws IllegalArgumentException
+	 *             if the file uses unsupported constructs
+	 */
+	public FeatureModel(File featureModelFile) {
+		this(FileUtils.getLinesOfFile(featureModelFile));
+	}
+
+	/**
+	 * Parse the lines of a feature model
+	 * 
+	 * @param lines
+	 * @throws IllegalArgumentException
+	 *             if the lines use unsupported constructs
+	 */
+	public FeatureModel(List<String> lines) {
+		// closest optional feature (or -1) at each depth of the current path
+		List<Integer> path = new ArrayList<Integer>();
+		for (String line : lines) {
+			if (line.trim().isEmpty()) {
+				continue;
+			}
+			int depth = 0;
+			while (line.charAt(depth) == '\t') {
+				depth++;
+			}
+			if (depth > path.size()) {
+				throw new IllegalArgumentException("Wrong indentation at " + line.trim());
+			}
+			while (path.size() > depth) {
+				path.remove(path.size() - 1);
+			}
+			int parent = path.isEmpty() ? -1 : path.get(path.size() - 1);
+			String name = line.trim();
+			if (name.startsWith(OPTIONAL)) {
+				int feature = addFeature(name.substring(OPTIONAL.length()).trim(), parent);
+				path.add(feature);
+			} else if (name.startsWith("[")) {
+				throw new IllegalArgumentException("Unsupported feature type at " + name);
+			} else {
+				// mandatory features belong to the closest optional ancestor
+				path.add(parent);
+			}
+		}
+		subtreeConfigurations = new double[features.size()];
+		for (int feature = features.size() - 1; feature >= 0; feature--) {
+			// children are after their parents in the file
+			subtreeConfigurations[feature] = countConfigurations(children.get(feature));
+		}
+	}
+
+	private int addFeature(String name, int parent) {
+		if (featureIndexes.containsKey(name)) {
+			throw new IllegalArgumentException("Repeated feature " + name);
+		}
+		int feature = features.size();
+		features.add(name);
+		featureIndexes.put(name, feature);
+		parents.add(parent);
+		children.add(new ArrayList<Integer>());
+		descendants.add(new BitSet());
+		BitSet featureAncestors = new BitSet();
+		if (parent == -1) {
+			roots.add(feature);
+		} else {
+			children.get(parent).add(feature);
+			featureAncestors.or(ancestors.get(parent));
+			featureAncestors.set(parent);
+		}
+		ancestors.add(featureAncestors);
+		for (int ancestor = featureAncestors.nextSetBit(0); ancestor >= 0; ancestor = featureAncestors
+				.nextSetBit(ancestor + 1)) {
+			descendants.get(ancestor).set(feature);
+		}
+		return feature;
+	}
+
+	/**
+	 * Get the optional features
+	 * 
+	 * @return the names in the order of the bits of the configurations
+	 */
+	public List<String> getFeatures() {
+		return features;
+	}
+
+	/**
+	 * Get the number of optional features
+	 * 
+	 * @return the number of features
+	 */
+	public int size() {
+		return features.size();
+	}
+
+	/**
+	 * Get the optional ancestors of a feature
+	 * 
+	 * @param feature
+	 * @return the bits of the ancestors, do not modify it
+	 */
+	public BitSet getAncestors(int feature) {
+		return ancestors.get(feature);
+	}
+
+	/**
+	 * Get the optional descendants of a feature
+	 * 
+	 * @param feature
+	 * @return the bits of the descendants, do not modify it
+	 */
+	public BitSet getDescendants(int feature) {
+		return descendants.get(feature);
+	}
+
+	/**
+	 * Whether all the selected features have their ancestors selected
+	 * 
+	 * @param configuration
+	 * @return true if valid
+	 */
+	public boolean isValid(BitSet configuration) {
+		for (int feature = configuration.nextSetBit(0); feature >= 0; feature = configuration
+				.nextSetBit(feature + 1)) {
+			if (feature >= features.size()) {
+				return false;
+			}
+			int parent = parents.get(feature);
+			if (parent != -1 && !configuration.get(parent)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Get the number of valid configurations. It is a double because it grows
+	 * exponentially with the number of features.
+	 * 
+	 * @return the number of configurations
+	 */
+	public double countConfigurations() {
+		return countConfigurations(roots);
+	}
+
+	private double countConfigurations(List<Integer> optionalFeatures) {
+		double configurations = 1;
+		for (int feature : optionalFeatures) {
+			// the feature is not selected, or selected with any subtree
+			configurations *= subtreeConfigurations[feature] + 1;
+		}
+		return configurations;
+	}
+
+	/**
+	 * Get all the valid configurations
+	 * 
+	 * @return the configurations
+	 * @throws IllegalArgumentException
+	 *             if there are too many configurations to keep them in memory
+	 */
+	public List<BitSet> getAllConfigurations() {
+		if (countConfigurations() > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException(countConfigurations() + " configurations are too many");
+		}
+		List<BitSet> configurations = new ArrayList<BitSet>();
+		configurations.add(new BitSet());
+		// the parents are decided before their children
+		for (int feature = 0; feature < features.size(); feature++) {
+			int parent = parents.get(feature);
+			int size = configurations.size();
+			for (int i = 0; i < size; i++) {
+				BitSet configuration = configurations.get(i);
+				if (parent == -1 || configuration.get(parent)) {
+					BitSet withFeature = (BitSet) configuration.clone();
+					withFeature.set(feature);
+					configurations.add(withFeature);
+				}
+			}
+		}
+		return configurations;
+	}
+
+	/**
+	 * Get a random valid configuration. All the valid configurations have the
+	 * same probability.
+	 * 
+	 * @param random
+	 * @return the configuration
+	 */
+	public BitSet getRandomConfiguration(Random random) {
+		BitSet configuration = new BitSet();
+		List<Integer> pending = new ArrayList<Integer>(roots);
+		while (!pending.isEmpty()) {
+			int feature = pending.remove(pending.size() - 1);
+			// selected in subtreeConfigurations of subtreeConfigurations + 1
+			double probability = subtreeConfigurations[feature] / (subtreeConfigurations[feature] + 1);
+			if (Double.isNaN(probability) || random.nextDouble() < probability) {
+				configuration.set(feature);
+				pending.addAll(children.get(feature));
+			}
+		}
+		return configuration;
+	}
+
+	/**
+	 * Get the names of the selected features
+	 * 
+	 * @param configuration
+	 * @return the names in the order of the feature model
+	 */
+	public List<String> getFeatures(BitSet configuration) {
+		List<String> selected = new ArrayList<String>();
+		for (int feature = configuration.nextSetBit(0); feature >= 0; feature = configuration
+				.nextSetBit(feature + 1)) {
+			selected.add(features.get(feature));
+		}
+		return selected;
+	}
+
+	/**
+	 * Get the configuration of a list of feature names
+	 * 
+	 * @param selected
+	 * @return the configuration
+	 * @throws IllegalArgumentException
+	 *             if a feature is not an optional feature of the model
+	 */
+	public BitSet getConfiguration(Collection<String> selected) {
+		BitSet configuration = new BitSet();
+		for (String name : selected) {
+			if (name.trim().isEmpty()) {
+				continue;
+			}
+			Integer feature = featureIndexes.get(name.trim());
+			if (feature == null) {
+				throw new IllegalArgumentException(name + " is not an optional feature of the feature model");
+			}
+			configuration.set(feature);
+		}
+		return configuration;
+	}
+}
@@ -2,6 +2,7 @@ package scenarioGenerator;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Random;
 
@@ -13,6 +14,10 @@ import utils.FileUtils;
  * they cover all the features. If the random selection does not cover all
  * features, we repeat again the process.
  * 
+ * The configs are read only once and each config is the bit set of its
+ * features (see FeatureModel), so checking the coverage is cheap. For new
+ * scenarios see ScenarioConfigsGenerator.
+ * 
  * @author jabier.martinez
  */
 public class RandomScenariosConfigsGenerator {
@@ -36,17 +41,14 @@ public class RandomScenariosConfigsGenerator {
 
 	public static void getRandom(int numberOfVariants) {
 		System.out.println("Creating Random Scenario with " + numberOfVariants + " variants.");
-		List<String> features = new ArrayList<String>();
-		features.add("COGNITIVE");
-		features.add("LOGGING");
-		features.add("ACTIVITYDIAGRAM");
-		features.add("STATEDIAGRAM");
-		features.add("SEQUENCEDIAGRAM");
-		features.add("USECASEDIAGRAM");
-		features.add("COLLABORATIONDIAGRAM");
-		features.add("DEPLOYMENTDIAGRAM");
+		FeatureModel featureModel = new FeatureModel(new File("featuresInfo/featureModel.txt"));
 
-		File configs = new File("scenarios/ScenarioAllVariants/configs");
+		// Read the configs once
+		File[] configs = new File("scenarios/ScenarioAllVariants/configs").listFiles();
+		List<BitSet> configurations = new ArrayList<BitSet>();
+		for (File config : configs) {
+			configurations.add(featureModel.getConfiguration(FileUtils.getLinesOfFile(config)));
+		}
 
 		boolean found = false;
 		List<Integer> selected = null;
@@ -55,27 +57,18 @@ public class RandomScenariosConfigsGenerator {
 			// Get random indexes
 			selected = new ArrayList<Integer>();
 			while (selected.size() != numberOfVariants) {
-				Integer integer = random.nextInt(configs.listFiles().length);
+				Integer integer = random.nextInt(configs.length);
 				if (!selected.contains(integer)) {
 					selected.add(integer);
 				}
 			}
 
 			// Check that all features are covered
-			List<String> coveredFeatures = new ArrayList<String>();
+			BitSet coveredFeatures = new BitSet();
 			for (Integer sel : selected) {
-				File selFile = configs.listFiles()[sel];
-				List<String> selFileFeatures = FileUtils.getLinesOfFile(selFile);
-				for (String f : selFileFeatures) {
-					if (!coveredFeatures.contains(f)) {
-						coveredFeatures.add(f);
-						if (coveredFeatures.containsAll(features)) {
-							found = true;
-							break;
-						}
-					}
-				}
+				coveredFeatures.or(configurations.get(sel));
 			}
+			found = coveredFeatures.cardinality() == featureModel.size();
 		}
 
 		// We have the selected
@@ -92,7 +85,7 @@ public class RandomScenariosConfigsGenerator {
 
 		int i = 1;
 		for (Integer s : selected) {
-			File sourceFile = configs.listFiles()[s];
+			File sourceFile = configs[s];
 			File destinationFile = new File(confFolder, getNumberWithZeros(i, 99999) + ".config");
 			FileUtils.copyFile(sourceFile, destinationFile);
 			i++;
@@ -0,0 +1,521 @@
+package scenarioGenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import utils.FileUtils;
+
+/**
+ * Generates the configs of scenarios in memory from the feature model. The
+ * configurations are bit sets of the optional features (see FeatureModel) and
+ * the random choices use a seed, so the same seed generates the same
+ * scenarios.
+ * 
+ * Random scenarios have distinct configurations covering all the features.
+ * T-wise scenarios cover all the valid combinations of t features (selected or
+ * not) and they are built with a greedy algorithm: each new configuration is
+ * the one covering more uncovered combinations among some random candidates.
+ * 
+ * @author jabier.martinez
+ */
+public class ScenarioConfigsGenerator {
+
+	/**
+	 * Candidate configurations compared for each configuration of a t-wise
+	 * scenario
+	 */
+	private static final int CANDIDATES = 20;
+
+	/**
+	 * Random scenarios rejected because they do not cover all the features
+	 * before repairing one
+	 */
+	private static final int MAX_REJECTED_SCENARIOS = 100;
+
+	private FeatureModel featureModel;
+	private Random random;
+
+	public static void main(String[] args) {
+		FeatureModel featureModel = new FeatureModel(new File("featuresInfo/featureModel.txt"));
+		ScenarioConfigsGenerator generator = new ScenarioConfigsGenerator(featureModel, 1);
+		System.out.println(featureModel.size() + " optional features and " + (long) featureModel.countConfigurations()
+				+ " configurations");
+		List<BitSet> pairWise = generator.readScenario(new File("scenarios/ScenarioPairWiseVariants"));
+		System.out.println("ScenarioPairWiseVariants: " + pairWise.size() + " configurations, 2-wise coverage "
+				+ generator.getCoverage(pairWise, 2));
+		for (int t = 2; t <= 3; t++) {
+			long start = System.currentTimeMillis();
+			List<BitSet> tWise = generator.getTWise(t);
+			System.out.println(t + "-wise: " + tWise.size() + " configurations in "
+					+ (System.currentTimeMillis() - start) + " ms");
+		}
+	}
+
+	/**
+	 * @param featureModel
+	 * @param seed
+	 *            for the random choices
+	 */
+	public ScenarioConfigsGenerator(FeatureModel featureModel, long seed) {
+		this.featureModel = featureModel;
+		this.random = new Random(seed);
+	}
+
+	/**
+	 * Get all the valid configurations
+	 * 
+	 * @return the configurations
+	 */
+	public List<BitSet> getAll() {
+		return featureModel.getAllConfigurations();
+	}
+
+	/**
+	 * Get distinct random configurations where each feature is selected in at
+	 * least one configuration. Random scenarios are rejected until one covers
+	 * all the features. If this takes too long, the uncovered features are
+	 * added to random configurations of the last scenario.
+	 * 
+	 * @param numberOfVariants
+	 * @return the configurations
+	 * @throws IllegalArgumentException
+	 *             if there are not enough valid configurations
+	 */
+	public List<BitSet> getRandom(int numberOfVariants) {
+		if (numberOfVariants < 1 || numberOfVariants > featureModel.countConfigurations()) {
+			throw new IllegalArgumentException("There are not " + numberOfVariants + " valid configurations");
+		}
+		BitSet allFeatures = new BitSet();
+		allFeatures.set(0, featureModel.size());
+		int rejected = 0;
+		while (true) {
+			List<BitSet> configurations = getDistinctRandom(numberOfVariants);
+			BitSet uncovered = (BitSet) allFeatures.clone();
+			for (BitSet configuration : configurations) {
+				uncovered.andNot(configuration);
+			}
+			if (uncovered.isEmpty()) {
+				return configurations;
+			}
+			rejected++;
+			if (rejected >= MAX_REJECTED_SCENARIOS) {
+				for (int feature = uncovered.nextSetBit(0); feature >= 0; feature = uncovered
+						.nextSetBit(feature + 1)) {
+					BitSet configuration = configurations.get(random.nextInt(configurations.size()));
+					configuration.set(feature);
+					configuration.or(featureModel.getAncestors(feature));
+				}
+				if (new HashSet<BitSet>(configurations).size() == configurations.size()) {
+					return configurations;
+				}
+			}
+		}
+	}
+
+	private List<BitSet> getDistinctRandom(int numberOfVariants) {
+		Set<BitSet> selected = new HashSet<BitSet>();
+		List<BitSet> configurations = new ArrayList<BitSet>();
+		while (configurations.size() != numberOfVariants) {
+			BitSet configuration = featureModel.getRandomConfiguration(random);
+			if (selected.add(configuration)) {
+				configurations.add(configuration);
+			}
+		}
+		return configurations;
+	}
+
+	/**
+	 * Get configurations covering all the valid combinations of t features
+	 * 
+	 * @param t
+	 *            strength, usually 2 (pairwise) or 3
+	 * @return the configurations
+	 * @throws IllegalArgumentException
+	 *             if there are too many combinations
+	 */
+	public List<BitSet> getTWise(int t) {
+		Combinations combinations = new Combinations(featureModel, t);
+		BitSet uncovered = combinations.getValid();
+		List<BitSet> configurations = new ArrayList<BitSet>();
+		while (!uncovered.isEmpty()) {
+			BitSet best = null;
+			int bestGain = -1;
+			for (int candidate = 0; candidate < CANDIDATES; candidate++) {
+				int[] gain = new int[1];
+				BitSet configuration = getCandidate(combinations, uncovered, gain);
+				if (gain[0] > bestGain) {
+					best = configuration;
+					bestGain = gain[0];
+				}
+			}
+			uncovered.andNot(combinations.getCovered(best, uncovered));
+			configurations.add(best);
+		}
+		return configurations;
+	}
+
+	/**
+	 * Build a configuration starting with a random uncovered combination and
+	 * deciding the other features in random order. Each feature gets the
+	 * value covering more uncovered combinations with the features already
+	 * decided. The sum of these gains is used to compare the candidates, it is
+	 * cheaper than counting all the covered combinations.
+	 */
+	private BitSet getCandidate(Combinations combinations, BitSet uncovered, int[] gain) {
+		int[] values = new int[featureModel.size()];
+		for (int feature = 0; feature < values.length; feature++) {
+			values[feature] = -1;
+		}
+		List<Integer> decided = new ArrayList<Integer>();
+		int first = uncovered.nextSetBit(random.nextInt(combinations.size()));
+		if (first == -1) {
+			first = uncovered.nextSetBit(0);
+		}
+		int[] features = combinations.getFeatures(first);
+		for (int i = 0; i < features.length; i++) {
+			decide(values, decided, features[i], combinations.getValue(first, i));
+		}
+		List<Integer> order = new ArrayList<Integer>();
+		for (int feature = 0; feature < values.length; feature++) {
+			order.add(feature);
+		}
+		Collections.shuffle(order, random);
+		for (int feature : order) {
+			if (values[feature] != -1) {
+				continue;
+			}
+			boolean canSelect = true;
+			BitSet ancestors = featureModel.getAncestors(feature);
+			for (int ancestor = ancestors.nextSetBit(0); ancestor >= 0; ancestor = ancestors
+					.nextSetBit(ancestor + 1)) {
+				canSelect &= values[ancestor] != 0;
+			}
+			boolean canDeselect = true;
+			BitSet descendants = featureModel.getDescendants(feature);
+			for (int descendant = descendants.nextSetBit(0); descendant >= 0; descendant = descendants
+					.nextSetBit(descendant + 1)) {
+				canDeselect &= values[descendant] != 1;
+			}
+			int value;
+			if (canSelect && canDeselect) {
+				int[] gains = combinations.getGains(values, decided, feature, uncovered);
+				if (gains[0] == gains[1]) {
+					value = random.nextInt(2);
+				} else {
+					value = gains[1] > gains[0] ? 1 : 0;
+				}
+				gain[0] += gains[value];
+			} else {
+				value = canSelect ? 1 : 0;
+			}
+			decide(values, decided, feature, value);
+		}
+		BitSet configuration = new BitSet();
+		for (int feature = 0; feature < values.length; feature++) {
+			if (values[feature] == 1) {
+				configuration.set(feature);
+			}
+		}
+		return configuration;
+	}
+
+	/**
+	 * Decide the value of a feature and the values of the features that depend
+	 * on it: a selected feature needs its ancestors and a deselected feature
+	 * excludes its descendants
+	 */
+	private void decide(int[] values, List<Integer> decided, int feature, int value) {
+		if (values[feature] != -1) {
+			return;
+		}
+		values[feature] = value;
+		decided.add(feature);
+		BitSet dependants = value == 1 ? featureModel.getAncestors(feature) : featureModel.getDescendants(feature);
+		for (int dependant = dependants.nextSetBit(0); dependant >= 0; dependant = dependants
+				.nextSetBit(dependant + 1)) {
+			decide(values, decided, dependant, value);
+		}
+	}
+
+	/**
+	 * Get the ratio of valid combinations of t features covered by some
+	 * configurations
+	 * 
+	 * @param configurations
+	 * @param t
+	 * @return the coverage between 0 and 1
+	 */
+	public double getCoverage(List<BitSet> configurations, int t) {
+		Combinations combinations = new Combinations(featureModel, t);
+		BitSet valid = combinations.getValid();
+		BitSet uncovered = (BitSet) valid.clone();
+		for (BitSet configuration : configurations) {
+			uncovered.andNot(combinations.getCovered(configuration, uncovered));
+		}
+		return (double) (valid.cardinality() - uncovered.cardinality()) / (double) valid.cardinality();
+	}
+
+	/**
+	 * Get the configurations of the configs folder of a scenario
+	 * 
+	 * @param scenarioFolder
+	 * @return the configurations
+	 */
+	public List<BitSet> readScenario(File scenarioFolder) {
+		List<BitSet> configurations = new ArrayList<BitSet>();
+		File[] configs = new File(scenarioFolder, "configs").listFiles();
+		if (configs != null) {
+			for (File config : configs) {
+				if (config.getName().endsWith(".config")) {
+					configurations.add(featureModel.getConfiguration(FileUtils.getLinesOfFile(config)));
+				}
+			}
+		}
+		return configurations;
+	}
+
+	/**
+	 * Write the configs folder and the build files of a scenario. The existing
+	 * configs of the scenario are replaced.
+	 * 
+	 * @param scenarioFolder
+	 * @param configurations
+	 * @throws IOException
+	 */
+	public void writeScenario(File scenarioFolder, List<BitSet> configurations) throws IOException {
+		File configsFolder = new File(scenarioFolder, "configs");
+		configsFolder.mkdirs();
+		for (File config : configsFolder.listFiles()) {
+			if (config.getName().endsWith(".config")) {
+				Files.delete(config.toPath());
+			}
+		}
+		int i = 1;
+		for (BitSet configuration : configurations) {
+			StringBuilder lines = new StringBuilder();
+			for (String feature : featureModel.getFeatures(configuration)) {
+				lines.append(feature);
+				lines.append("\r\n");
+			}
+			File config = new File(configsFolder,
+					RandomScenariosConfigsGenerator.getNumberWithZeros(i, 99999) + ".config");
+			Files.write(config.toPath(), lines.toString().getBytes(StandardCharsets.UTF_8));
+			i++;
+		}
+		ScenarioBuildXMLFilesGenerator.generateBuildXML(scenarioFolder);
+	}
+
+	/**
+	 * All the combinations of t features with their values. A combination is
+	 * identified by the rank of its features (in colexicographic order)
+	 * multiplied by 2^t plus the bits of the values.
+	 */
+	private static class Combinations {
+		private FeatureModel featureModel;
+		private int t;
+		// binomial coefficients
+		private long[][] binomials;
+		private int size;
+
+		Combinations(FeatureModel featureModel, int t) {
+			int n = featureModel.size();
+			if (t < 1 || t > n) {
+				throw new IllegalArgumentException(t + "-wise is not possible with " + n + " features");
+			}
+			this.featureModel = featureModel;
+			this.t = t;
+			binomials = new long[n + 1][t + 1];
+			for (int i = 0; i <= n; i++) {
+				binomials[i][0] = 1;
+				for (int k = 1; k <= t && k <= i; k++) {
+					binomials[i][k] = binomials[i - 1][k - 1] + (k <= i - 1 ? binomials[i - 1][k] : 0);
+				}
+			}
+			long combinations = binomials[n][t] << t;
+			if (binomials[n][t] > Integer.MAX_VALUE || combinations > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException(
+						t + "-wise of " + n + " features has too many combinations: " + combinations);
+			}
+			size = (int) combinations;
+		}
+
+		int size() {
+			return size;
+		}
+
+		/**
+		 * Get the combinations that are possible in a valid configuration
+		 */
+		BitSet getValid() {
+			BitSet valid = new BitSet(size);
+			int[] features = first();
+			do {
+				int rank = rank(features);
+				for (int values = 0; values < 1 << t; values++) {
+					if (isValid(features, values)) {
+						valid.set((rank << t) | values);
+					}
+				}
+			} while (next(features));
+			return valid;
+		}
+
+		/**
+		 * Ancestors come before their descendants in the feature model, so a
+		 * combination is not valid if a feature is selected and one of the
+		 * previous features is its deselected ancestor
+		 */
+		private boolean isValid(int[] features, int values) {
+			for (int i = 0; i < t; i++) {
+				if ((values & (1 << i)) == 0) {
+					continue;
+				}
+				BitSet ancestors = featureModel.getAncestors(features[i]);
+				for (int j = 0; j < i; j++) {
+					if ((values & (1 << j)) == 0 && ancestors.get(features[j])) {
+						return false;
+					}
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Get the combinations of a configuration that are in a set
+		 */
+		BitSet getCovered(BitSet configuration, BitSet combinations) {
+			BitSet covered = new BitSet();
+			int[] features = first();
+			do {
+				int index = index(features, configuration);
+				if (combinations.get(index)) {
+					covered.set(index);
+				}
+			} while (next(features));
+			return covered;
+		}
+
+		/**
+		 * Number of uncovered combinations of a feature and t - 1 decided
+		 * features, with the feature deselected and selected
+		 */
+		int[] getGains(int[] values, List<Integer> decided, int feature, BitSet uncovered) {
+			int[] gains = new int[2];
+			if (decided.size() < t - 1) {
+				return gains;
+			}
+			int[] sortedDecided = new int[decided.size()];
+			for (int i = 0; i < sortedDecided.length; i++) {
+				sortedDecided[i] = decided.get(i);
+			}
+			Arrays.sort(sortedDecided);
+			int[] others = new int[t - 1];
+			for (int i = 0; i < others.length; i++) {
+				others[i] = i;
+			}
+			int[] features = new int[t];
+			do {
+				// the decided features and the feature, sorted
+				int featureValues = 0;
+				int featurePosition = -1;
+				int other = 0;
+				for (int i = 0; i < t; i++) {
+					if (featurePosition == -1
+							&& (other == others.length || feature < sortedDecided[others[other]])) {
+						features[i] = feature;
+						featurePosition = i;
+					} else {
+						features[i] = sortedDecided[others[other]];
+						featureValues |= values[features[i]] << i;
+						other++;
+					}
+				}
+				int index = (rank(features) << t) | featureValues;
+				if (uncovered.get(index)) {
+					gains[0]++;
+				}
+				if (uncovered.get(index | (1 << featurePosition))) {
+					gains[1]++;
+				}
+			} while (next(others, sortedDecided.length));
+			return gains;
+		}
+
+		int[] getFeatures(int index) {
+			int rank = index >> t;
+			int[] features = new int[t];
+			for (int k = t; k >= 1; k--) {
+				int feature = k - 1;
+				while (binomials[feature + 1][k] <= rank) {
+					feature++;
+				}
+				features[k - 1] = feature;
+				rank -= binomials[feature][k];
+			}
+			return features;
+		}
+
+		int getValue(int index, int position) {
+			return (index >> position) & 1;
+		}
+
+		private int index(int[] features, BitSet configuration) {
+			int values = 0;
+			for (int i = 0; i < t; i++) {
+				if (configuration.get(features[i])) {
+					values |= 1 << i;
+				}
+			}
+			return (rank(features) << t) | values;
+		}
+
+		private int rank(int[] features) {
+			long rank = 0;
+			for (int i = 0; i < features.length; i++) {
+				rank += binomials[features[i]][i + 1];
+			}
+			return (int) rank;
+		}
+
+		private int[] first() {
+			int[] features = new int[t];
+			for (int i = 0; i < t; i++) {
+				features[i] = i;
+			}
+			return features;
+		}
+
+		private boolean next(int[] features) {
+			return next(features, featureModel.size());
+		}
+
+		/**
+		 * Next combination of k elements of n in lexicographic order
+		 */
+		private static boolean next(int[] combination, int n) {
+			int k = combination.length;
+			int i = k - 1;
+			while (i >= 0 && combination[i] == n - k + i) {
+				i--;
+			}
+			if (i < 0) {
+				return false;
+			}
+			combination[i]++;
+			for (int j = i + 1; j < k; j++) {
+				combination[j] = combination[j - 1] + 1;
+			}
+			return true;
+		}
+	}
+}
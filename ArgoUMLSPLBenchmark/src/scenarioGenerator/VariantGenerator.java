@@ -0,0 +1,476 @@
+package scenarioGenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import utils.FileUtils;
+
+/**
+ * It creates the variants of the scenarios based on the configs folder of each
+ * scenario. It produces the same files and code as the build.xml files of the
+ * scenarios (generate-variant macro) without calling Ant and javapp for each
+ * variant. The ArgoUML SPL source code is read and tokenized only once, and
+ * then all the variants of a scenario are generated in parallel.
+ * 
+ * The java files are not byte-identical to the ones of the build.xml files:
+ * the original line terminators and bytes are kept, while javapp writes the
+ * line terminators of the platform and a line terminator at the end of the
+ * file, and the copy of the build.xml files re-encodes the bytes that are not
+ * ASCII with the default charset of the platform. See AnnotatedSourceFile.
+ * 
+ * The files that do not depend on the configuration (java files without
+ * annotations, resources and libraries) are hard-linked to the original files,
+ * and a preprocessed file is hard-linked to the same file of another variant
+ * with the same selection of the features used in the file. If the file
+ * system does not support hard links, the files are copied. Do not modify the
+ * files of the variants in place, it will modify the original files.
+ * 
+ * The files of a variant can also be read without generating the variant, see
+ * getContent. This is used by the virtual variants of utils.VirtualVariant.
+ * 
+ * @author jabier.martinez
+ */
+public class VariantGenerator {
+
+	public static final String GENERATOR_PROJECT = "org.splevo.casestudy.argoumlspl.generator";
+	public static final String APP_PROJECT = "argouml-app";
+	public static final String MDR_PROJECT = "argouml-core-model-mdr";
+	public static final String EUML_PROJECT = "argouml-core-model-euml";
+
+	/**
+	 * Projects preprocessed by the jpp-preprocess target of argouml-build
+	 */
+	public static final String[] PREPROCESSED_PROJECTS = { APP_PROJECT, "argouml-core-diagrams-sequence2",
+			"argouml-core-model", EUML_PROJECT, MDR_PROJECT };
+
+	/**
+	 * Folders of argouml-app copied recursively to the variant
+	 */
+	private static final String[] APP_RESOURCE_FOLDERS = { "src/org/argouml/i18n", "src/org/argouml/Images",
+			"src/org/argouml/profile/profiles/uml14", "src/org/argouml/resource", "src/templates", "tests" };
+
+	private static final String PROJECT_NAME_TOKEN = "[project.name]";
+	private static final String LAUNCH_NAME_TOKEN = "@PROJECT-NAME@";
+
+	/**
+	 * Java files smaller than this are removed from the variants
+	 */
+	private static final int MIN_JAVA_FILE_SIZE = 4;
+
+	/**
+	 * Projected content of the java files removed from a variant
+	 */
+	private static final byte[] REMOVED = new byte[0];
+
+	private File rootFolder;
+	private int threads;
+	private long tokenizationTime;
+
+	/**
+	 * Files of a variant by their relative path inside the variant folder
+	 */
+	private Map<String, VariantFile> variantFiles = new LinkedHashMap<String, VariantFile>();
+
+	/**
+	 * File of the variants
+	 */
+	private static class VariantFile {
+		File original;
+		AnnotatedSourceFile annotatedFile;
+		// features used in the annotated file
+		Set<String> features;
+		// already generated files by the features of the configuration
+		Map<String, File> generated = new HashMap<String, File>();
+		// projected content by the features of the configuration
+		Map<String, byte[]> projected = new ConcurrentHashMap<String, byte[]>();
+
+		VariantFile(File original) {
+			this.original = original;
+		}
+	}
+
+	public static void main(String[] args) {
+		VariantGenerator generator = new VariantGenerator(new File(".."));
+		System.out.println("Tokenized " + generator.getPaths().size() + " files in " + generator.getTokenizationTime()
+				+ " ms");
+		generator.generateScenario(new File("scenarios/ScenarioOriginalVariant"));
+		generator.generateScenario(new File("scenarios/ScenarioPairWiseVariants"));
+		generator.generateScenario(new File("scenarios/ScenarioAllVariants"));
+		generator.generateScenario(new File("scenarios/ScenarioTraditionalVariants"));
+
+		generator.generateScenario(new File("scenarios/ScenarioRandom002Variants"));
+		generator.generateScenario(new File("scenarios/ScenarioRandom003Variants"));
+		generator.generateScenario(new File("scenarios/ScenarioRandom004Variants"));
+		generator.generateScenario(new File("scenarios/ScenarioRandom005Variants"));
+		generator.generateScenario(new File("scenarios/ScenarioRandom006Variants"));
+		generator.generateScenario(new File("scenarios/ScenarioRandom007Variants"));
+		generator.generateScenario(new File("scenarios/ScenarioRandom008Variants"));
+		generator.generateScenario(new File("scenarios/ScenarioRandom009Variants"));
+		generator.generateScenario(new File("scenarios/ScenarioRandom010Variants"));
+		generator.generateScenario(new File("scenarios/ScenarioRandom050Variants"));
+		generator.generateScenario(new File("scenarios/ScenarioRandom100Variants"));
+	}
+
+	/**
+	 * Read and tokenize the ArgoUML SPL projects
+	 * 
+	 * @param rootFolder
+	 *            the folder containing the ArgoUML SPL projects and the
+	 *            generator project
+	 */
+	public VariantGenerator(File rootFolder) {
+		this(rootFolder, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Read and tokenize the ArgoUML SPL projects
+	 * 
+	 * @param rootFolder
+	 *            the folder containing the ArgoUML SPL projects and the
+	 *            generator project
+	 * @param threads
+	 *            number of variants generated at the same time
+	 */
+	public VariantGenerator(File rootFolder, int threads) {
+		this.rootFolder = rootFolder;
+		this.threads = threads;
+		long start = System.currentTimeMillis();
+
+		// prepare-eclipse-project
+		File generatorFolder = new File(rootFolder, GENERATOR_PROJECT);
+		File templates = new File(generatorFolder, "templates");
+		addFile(".classpath", new File(templates, "classpath-file.xml"));
+		addFile("build.properties", new File(templates, "build.properties"));
+		addFile("META-INF/MANIFEST.MF", new File(templates, "MANIFEST.MF"));
+		addFolder("lib", new File(rootFolder, APP_PROJECT + "/lib"));
+		addFolder("lib", new File(generatorFolder, "lib"));
+
+		// preprocessed files and the other files copied to the src folder
+		for (String project : PREPROCESSED_PROJECTS) {
+			for (File javaFile : FileUtils.getAllJavaFiles(new File(rootFolder, project + "/src"))) {
+				addAnnotatedFile(project + "/src", javaFile);
+			}
+		}
+		File mdrBuildJava = new File(rootFolder, MDR_PROJECT + "/build/java");
+		for (File file : getAllFiles(mdrBuildJava)) {
+			if (!file.getName().equals("readme-build-java.txt")) {
+				addFile("src/" + getRelativePath(mdrBuildJava, file), file);
+			}
+		}
+		File mdrSrc = new File(rootFolder, MDR_PROJECT + "/src");
+		addFiles("src", mdrSrc, new File(mdrSrc, "org/argouml/model/mdr/conversions"));
+		addFiles("src", mdrSrc, new File(mdrSrc, "org/argouml/model/mdr/mof"));
+		File eumlSrc = new File(rootFolder, EUML_PROJECT + "/src");
+		addFiles("src", eumlSrc, new File(eumlSrc, "org/argouml/model/metamodels/uml211"));
+
+		// non java files
+		File appFolder = new File(rootFolder, APP_PROJECT);
+		addFiles("", appFolder, new File(appFolder, "src/org/argouml"));
+		for (String resourceFolder : APP_RESOURCE_FOLDERS) {
+			addFolder(resourceFolder, new File(appFolder, resourceFolder));
+		}
+		for (File file : appFolder.listFiles()) {
+			if (file.isFile() && (file.getName().endsWith(".properties") || file.getName().equals("build.xml"))) {
+				addFile(file.getName(), file);
+			}
+		}
+
+		// consolidate libraries
+		addFolder("lib", new File(rootFolder, EUML_PROJECT + "/lib"));
+		addFolder("lib", new File(rootFolder, MDR_PROJECT + "/lib"));
+
+		tokenizationTime = System.currentTimeMillis() - start;
+	}
+
+	/**
+	 * Get the time spent reading and tokenizing the ArgoUML SPL projects
+	 * 
+	 * @return milliseconds
+	 */
+	public long getTokenizationTime() {
+		return tokenizationTime;
+	}
+
+	/**
+	 * Generate the variants of all the configs of a scenario in the variants
+	 * folder of the scenario. Existing variants are replaced.
+	 * 
+	 * @param scenarioFolder
+	 */
+	public void generateScenario(File scenarioFolder) {
+		System.out.println("Generating variants at " + scenarioFolder.getAbsolutePath());
+		long start = System.currentTimeMillis();
+		File configs = new File(scenarioFolder, "configs");
+		File variants = new File(scenarioFolder, "variants");
+		for (VariantFile variantFile : variantFiles.values()) {
+			// only link to the files of this scenario
+			variantFile.generated.clear();
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		for (File config : configs.listFiles()) {
+			if (config.getName().endsWith(".config")) {
+				futures.add(executor.submit(() -> {
+					generateVariant(config, new File(variants, config.getName()));
+					return null;
+				}));
+			}
+		}
+		try {
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			throw new RuntimeException("Variant generation failed for " + scenarioFolder.getName(), e);
+		} finally {
+			executor.shutdownNow();
+		}
+		System.out.println("Finished " + futures.size() + " variants in " + (System.currentTimeMillis() - start)
+				+ " ms");
+	}
+
+	/**
+	 * Generate one variant
+	 * 
+	 * @param config
+	 *            file with the features of the variant, one per line
+	 * @param variantFolder
+	 * @throws IOException
+	 */
+	public void generateVariant(File config, File variantFolder) throws IOException {
+		Set<String> features = getFeatures(config);
+		if (variantFolder.exists()) {
+			org.apache.commons.io.FileUtils.deleteDirectory(variantFolder);
+		}
+		new File(variantFolder, "src").mkdirs();
+		new File(variantFolder, "bin").mkdirs();
+		new File(variantFolder, "lib").mkdirs();
+
+		// templates with the name of the project
+		File templates = new File(rootFolder, GENERATOR_PROJECT + "/templates");
+		String projectName = variantFolder.getName();
+		writeTemplate(new File(templates, "project-file.xml"), new File(variantFolder, ".project"),
+				PROJECT_NAME_TOKEN, projectName);
+		writeTemplate(new File(templates, "launch-file.xml"), new File(variantFolder, "ArgoUML.launch"),
+				LAUNCH_NAME_TOKEN, projectName);
+
+		for (String path : variantFiles.keySet()) {
+			VariantFile variantFile = variantFiles.get(path);
+			File destination = new File(variantFolder, path);
+			if (variantFile.annotatedFile == null) {
+				linkOrCopy(variantFile.original, destination);
+				continue;
+			}
+			String key = getKey(variantFile, features);
+			synchronized (variantFile) {
+				if (variantFile.generated.containsKey(key)) {
+					File generated = variantFile.generated.get(key);
+					if (generated != null) {
+						linkOrCopy(generated, destination);
+					}
+					continue;
+				}
+				String code = variantFile.annotatedFile.getVariant(features);
+				if (path.endsWith(".java") && code.length() < MIN_JAVA_FILE_SIZE) {
+					// filter empty java files
+					variantFile.generated.put(key, null);
+					continue;
+				}
+				destination.getParentFile().mkdirs();
+				Files.write(destination.toPath(), code.getBytes(StandardCharsets.ISO_8859_1));
+				variantFile.generated.put(key, destination);
+			}
+		}
+	}
+
+	/**
+	 * Get the features of a configuration
+	 * 
+	 * @param config
+	 *            file with the features of the variant, one per line
+	 * @return the features
+	 */
+	public static Set<String> getFeatures(File config) {
+		Set<String> features = new HashSet<String>();
+		for (String line : FileUtils.getLinesOfFile(config)) {
+			if (!line.trim().isEmpty()) {
+				features.add(line.trim());
+			}
+		}
+		return features;
+	}
+
+	/**
+	 * Get the paths of the files of the variants relative to the variant
+	 * folder. The .project and ArgoUML.launch files are not included and a
+	 * java file can be empty in some variants, see getContent.
+	 * 
+	 * @return the paths
+	 */
+	public Set<String> getPaths() {
+		return Collections.unmodifiableSet(variantFiles.keySet());
+	}
+
+	/**
+	 * Get the original file behind a path if its content does not depend on
+	 * the configuration
+	 * 
+	 * @param path
+	 *            relative to the variant folder
+	 * @return the original file or null if the file is preprocessed or unknown
+	 */
+	public File getOriginalFile(String path) {
+		VariantFile variantFile = variantFiles.get(path);
+		if (variantFile == null || variantFile.annotatedFile != null) {
+			return null;
+		}
+		return variantFile.original;
+	}
+
+	/**
+	 * Get the content of a file of a variant without generating the variant.
+	 * The preprocessed content is cached by the features used in the file, so
+	 * it is shared by the variants with the same selection of these features.
+	 * 
+	 * @param path
+	 *            relative to the variant folder
+	 * @param features
+	 *            the features of the configuration
+	 * @return the content or null if the file is not part of the variant
+	 * @throws IOException
+	 */
+	public byte[] getContent(String path, Set<String> features) throws IOException {
+		VariantFile variantFile = variantFiles.get(path);
+		if (variantFile == null) {
+			return null;
+		}
+		if (variantFile.annotatedFile == null) {
+			return Files.readAllBytes(variantFile.original.toPath());
+		}
+		byte[] content = variantFile.projected.computeIfAbsent(getKey(variantFile, features), key -> {
+			String code = variantFile.annotatedFile.getVariant(features);
+			if (path.endsWith(".java") && code.length() < MIN_JAVA_FILE_SIZE) {
+				return REMOVED;
+			}
+			return code.getBytes(StandardCharsets.ISO_8859_1);
+		});
+		return content == REMOVED ? null : content;
+	}
+
+	/**
+	 * The code of an annotated file only depends on the features used in the
+	 * file
+	 */
+	private static String getKey(VariantFile variantFile, Set<String> features) {
+		Set<String> usedFeatures = new TreeSet<String>(variantFile.features);
+		usedFeatures.retainAll(features);
+		return usedFeatures.toString();
+	}
+
+	private void addAnnotatedFile(String sourceFolder, File javaFile) {
+		String path = "src/" + getRelativePath(new File(rootFolder, sourceFolder), javaFile);
+		if (variantFiles.containsKey(path)) {
+			return;
+		}
+		VariantFile variantFile = new VariantFile(javaFile);
+		try {
+			String content = new String(Files.readAllBytes(javaFile.toPath()), StandardCharsets.ISO_8859_1);
+			if (AnnotatedSourceFile.isAnnotated(content)) {
+				variantFile.annotatedFile = AnnotatedSourceFile.parse(content);
+				variantFile.features = variantFile.annotatedFile.getFeatures();
+			} else if (content.length() < MIN_JAVA_FILE_SIZE) {
+				return;
+			}
+		} catch (IOException | IllegalArgumentException e) {
+			throw new RuntimeException("Failed to tokenize " + javaFile.getAbsolutePath(), e);
+		}
+		variantFiles.put(path, variantFile);
+	}
+
+	/**
+	 * Add the files directly inside a folder
+	 */
+	private void addFiles(String destinationFolder, File baseFolder, File folder) {
+		if (!folder.isDirectory()) {
+			return;
+		}
+		for (File file : folder.listFiles()) {
+			if (file.isFile()) {
+				addFile(getPath(destinationFolder, getRelativePath(baseFolder, file)), file);
+			}
+		}
+	}
+
+	/**
+	 * Add the files of a folder recursively
+	 */
+	private void addFolder(String destinationFolder, File folder) {
+		for (File file : getAllFiles(folder)) {
+			addFile(getPath(destinationFolder, getRelativePath(folder, file)), file);
+		}
+	}
+
+	private void addFile(String path, File file) {
+		if (!variantFiles.containsKey(path)) {
+			variantFiles.put(path, new VariantFile(file));
+		}
+	}
+
+	private static String getPath(String folder, String relativePath) {
+		return folder.isEmpty() ? relativePath : folder + "/" + relativePath;
+	}
+
+	private static String getRelativePath(File folder, File file) {
+		return folder.toPath().relativize(file.toPath()).toString().replace(File.separatorChar, '/');
+	}
+
+	private static List<File> getAllFiles(File folder) {
+		List<File> files = new ArrayList<File>();
+		if (folder.isDirectory()) {
+			for (File file : folder.listFiles()) {
+				if (file.isDirectory()) {
+					files.addAll(getAllFiles(file));
+				} else {
+					files.add(file);
+				}
+			}
+		}
+		return files;
+	}
+
+	private static void writeTemplate(File template, File destination, String token, String value)
+			throws IOException {
+		String content = new String(Files.readAllBytes(template.toPath()), StandardCharsets.ISO_8859_1);
+		destination.getParentFile().mkdirs();
+		Files.write(destination.toPath(), content.replace(token, value).getBytes(StandardCharsets.ISO_8859_1));
+	}
+
+	/**
+	 * Hard-link a file, or copy it if hard links are not supported
+	 */
+	private static void linkOrCopy(File original, File destination) throws IOException {
+		destination.getParentFile().mkdirs();
+		try {
+			Files.createLink(destination.toPath(), original.toPath());
+		} catch (FileSystemException | UnsupportedOperationException e) {
+			Files.copy(original.toPath(), destination.toPath());
+		}
+	}
+}
@@ -0,0 +1,60 @@
+package scenarioGenerator.tests;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import scenarioGenerator.AnnotatedSourceFile;
+
+/**
+ * Tests for the preprocessed code compared with the output of the build.xml
+ * files of the scenarios (javapp and the removal of the variability comments).
+ * The files in tests/scenarioGenerator/antOutput were generated with Ant on
+ * Linux, so their line terminators are \n.
+ * 
+ * @author jabier.martinez
+ */
+public class AnnotatedSourceFileTest {
+
+	private static final File ORIGINAL = new File("tests/scenarioGenerator/ResourceLoaderWrapper.java");
+	private static final File ANT_OUTPUT = new File("tests/scenarioGenerator/antOutput");
+
+	@Test
+	public void sameAsAntWithFeature() throws IOException {
+		Set<String> features = new HashSet<String>();
+		features.add("LOGGING");
+		assertSameAsAnt(features, new File(ANT_OUTPUT, "LOGGING/ResourceLoaderWrapper.java"));
+	}
+
+	@Test
+	public void sameAsAntWithoutFeatures() throws IOException {
+		assertSameAsAnt(Collections.<String>emptySet(),
+				new File(ANT_OUTPUT, "noFeatures/ResourceLoaderWrapper.java"));
+	}
+
+	@Test
+	public void lineTerminatorsKept() throws IOException {
+		String original = read(ORIGINAL);
+		String variant = AnnotatedSourceFile.parse(original).getVariant(Collections.<String>emptySet());
+		Assert.assertTrue(original.contains("\r\n"));
+		// no \n without \r as in the original file
+		Assert.assertFalse(variant.replace("\r\n", "").contains("\n"));
+	}
+
+	private static void assertSameAsAnt(Set<String> features, File antFile) throws IOException {
+		String variant = AnnotatedSourceFile.parse(read(ORIGINAL)).getVariant(features);
+		// the only difference is the line terminator
+		Assert.assertEquals(read(antFile), variant.replace("\r\n", "\n"));
+	}
+
+	private static String read(File file) throws IOException {
+		return new String(Files.readAllBytes(file.toPath()), StandardCharsets.ISO_8859_1);
+	}
+}
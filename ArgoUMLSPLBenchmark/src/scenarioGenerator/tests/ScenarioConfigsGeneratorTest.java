@@ -0,0 +1,96 @@
+package scenarioGenerator.tests;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import scenarioGenerator.FeatureModel;
+import scenarioGenerator.ScenarioConfigsGenerator;
+
+/**
+ * Tests for the feature model and the t-wise scenarios. B can only be selected
+ * with A and D is the child of a mandatory feature.
+ * 
+ * @author jabier.martinez
+ */
+public class ScenarioConfigsGeneratorTest {
+
+	private static final List<String> LINES = Arrays.asList("Root", "\t[optional]A", "\t\t[optional]B",
+			"\t[optional]C", "\tMandatory", "\t\t[optional]D");
+
+	@Test
+	public void featureModel() {
+		FeatureModel featureModel = new FeatureModel(LINES);
+		Assert.assertEquals(Arrays.asList("A", "B", "C", "D"), featureModel.getFeatures());
+		Assert.assertTrue(featureModel.getAncestors(1).get(0));
+		Assert.assertTrue(featureModel.getAncestors(3).isEmpty());
+		Assert.assertTrue(featureModel.getDescendants(0).get(1));
+		// A with or without B, or without A, and then C and D
+		Assert.assertEquals(12.0, featureModel.countConfigurations(), 0);
+		Assert.assertFalse(featureModel.isValid(featureModel.getConfiguration(Arrays.asList("B"))));
+		Assert.assertTrue(featureModel.isValid(featureModel.getConfiguration(Arrays.asList("A", "B", "D"))));
+	}
+
+	@Test
+	public void allConfigurations() {
+		FeatureModel featureModel = new FeatureModel(LINES);
+		List<BitSet> configurations = featureModel.getAllConfigurations();
+		Assert.assertEquals(12, configurations.size());
+		Assert.assertEquals(12, new HashSet<BitSet>(configurations).size());
+		for (BitSet configuration : configurations) {
+			Assert.assertTrue(featureModel.isValid(configuration));
+		}
+	}
+
+	@Test
+	public void pairwise() {
+		FeatureModel featureModel = new FeatureModel(LINES);
+		ScenarioConfigsGenerator generator = new ScenarioConfigsGenerator(featureModel, 1);
+		List<BitSet> configurations = generator.getTWise(2);
+		Assert.assertEquals(1.0, generator.getCoverage(configurations, 2), 0);
+		// each configuration covers a combination not covered before
+		Assert.assertEquals(configurations.size(), new HashSet<BitSet>(configurations).size());
+		Assert.assertTrue(configurations.size() < 12);
+		for (BitSet configuration : configurations) {
+			Assert.assertTrue(featureModel.isValid(configuration));
+		}
+	}
+
+	@Test
+	public void pairwiseSameSeed() {
+		FeatureModel featureModel = new FeatureModel(LINES);
+		Assert.assertEquals(new ScenarioConfigsGenerator(featureModel, 7).getTWise(2),
+				new ScenarioConfigsGenerator(featureModel, 7).getTWise(2));
+	}
+
+	@Test
+	public void coverage() {
+		FeatureModel featureModel = new FeatureModel(LINES);
+		ScenarioConfigsGenerator generator = new ScenarioConfigsGenerator(featureModel, 1);
+		Assert.assertEquals(1.0, generator.getCoverage(generator.getAll(), 3), 0);
+		// the empty configuration only covers the pairs of deselected features
+		// and B selected without A is not a valid pair: 6 of 6 * 4 - 1
+		BitSet empty = new BitSet();
+		Assert.assertEquals(6.0 / 23.0, generator.getCoverage(Arrays.asList(empty), 2), 1e-9);
+	}
+
+	@Test
+	public void randomConfigurations() {
+		FeatureModel featureModel = new FeatureModel(LINES);
+		Random random = new Random(1);
+		for (int i = 0; i < 100; i++) {
+			Assert.assertTrue(featureModel.isValid(featureModel.getRandomConfiguration(random)));
+		}
+		List<BitSet> configurations = new ScenarioConfigsGenerator(featureModel, 1).getRandom(5);
+		BitSet covered = new BitSet();
+		for (BitSet configuration : configurations) {
+			covered.or(configuration);
+		}
+		Assert.assertEquals(4, covered.cardinality());
+	}
+}
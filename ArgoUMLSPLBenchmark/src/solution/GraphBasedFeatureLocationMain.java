@@ -5,21 +5,30 @@ import java.io.IOException;
 import java.lang.invoke.MethodHandles;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import metricsCalculation.GroundTruth;
 import metricsCalculation.MetricsCalculation;
+import metricsCalculation.MetricsResults;
+import solution.store.TraceStore;
 import solution.technique.GraphBasedFeatureLocationTechnique;
+import techniqueBenchmark.FeatureLocationTechnique;
+import techniqueBenchmark.PhaseRecorder;
 import utils.FileUtils;
+import utils.TraceFile;
+import utils.TraceSink;
 
 /**
  * Graph-based feature location technique using set theory.
  * 
  * @author Richard Mueller
  */
-public class GraphBasedFeatureLocationMain {
+public class GraphBasedFeatureLocationMain implements FeatureLocationTechnique {
 	private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 	private final static List<String> RELEVANT_FEATURES = Arrays.asList(new String[] { "ACTIVITYDIAGRAM", "COGNITIVE",
 			"COLLABORATIONDIAGRAM", "DEPLOYMENTDIAGRAM", "LOGGING", "not_LOGGING", "not_COGNITIVE", "SEQUENCEDIAGRAM",
@@ -39,33 +48,38 @@ public class GraphBasedFeatureLocationMain {
 			"scenarios/ScenarioRandom050Variants", "scenarios/ScenarioRandom100Variants",
 			"scenarios/ScenarioTraditionalVariants", "scenarios/ScenarioAllVariants" });
 
+	// backend to compute the elementary sets: NEO4J or BITSET
+	private final static TraceStore.Type TRACE_STORE_TYPE = TraceStore.Type.BITSET;
+
+	// heap for the scenarios that run at the same time, the page cache of the
+	// database of each scenario (GraphDatabaseHandler.PAGE_CACHE_SIZE) is
+	// outside the heap
+	private final static long HEAP_BUDGET = Runtime.getRuntime().maxMemory() * 3 / 4;
+
+	// threads to parse the variants of a scenario
+	private final int parserThreads;
+
+	public GraphBasedFeatureLocationMain() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Technique that parses the variants with a number of threads
+	 * 
+	 * @param parserThreads
+	 */
+	public GraphBasedFeatureLocationMain(int parserThreads) {
+		this.parserThreads = parserThreads;
+	}
+
 	public static void main(String[] args) {
 		try {
-			for (String scenarioPath : SCENARIO_PATHS) {
-				// create trace graph
-				long startScan = System.currentTimeMillis();
-				GraphBasedFeatureLocationTechnique gbfl = new GraphBasedFeatureLocationTechnique(scenarioPath,
-						RELEVANT_FEATURES);
-				gbfl.createTraceGraph();
-				long endScan = System.currentTimeMillis();
-
-				// compute traces
-				long startComputation = System.currentTimeMillis();
-				gbfl.computeTraces();
-				long endComputation = System.currentTimeMillis();
-
-				// write out traces
-				String scenarioName = new File(scenarioPath).getName();
-				for (String feature : RELEVANT_FEATURES) {
-					writeOutTraces(scenarioName, feature, gbfl.getFeatureTraces(feature));
-				}
-				writeOutMetrics(scenarioName, (endScan - startScan), (endComputation - startComputation));
-				LOGGER.info("Finished " + scenarioPath + ", check yourResults folder. Time spent for scan: "
-						+ (endScan - startScan) / 1000 + "s, computation: " + (endComputation - startComputation) / 1000
-						+ "s");
-			}
-		} catch (IOException ioe) {
-			LOGGER.error(ioe.getMessage());
+			GroundTruth groundTruth = GroundTruth.load(new File("groundTruth"));
+			// independent scenarios run at the same time
+			ScenarioScheduler scheduler = new ScenarioScheduler(HEAP_BUDGET,
+					new File("yourResultsMetrics", "progress.csv"));
+			scheduler.run(SCENARIO_PATHS,
+					(scenarioPath, concurrentScenarios) -> locateScenario(groundTruth, scenarioPath, concurrentScenarios));
 		} catch (InterruptedException ie) {
 			LOGGER.error(ie.getMessage());
 		} catch (RuntimeException re) {
@@ -73,29 +87,83 @@ public class GraphBasedFeatureLocationMain {
 		}
 	}
 
-	private static void writeOutTraces(String scenarioName, String feature, List<String> traces) throws IOException {
-		if (!traces.isEmpty()) {
-			Collections.sort(traces);
-			File resultsFolder = new File("yourResults", scenarioName);
-			if (!resultsFolder.exists()) {
-				resultsFolder.mkdir();
-			}
-			File ffile = new File(resultsFolder, feature + ".txt");
-			if (ffile.exists()) {
-				ffile.delete();
+	private static void locateScenario(GroundTruth groundTruth, String scenarioPath, int concurrentScenarios)
+			throws IOException, InterruptedException {
+		PhaseRecorder phases = new PhaseRecorder();
+		Map<String, List<String>> scenarioTraces;
+		// the processors are shared with the other running scenarios
+		int parserThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / concurrentScenarios);
+		try {
+			scenarioTraces = new GraphBasedFeatureLocationMain(parserThreads).locate(scenarioPath, phases);
+		} finally {
+			phases.stop();
+		}
+		// only the wall time, the CPU time and allocations of the phases include
+		// the scenarios running at the same time
+		long scanTime = phases.getMeasurements().get(0).getWallTime();
+		long computationTime = phases.getMeasurements().get(1).getWallTime();
+
+		// write out traces
+		String scenarioName = new File(scenarioPath).getName();
+		writeOutTraces(scenarioName, scenarioTraces);
+		// after the txt files so it is up to date
+		if (!scenarioTraces.isEmpty()) {
+			TraceFile.write(new File(new File("yourResults", scenarioName), TraceFile.FILE_NAME),
+					scenarioTraces);
+		}
+		writeOutMetrics(groundTruth, scenarioName, scanTime, computationTime, concurrentScenarios);
+		LOGGER.info("Finished " + scenarioPath + ", check yourResults folder. Time spent for scan: "
+				+ scanTime / 1000 + "s, computation: " + computationTime / 1000 + "s");
+	}
+
+	@Override
+	public String getName() {
+		return "GraphBased";
+	}
+
+	/**
+	 * Locate the relevant features in two phases: "Scan" creates the trace
+	 * graph and "Computation" computes the traces.
+	 */
+	@Override
+	public Map<String, List<String>> locate(String scenarioPath, PhaseRecorder phases)
+			throws IOException, InterruptedException {
+		// create trace graph
+		phases.start("Scan");
+		GraphBasedFeatureLocationTechnique gbfl = new GraphBasedFeatureLocationTechnique(scenarioPath,
+				RELEVANT_FEATURES, TRACE_STORE_TYPE, parserThreads);
+		gbfl.createTraceGraph();
+
+		// compute traces
+		phases.start("Computation");
+		gbfl.computeTraces();
+		Map<String, List<String>> traces = new LinkedHashMap<String, List<String>>();
+		for (String feature : RELEVANT_FEATURES) {
+			List<String> featureTraces = gbfl.getFeatureTraces(feature);
+			if (!featureTraces.isEmpty()) {
+				traces.put(feature, featureTraces);
 			}
-			for (String trace : traces) {
-				try {
-					FileUtils.appendToFile(ffile, trace);
-				} catch (Exception e) {
-					LOGGER.error(e.getMessage());
+		}
+		return traces;
+	}
+
+	private static void writeOutTraces(String scenarioName, Map<String, List<String>> scenarioTraces) {
+		// one file per feature, each one is opened once
+		try (TraceSink sink = new TraceSink(new File("yourResults", scenarioName))) {
+			for (String feature : scenarioTraces.keySet()) {
+				List<String> traces = scenarioTraces.get(feature);
+				if (!traces.isEmpty()) {
+					Collections.sort(traces);
+					sink.write(feature, traces);
 				}
 			}
+		} catch (IOException e) {
+			LOGGER.error(e.getMessage());
 		}
 	}
 
-	private static void writeOutMetrics(String scenarioName, long scanTime, long computationTime) {
-		File groundTruth = new File("groundTruth");
+	private static void writeOutMetrics(GroundTruth groundTruth, String scenarioName, long scanTime,
+			long computationTime, int concurrentScenarios) {
 		File yourResults = new File("yourResults", scenarioName);
 		if (!yourResults.exists()) {
 			yourResults.mkdir();
@@ -104,35 +172,48 @@ public class GraphBasedFeatureLocationMain {
 		if (!yourResultsMetrics.exists()) {
 			yourResultsMetrics.mkdir();
 		}
-		String results = MetricsCalculation.getResults(groundTruth, yourResults);
+		MetricsResults results = MetricsCalculation.calculate(groundTruth, yourResults);
 		// long current = System.currentTimeMillis();
 		File resultsFile = new File(yourResultsMetrics, "resultPrecisionRecall.csv");
 		File timeFile = new File(yourResultsMetrics, "time.csv");
+		String timeHeader = "Scenario,Scan,Computation,ConcurrentScenarios";
 		File plotFile = new File(yourResultsMetrics, "plot.txt");
 		try {
 			// metrics
-			FileUtils.writeFile(resultsFile, results);
-			// time
-			FileUtils.appendToFile(timeFile, "Scenario,Scan,Computation");
-			FileUtils.appendToFile(timeFile,
-					scenarioName + "," + String.valueOf(scanTime) + "," + String.valueOf(computationTime));
+			FileUtils.writeFile(resultsFile, results.toCsv());
+			// time, appended with one write. The times depend on the scenarios
+			// running at the same time. A file of the runs before the
+			// ConcurrentScenarios column is moved to time_old.csv, so the rows
+			// of a file have the same columns
+			if (timeFile.exists()) {
+				List<String> timeLines = FileUtils.getLinesOfFile(timeFile);
+				if (!timeLines.isEmpty() && !timeLines.get(0).equals(timeHeader)) {
+					File oldTimeFile = new File(yourResultsMetrics, "time_old.csv");
+					oldTimeFile.delete();
+					if (!timeFile.renameTo(oldTimeFile)) {
+						LOGGER.warn("Could not move " + timeFile + " with the old columns");
+					}
+				}
+			}
+			FileUtils.appendToFile(timeFile, String.join(System.lineSeparator(), timeHeader, scenarioName + ","
+					+ String.valueOf(scanTime) + "," + String.valueOf(computationTime) + ","
+					+ String.valueOf(concurrentScenarios)));
 			// gnu plot script
-			FileUtils.appendToFile(plotFile,
-					"cd '" + resultsFile.getAbsoluteFile().getParentFile().getAbsolutePath() + "'");
-			FileUtils.appendToFile(plotFile, "set style data boxplot");
-			FileUtils.appendToFile(plotFile, "set datafile sep ','");
-			FileUtils.appendToFile(plotFile, "set style boxplot outliers pointtype 6");
-			FileUtils.appendToFile(plotFile, "set style fill empty");
-			FileUtils.appendToFile(plotFile, "set xtics ('Names' 1, 'Precision' 2, 'Recall' 3, 'FScore' 4) scale 0.0");
-			FileUtils.appendToFile(plotFile, "set yrange [-0.04:1.04]");
-			FileUtils.appendToFile(plotFile, "set title \"Actual features where nothing was retrieved= "
-					+ (int) MetricsCalculation.failedToRetrieve_counter
-					+ " out of 24\\nInexistent features where something was retrieved= "
-					+ MetricsCalculation.retrievedInexistentFeature_counter + "\\nMetrics for actual features:\"");
-			// [i=2:4] because the first column is for names
-			// every ::1::24 to ignore the last row with the global results
-			FileUtils.appendToFile(plotFile, "plot for [i=2:4] '" + resultsFile.getName()
-					+ "' every ::1::24 using (i):i notitle pointsize .8 lc rgb 'black'");
+			FileUtils.appendToFile(plotFile, String.join(System.lineSeparator(),
+					"cd '" + resultsFile.getAbsoluteFile().getParentFile().getAbsolutePath() + "'",
+					"set style data boxplot",
+					"set datafile sep ','",
+					"set style boxplot outliers pointtype 6",
+					"set style fill empty",
+					"set xtics ('Names' 1, 'Precision' 2, 'Recall' 3, 'FScore' 4) scale 0.0",
+					"set yrange [-0.04:1.04]",
+					"set title \"Actual features where nothing was retrieved= " + results.getFailedToRetrieve()
+							+ " out of 24\\nInexistent features where something was retrieved= "
+							+ results.getInexistentFeatures().size() + "\\nMetrics for actual features:\"",
+					// [i=2:4] because the first column is for names
+					// every ::1::24 to ignore the last row with the global results
+					"plot for [i=2:4] '" + resultsFile.getName()
+							+ "' every ::1::24 using (i):i notitle pointsize .8 lc rgb 'black'"));
 		} catch (Exception e) {
 			LOGGER.error(e.getMessage());
 		}
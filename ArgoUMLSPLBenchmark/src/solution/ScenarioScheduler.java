@@ -0,0 +1,217 @@
+package solution;
+
+import java.io.File;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import utils.FileUtils;
+
+/**
+ * Runs independent scenarios concurrently under a heap budget. The heap needed
+ * by a scenario is estimated from its number of variants. The scenarios are
+ * started from the largest to the smallest, so the small scenarios run next to
+ * the large ones instead of after them, and a scenario is only started if its
+ * estimated heap fits in the budget next to the running scenarios. A scenario
+ * that does not fit in the budget at all runs alone.
+ *
+ * The budget is only for the heap. Each scenario also opens its own Neo4j
+ * database with an off-heap page cache of GraphDatabaseHandler.PAGE_CACHE_SIZE,
+ * so the memory of the running scenarios is their heap plus one page cache per
+ * scenario.
+ *
+ * Each task gets the number of scenarios running when it started, including
+ * itself, so it can share the processors with the other scenarios.
+ *
+ * The start and the end of each scenario are logged with the progress and the
+ * estimated time to finish all the scenarios, and written in a progress file.
+ *
+ * @author Richard Mueller
+ *
+ */
+public class ScenarioScheduler {
+	private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+	private static final long MB = 1024 * 1024;
+	private static final String PROGRESS_HEADER = "Time,Scenario,Event,Variants,ElapsedMs,RunningScenarios,EtaMs";
+
+	/**
+	 * Estimated heap of a scenario without variants, e.g., the trace graph
+	 * inserter and the embedded database.
+	 */
+	public static final long DEFAULT_SCENARIO_HEAP = 512 * MB;
+	/**
+	 * Estimated heap of each variant of a scenario.
+	 */
+	public static final long DEFAULT_VARIANT_HEAP = 4 * MB;
+
+	private long heapBudget;
+	private long scenarioHeap;
+	private long variantHeap;
+	private File progressFile;
+
+	private long usedHeap = 0;
+	private int running = 0;
+	private int finishedScenarios = 0;
+	private int finishedVariants = 0;
+	private int totalVariants = 0;
+	private long start;
+
+	/**
+	 * Task executed for each scenario.
+	 */
+	public interface ScenarioTask {
+		/**
+		 * Run a scenario.
+		 *
+		 * @param scenarioPath
+		 * @param concurrentScenarios running scenarios when it started,
+		 *                            including this one
+		 * @throws Exception
+		 */
+		public void run(String scenarioPath, int concurrentScenarios) throws Exception;
+	}
+
+	public ScenarioScheduler(long heapBudget, File progressFile) {
+		this(heapBudget, DEFAULT_SCENARIO_HEAP, DEFAULT_VARIANT_HEAP, progressFile);
+	}
+
+	/**
+	 * Create a scheduler.
+	 *
+	 * @param heapBudget   bytes of heap for all the running scenarios
+	 * @param scenarioHeap estimated bytes of a scenario without variants
+	 * @param variantHeap  estimated bytes of each variant
+	 * @param progressFile csv file with the progress, it can be null
+	 */
+	public ScenarioScheduler(long heapBudget, long scenarioHeap, long variantHeap, File progressFile) {
+		this.heapBudget = heapBudget;
+		this.scenarioHeap = scenarioHeap;
+		this.variantHeap = variantHeap;
+		this.progressFile = progressFile;
+	}
+
+	/**
+	 * Run a task for each scenario and wait until all of them have finished.
+	 * The failure of a scenario is logged and does not stop the others.
+	 *
+	 * @param scenarioPaths
+	 * @param task
+	 * @throws InterruptedException
+	 */
+	public void run(List<String> scenarioPaths, ScenarioTask task) throws InterruptedException {
+		Map<String, Integer> variantCounts = new HashMap<String, Integer>();
+		for (String scenarioPath : scenarioPaths) {
+			variantCounts.put(scenarioPath, getVariantCount(scenarioPath));
+		}
+		// largest first
+		List<String> pending = new ArrayList<String>(scenarioPaths);
+		pending.sort((a, b) -> Integer.compare(variantCounts.get(b), variantCounts.get(a)));
+
+		ExecutorService executor = Executors.newCachedThreadPool();
+		try {
+			synchronized (this) {
+				start = System.currentTimeMillis();
+				usedHeap = 0;
+				running = 0;
+				finishedScenarios = 0;
+				finishedVariants = 0;
+				totalVariants = variantCounts.values().stream().mapToInt(Integer::intValue).sum();
+				if (progressFile != null) {
+					try {
+						FileUtils.writeFile(progressFile, PROGRESS_HEADER + "\n");
+					} catch (Exception e) {
+						LOGGER.error(e.getMessage());
+					}
+				}
+				while (!pending.isEmpty()) {
+					String next = null;
+					for (String scenarioPath : pending) {
+						if (running == 0 || usedHeap + getHeap(variantCounts.get(scenarioPath)) <= heapBudget) {
+							next = scenarioPath;
+							break;
+						}
+					}
+					if (next == null) {
+						// wait for a running scenario to release its heap
+						wait();
+						continue;
+					}
+					pending.remove(next);
+					String scenarioPath = next;
+					int variantCount = variantCounts.get(scenarioPath);
+					usedHeap += getHeap(variantCount);
+					running++;
+					int concurrentScenarios = running;
+					logProgress(scenarioPath, "Started", variantCount, System.currentTimeMillis());
+					executor.execute(() -> runScenario(scenarioPath, variantCount, concurrentScenarios, task));
+				}
+				while (running > 0) {
+					wait();
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private void runScenario(String scenarioPath, int variantCount, int concurrentScenarios, ScenarioTask task) {
+		long scenarioStart = System.currentTimeMillis();
+		String event = "Finished";
+		try {
+			task.run(scenarioPath, concurrentScenarios);
+		} catch (Exception e) {
+			LOGGER.error("Scenario " + scenarioPath + " failed: " + e.getMessage());
+			event = "Failed";
+		} finally {
+			synchronized (this) {
+				usedHeap -= getHeap(variantCount);
+				running--;
+				finishedScenarios++;
+				finishedVariants += variantCount;
+				logProgress(scenarioPath, event, variantCount, scenarioStart);
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Log and write the progress. The estimated time to finish is the elapsed
+	 * time per finished variant multiplied by the variants that have not
+	 * finished yet.
+	 */
+	private void logProgress(String scenarioPath, String event, int variantCount, long eventStart) {
+		long now = System.currentTimeMillis();
+		long eta = -1;
+		if (finishedVariants > 0) {
+			eta = (now - start) * (totalVariants - finishedVariants) / finishedVariants;
+		}
+		String duration = now == eventStart ? "" : ", " + (now - eventStart) / 1000 + "s";
+		LOGGER.info(event + " " + scenarioPath + " (" + variantCount + " variants" + duration
+				+ "). Scenarios finished: " + finishedScenarios + ", running: " + running + ", variants finished: "
+				+ finishedVariants + "/" + totalVariants + (eta == -1 ? "" : ", ETA: " + eta / 1000 + "s"));
+		if (progressFile != null) {
+			try {
+				FileUtils.appendToFile(progressFile, now + "," + new File(scenarioPath).getName() + "," + event
+						+ "," + variantCount + "," + (now - eventStart) + "," + running + "," + eta);
+			} catch (Exception e) {
+				LOGGER.error(e.getMessage());
+			}
+		}
+	}
+
+	private long getHeap(int variantCount) {
+		return scenarioHeap + variantCount * variantHeap;
+	}
+
+	private static int getVariantCount(String scenarioPath) {
+		File[] configs = new File(scenarioPath, "configs").listFiles((dir, name) -> name.endsWith(".config"));
+		return configs == null ? 0 : configs.length;
+	}
+}
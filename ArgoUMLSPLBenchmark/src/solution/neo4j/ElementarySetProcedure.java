@@ -0,0 +1,167 @@
+package solution.neo4j;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.procedure.Context;
+import org.neo4j.procedure.Description;
+import org.neo4j.procedure.Mode;
+import org.neo4j.procedure.Name;
+import org.neo4j.procedure.Procedure;
+
+/**
+ * User-defined procedure to compute an elementary set inside the database. The
+ * trace node ids of each configuration are collected into sorted long arrays,
+ * so the intersection of the minuends and the difference with the union of the
+ * subtrahends are merges of primitive arrays and only the names of the
+ * resulting traces leave the database.
+ *
+ * CALL solution.elementarySet(minuendConfigs, subtrahendConfigs, label) YIELD
+ * name
+ *
+ * @author Richard Mueller
+ *
+ */
+public class ElementarySetProcedure {
+	private static final Label CONFIGURATION = Label.label("Configuration");
+	private static final RelationshipType HAS = RelationshipType.withName("HAS");
+
+	@Context
+	public GraphDatabaseService db;
+
+	/**
+	 * Result of the procedure.
+	 */
+	public static class TraceName {
+		public String name;
+
+		public TraceName(String name) {
+			this.name = name;
+		}
+	}
+
+	@Procedure(name = "solution.elementarySet", mode = Mode.READ)
+	@Description("solution.elementarySet(minuendConfigs, subtrahendConfigs, label) - names of the traces with "
+			+ "the label that are in all minuend configurations and in no subtrahend configuration")
+	public Stream<TraceName> elementarySet(@Name("minuendConfigs") List<String> minuendConfigs,
+			@Name("subtrahendConfigs") List<String> subtrahendConfigs, @Name("label") String label) {
+		if (minuendConfigs.isEmpty()) {
+			return Stream.empty();
+		}
+		Label traceLabel = Label.label(label);
+		// intersection of minuends
+		long[] traceIds = null;
+		for (String minuendConfig : minuendConfigs) {
+			long[] minuendTraceIds = getTraceIds(minuendConfig, traceLabel);
+			traceIds = traceIds == null ? minuendTraceIds : intersection(traceIds, minuendTraceIds);
+			if (traceIds.length == 0) {
+				return Stream.empty();
+			}
+		}
+		// union of subtrahends
+		long[] subtrahendTraceIds = new long[0];
+		for (String subtrahendConfig : subtrahendConfigs) {
+			subtrahendTraceIds = union(subtrahendTraceIds, getTraceIds(subtrahendConfig, traceLabel));
+		}
+		traceIds = difference(traceIds, subtrahendTraceIds);
+		// transform id into trace, several nodes can have the same name
+		Set<String> names = new LinkedHashSet<String>();
+		for (long traceId : traceIds) {
+			names.add((String) db.getNodeById(traceId).getProperty("name"));
+		}
+		return names.stream().map(TraceName::new);
+	}
+
+	/**
+	 * Get the sorted ids of the traces with a label of a configuration.
+	 *
+	 * @param config
+	 * @param label
+	 * @return sorted distinct ids, empty if the configuration does not exist
+	 */
+	private long[] getTraceIds(String config, Label label) {
+		Node configNode = db.findNode(CONFIGURATION, "name", config);
+		if (configNode == null) {
+			return new long[0];
+		}
+		long[] ids = new long[configNode.getDegree(HAS, Direction.OUTGOING)];
+		int size = 0;
+		for (Relationship has : configNode.getRelationships(HAS, Direction.OUTGOING)) {
+			Node trace = has.getEndNode();
+			if (trace.hasLabel(label)) {
+				ids[size++] = trace.getId();
+			}
+		}
+		Arrays.sort(ids, 0, size);
+		// remove repeated relationships
+		int distinct = 0;
+		for (int i = 0; i < size; i++) {
+			if (distinct == 0 || ids[distinct - 1] != ids[i]) {
+				ids[distinct++] = ids[i];
+			}
+		}
+		return Arrays.copyOf(ids, distinct);
+	}
+
+	private static long[] intersection(long[] a, long[] b) {
+		long[] result = new long[Math.min(a.length, b.length)];
+		int size = 0;
+		int i = 0;
+		int j = 0;
+		while (i < a.length && j < b.length) {
+			if (a[i] < b[j]) {
+				i++;
+			} else if (a[i] > b[j]) {
+				j++;
+			} else {
+				result[size++] = a[i];
+				i++;
+				j++;
+			}
+		}
+		return Arrays.copyOf(result, size);
+	}
+
+	private static long[] union(long[] a, long[] b) {
+		long[] result = new long[a.length + b.length];
+		int size = 0;
+		int i = 0;
+		int j = 0;
+		while (i < a.length || j < b.length) {
+			if (j == b.length || (i < a.length && a[i] < b[j])) {
+				result[size++] = a[i++];
+			} else if (i == a.length || a[i] > b[j]) {
+				result[size++] = b[j++];
+			} else {
+				result[size++] = a[i];
+				i++;
+				j++;
+			}
+		}
+		return Arrays.copyOf(result, size);
+	}
+
+	private static long[] difference(long[] a, long[] b) {
+		long[] result = new long[a.length];
+		int size = 0;
+		int j = 0;
+		for (int i = 0; i < a.length; i++) {
+			while (j < b.length && b[j] < a[i]) {
+				j++;
+			}
+			if (j == b.length || b[j] != a[i]) {
+				result[size++] = a[i];
+			}
+		}
+		return Arrays.copyOf(result, size);
+	}
+}
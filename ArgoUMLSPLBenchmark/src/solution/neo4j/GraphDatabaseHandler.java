@@ -23,6 +23,12 @@ import apoc.refactor.GraphRefactoring;
  *
  */
 public class GraphDatabaseHandler {
+	/**
+	 * Off-heap page cache of each database. By default Neo4j takes half of the
+	 * memory that is not used by the heap, and each running scenario opens its
+	 * own database.
+	 */
+	public static final String PAGE_CACHE_SIZE = "512m";
 	private GraphDatabaseService graphDb = null;
 	private File dbFolder = null;
 
@@ -37,11 +43,12 @@ public class GraphDatabaseHandler {
 	}
 
 	/**
-	 * Start Neo4j instance and register APOC.
+	 * Start Neo4j instance and register APOC and the elementary set procedure.
 	 */
 	public void start() {
 		this.graphDb = new GraphDatabaseFactory().newEmbeddedDatabaseBuilder(getDbFolder())
-				.setConfig(GraphDatabaseSettings.read_only, "false").newGraphDatabase();
+				.setConfig(GraphDatabaseSettings.read_only, "false")
+				.setConfig(GraphDatabaseSettings.pagecache_memory, PAGE_CACHE_SIZE).newGraphDatabase();
 		registerApocProcedure(graphDb);
 	}
 
@@ -93,10 +100,11 @@ public class GraphDatabaseHandler {
 	}
 
 	private static void registerApocProcedure(GraphDatabaseService graphDB) throws IllegalArgumentException {
-		// register APOC procedures
+		// register APOC procedures and our own procedures
 		Procedures procedures = ((GraphDatabaseAPI) graphDB).getDependencyResolver()
 				.resolveDependency(Procedures.class);
-		List<Class<?>> apocProcedures = Arrays.asList(Xml.class, GraphRefactoring.class, apoc.coll.Coll.class);
+		List<Class<?>> apocProcedures = Arrays.asList(Xml.class, GraphRefactoring.class, apoc.coll.Coll.class,
+				ElementarySetProcedure.class);
 		apocProcedures.forEach((proc) -> {
 			try {
 				procedures.registerFunction(proc);
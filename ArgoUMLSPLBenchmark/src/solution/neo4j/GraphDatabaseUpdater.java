@@ -0,0 +1,126 @@
+package solution.neo4j;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Updates an existing trace graph with the variants that were added, removed or
+ * changed since it was created by the GraphDatabaseInserter. The configurations
+ * of the removed and changed variants are deleted with their HAS relationships,
+ * the configurations of the added and changed variants are created again and
+ * connected to their traces, and the traces that are not connected to any
+ * configuration are deleted at the end. The trace nodes are shared through the
+ * unique constraint on :Trace(value).
+ *
+ * @author Richard Mueller
+ *
+ */
+public class GraphDatabaseUpdater implements TraceGraphWriter {
+	// trace kind to the additional labels of its trace nodes
+	private static final Map<String, String> TRACE_LABELS = new LinkedHashMap<String, String>();
+	static {
+		TRACE_LABELS.put("class", ":Class");
+		TRACE_LABELS.put("field", ":ClassRefinement:Field");
+		TRACE_LABELS.put("import", ":ClassRefinement:Import");
+		TRACE_LABELS.put("method", ":Method");
+		TRACE_LABELS.put("statement", ":MethodRefinement:Statement");
+	}
+	private GraphDatabaseHandler handler = null;
+
+	public GraphDatabaseUpdater(File dbFolder) {
+		this.handler = new GraphDatabaseHandler(dbFolder);
+	}
+
+	/**
+	 * Shutdown the Neo4j instance.
+	 */
+	public void shutdown() {
+		handler.shutdown();
+	}
+
+	/**
+	 * Delete configurations and their HAS relationships. The traces are kept
+	 * until removeOrphanTraces is called.
+	 *
+	 * @param configurations
+	 */
+	public void removeConfigurations(List<String> configurations) {
+		Map<String, Object> params = new HashMap<String, Object>();
+		params.put("configurations", configurations);
+		handler.executeQuery("MATCH (config:Configuration) WHERE config.name IN {configurations} "
+				+ "DETACH DELETE config", params).close();
+	}
+
+	/**
+	 * Create configurations without traces.
+	 *
+	 * @param configurations
+	 */
+	public void createConfigurations(List<String> configurations) {
+		Map<String, Object> params = new HashMap<String, Object>();
+		params.put("configurations", configurations);
+		handler.executeQuery("UNWIND {configurations} AS configuration "
+				+ "CREATE (:Configuration {name: configuration, value: configuration})", params).close();
+	}
+
+	@Override
+	public void createTraces(String configuration, Map<String, List<String>> traces) {
+		for (String traceKind : TRACE_LABELS.keySet()) {
+			List<Map<String, Object>> traceNodes = new ArrayList<Map<String, Object>>();
+			for (String trace : traces.get(traceKind)) {
+				Map<String, Object> traceNode = new HashMap<String, Object>();
+				traceNode.put("name", getTraceName(traceKind, trace));
+				traceNode.put("value", trace);
+				traceNodes.add(traceNode);
+			}
+			if (traceNodes.isEmpty()) {
+				continue;
+			}
+			Map<String, Object> params = new HashMap<String, Object>();
+			params.put("configuration", configuration);
+			params.put("traces", traceNodes);
+			// (Configuration)-[:HAS]->(Trace), one relationship per trace as in
+			// the inserter
+			handler.executeQuery("MATCH (config:Configuration {name: {configuration}}) "
+					+ "UNWIND {traces} AS trace MERGE (node:Trace {value: trace.value}) "
+					+ "ON CREATE SET node.name = trace.name, node" + TRACE_LABELS.get(traceKind) + " "
+					+ "CREATE (config)-[:HAS]->(node)", params).close();
+		}
+	}
+
+	/**
+	 * Delete the traces that are not connected to any configuration.
+	 *
+	 * @return number of deleted traces
+	 */
+	public long removeOrphanTraces() {
+		List<Long> orphans = new ArrayList<Long>();
+		handler.executeQuery("MATCH (trace:Trace) WHERE NOT ()-[:HAS]->(trace) "
+				+ "DETACH DELETE trace RETURN count(*) AS orphans").forEachRemaining(result -> {
+					orphans.add((Long) result.get("orphans"));
+				});
+		return orphans.isEmpty() ? 0 : orphans.get(0);
+	}
+
+	/**
+	 * Name of a trace node, see GraphDatabaseInserter.
+	 */
+	private static String getTraceName(String traceKind, String trace) {
+		String[] elements = trace.split("__");
+		switch (traceKind) {
+		case "field":
+		case "import":
+			return elements[0] + " Refinement";
+		case "method":
+			return elements[0] + " " + elements[1];
+		case "statement":
+			return elements[0] + " " + elements[1] + " Refinement";
+		default:
+			return trace;
+		}
+	}
+}
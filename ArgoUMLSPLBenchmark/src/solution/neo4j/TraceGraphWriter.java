@@ -0,0 +1,23 @@
+package solution.neo4j;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the traces of the scanned variants into a trace graph.
+ * 
+ * @author Richard Mueller
+ *
+ */
+public interface TraceGraphWriter {
+
+	/**
+	 * Create the traces of a configuration and connect them to the
+	 * configuration. The configuration node must exist.
+	 * 
+	 * @param configuration
+	 * @param traces        traces by kind: class, field, import, method and
+	 *                      statement
+	 */
+	public void createTraces(String configuration, Map<String, List<String>> traces);
+}
@@ -0,0 +1,113 @@
+package solution.neo4j.tests;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.neo4j.graphdb.Result;
+
+import solution.neo4j.GraphDatabaseHandler;
+
+/**
+ * Tests for the elementary set procedure in a database with four
+ * configurations. A has the methods m1 to m4 and the type t1, B has m2 to m5, C
+ * has m3 and D has m4.
+ * 
+ * @author Richard Mueller
+ *
+ */
+public class ElementarySetProcedureTest {
+
+	@ClassRule
+	public static TemporaryFolder folder = new TemporaryFolder();
+
+	private static GraphDatabaseHandler handler;
+
+	@BeforeClass
+	public static void createDatabase() throws Exception {
+		handler = new GraphDatabaseHandler(folder.newFolder("store"));
+		handler.executeQuery("CREATE (a:Configuration {name: 'A'}), (b:Configuration {name: 'B'}), "
+				+ "(c:Configuration {name: 'C'}), (d:Configuration {name: 'D'}), "
+				+ "(m1:Trace:Method {name: 'm1'}), (m2:Trace:Method {name: 'm2'}), "
+				+ "(m3:Trace:Method {name: 'm3'}), (m4:Trace:Method {name: 'm4'}), "
+				+ "(m5:Trace:Method {name: 'm5'}), (t1:Trace:Type {name: 't1'}), "
+				// the same relationship twice
+				+ "(a)-[:HAS]->(m1), (a)-[:HAS]->(m2), (a)-[:HAS]->(m2), (a)-[:HAS]->(m3), (a)-[:HAS]->(m4), "
+				+ "(a)-[:HAS]->(t1), (b)-[:HAS]->(m2), (b)-[:HAS]->(m3), (b)-[:HAS]->(m4), (b)-[:HAS]->(m5), "
+				+ "(c)-[:HAS]->(m3), (d)-[:HAS]->(m4)").close();
+	}
+
+	@AfterClass
+	public static void shutdownDatabase() {
+		if (handler != null) {
+			handler.shutdown();
+		}
+	}
+
+	@Test
+	public void intersectionOfMinuends() {
+		Assert.assertEquals(Arrays.asList("m1", "m2", "m3", "m4"), elementarySet(Arrays.asList("A"), "Method"));
+		Assert.assertEquals(Arrays.asList("m2", "m3", "m4"), elementarySet(Arrays.asList("A", "B"), "Method"));
+	}
+
+	@Test
+	public void subtractionOfSubtrahends() {
+		Assert.assertEquals(Arrays.asList("m2", "m4"),
+				elementarySet(Arrays.asList("A", "B"), Arrays.asList("C"), "Method"));
+		// union of the subtrahends
+		Assert.assertEquals(Arrays.asList("m2"),
+				elementarySet(Arrays.asList("A", "B"), Arrays.asList("C", "D"), "Method"));
+		Assert.assertEquals(Arrays.asList("m1"), elementarySet(Arrays.asList("A"), Arrays.asList("B"), "Method"));
+		Assert.assertEquals(Collections.emptyList(),
+				elementarySet(Arrays.asList("C"), Arrays.asList("A"), "Method"));
+		// a subtrahend without the traces of the minuends
+		Assert.assertEquals(Arrays.asList("m3"), elementarySet(Arrays.asList("C"), Arrays.asList("D"), "Method"));
+	}
+
+	@Test
+	public void unknownConfigurations() {
+		Assert.assertEquals(Arrays.asList("m2", "m3", "m4"),
+				elementarySet(Arrays.asList("A", "B"), Arrays.asList("X"), "Method"));
+		Assert.assertEquals(Collections.emptyList(), elementarySet(Arrays.asList("A", "X"), "Method"));
+		Assert.assertEquals(Collections.emptyList(),
+				elementarySet(Collections.<String>emptyList(), Arrays.asList("C"), "Method"));
+	}
+
+	@Test
+	public void label() {
+		Assert.assertEquals(Arrays.asList("t1"), elementarySet(Arrays.asList("A"), "Type"));
+		Assert.assertEquals(Collections.emptyList(),
+				elementarySet(Arrays.asList("A"), Arrays.asList("B"), "Type_Refinement"));
+	}
+
+	private static List<String> elementarySet(List<String> minuendConfigs, String label) {
+		return elementarySet(minuendConfigs, Collections.<String>emptyList(), label);
+	}
+
+	private static List<String> elementarySet(List<String> minuendConfigs, List<String> subtrahendConfigs,
+			String label) {
+		Map<String, Object> params = new HashMap<String, Object>();
+		params.put("minuendConfigs", minuendConfigs);
+		params.put("subtrahendConfigs", subtrahendConfigs);
+		params.put("label", label);
+		List<String> names = new ArrayList<String>();
+		try (Result result = handler.executeQuery(
+				"CALL solution.elementarySet({minuendConfigs}, {subtrahendConfigs}, {label}) YIELD name RETURN name",
+				params)) {
+			while (result.hasNext()) {
+				names.add((String) result.next().get("name"));
+			}
+		}
+		Collections.sort(names);
+		return names;
+	}
+}
@@ -0,0 +1,400 @@
+package solution.parser;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.javaparser.resolution.declarations.ResolvedReferenceTypeDeclaration;
+import com.github.javaparser.symbolsolver.javassistmodel.JavassistFactory;
+import com.github.javaparser.symbolsolver.model.resolution.SymbolReference;
+import com.github.javaparser.symbolsolver.model.resolution.TypeSolver;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.CombinedTypeSolver;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.ReflectionTypeSolver;
+
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.NotFoundException;
+import utils.FileUtils;
+import utils.VirtualVariant;
+
+/**
+ * Cache of type solvers for the jar files of the variants. All the variants
+ * contain copies of the same jar files, so the jar files are identified by the
+ * hash of their entries (name, size and crc) and each set of jar files is
+ * indexed only once per JVM. The variants get a light type solver that
+ * delegates to the shared one.
+ * 
+ * Optionally, the class names of each jar file and the hashes of the known jar
+ * files are stored in an index folder, so the next runs do not need to read the
+ * jar files to index them.
+ * 
+ * @author Richard Mller
+ *
+ */
+public class JarTypeSolverCache {
+	private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+	public static final File DEFAULT_INDEX_FOLDER = new File("jarIndex");
+	private static final JarTypeSolverCache INSTANCE = new JarTypeSolverCache(DEFAULT_INDEX_FOLDER);
+	private static final String MANIFEST_FILE_NAME = "jars.manifest";
+	private static final String INDEX_EXTENSION = ".classes";
+	private static final String SEPARATOR = "\t";
+
+	private File indexFolder = null;
+	// jar path to size, last modification time and hash
+	private Map<String, String[]> fingerprints = new HashMap<String, String[]>();
+	// hash to jar index
+	private Map<String, JarIndex> jarIndexes = new HashMap<String, JarIndex>();
+	// hash of the hashes of a set of jar files to its type solver
+	private Map<String, JarSetTypeSolver> jarSetTypeSolvers = new HashMap<String, JarSetTypeSolver>();
+	// fingerprints not yet appended to the manifest
+	private List<String> newFingerprints = new ArrayList<String>();
+
+	/**
+	 * Get the cache shared by all the scenarios of this JVM.
+	 * 
+	 * @return cache
+	 */
+	public static JarTypeSolverCache getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Create a cache.
+	 * 
+	 * @param indexFolder folder of the on-disk index or null to keep it in memory
+	 */
+	public JarTypeSolverCache(File indexFolder) {
+		this.indexFolder = indexFolder;
+		if (indexFolder != null) {
+			File manifest = new File(indexFolder, MANIFEST_FILE_NAME);
+			if (manifest.exists()) {
+				for (String line : FileUtils.getLinesOfFile(manifest)) {
+					String[] parts = line.split(SEPARATOR);
+					fingerprints.put(parts[0], Arrays.copyOfRange(parts, 1, 4));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get a type solver for the jar files of a lib folder. The returned type
+	 * solver belongs to the caller, the indexed jar files behind it are shared.
+	 * The lib folder of a virtual variant uses the original jar files.
+	 * 
+	 * @param libDirectory
+	 * @return type solver or null if there are no jar files
+	 * @throws IOException
+	 */
+	public synchronized TypeSolver getTypeSolver(File libDirectory) throws IOException {
+		List<File> jarFiles = getJarFiles(libDirectory);
+		if (jarFiles.isEmpty()) {
+			return null;
+		}
+		long start = System.currentTimeMillis();
+		List<String> jarHashes = new ArrayList<String>();
+		for (File jarFile : jarFiles) {
+			jarHashes.add(getHash(jarFile));
+		}
+		String key = getKey(jarHashes);
+		JarSetTypeSolver jarSetTypeSolver = jarSetTypeSolvers.get(key);
+		if (jarSetTypeSolver == null) {
+			List<JarIndex> indexes = new ArrayList<JarIndex>();
+			for (int i = 0; i < jarFiles.size(); i++) {
+				indexes.add(getJarIndex(jarFiles.get(i), jarHashes.get(i)));
+			}
+			jarSetTypeSolver = new JarSetTypeSolver(indexes);
+			jarSetTypeSolvers.put(key, jarSetTypeSolver);
+			LOGGER.info("Indexed " + jarFiles.size() + " jar " + ((jarFiles.size() == 1) ? "file" : "files")
+					+ " from '{}' in " + (System.currentTimeMillis() - start) + "ms.", libDirectory.getPath());
+		} else {
+			LOGGER.info("Reused " + jarFiles.size() + " indexed jar " + ((jarFiles.size() == 1) ? "file" : "files")
+					+ " for '{}'.", libDirectory.getPath());
+		}
+		if (!newFingerprints.isEmpty()) {
+			saveManifest();
+		}
+		return new DelegatingTypeSolver(jarSetTypeSolver);
+	}
+
+	/**
+	 * Get the hash of the jar files of a lib folder, the same that identifies
+	 * their type solver. The jar files are not indexed.
+	 * 
+	 * @param libDirectory
+	 * @return hash or null if the folder does not exist or there are no jar
+	 *         files
+	 * @throws IOException
+	 */
+	public synchronized String getLibHash(File libDirectory) throws IOException {
+		if (!FileUtils.exists(libDirectory)) {
+			return null;
+		}
+		List<File> jarFiles = getJarFiles(libDirectory);
+		if (jarFiles.isEmpty()) {
+			return null;
+		}
+		List<String> jarHashes = new ArrayList<String>();
+		for (File jarFile : jarFiles) {
+			jarHashes.add(getHash(jarFile));
+		}
+		if (!newFingerprints.isEmpty()) {
+			saveManifest();
+		}
+		return getKey(jarHashes);
+	}
+
+	/**
+	 * Get the jar files of a lib folder sorted by name. The lib folder of a
+	 * virtual variant uses the original jar files.
+	 */
+	private static List<File> getJarFiles(File libDirectory) {
+		List<File> jarFiles = new ArrayList<File>();
+		VirtualVariant virtualVariant = libDirectory.exists() ? null : VirtualVariant.get(libDirectory);
+		List<File> fileEntries = virtualVariant != null ? virtualVariant.listFiles(libDirectory)
+				: Arrays.asList(libDirectory.listFiles());
+		for (final File fileEntry : fileEntries) {
+			if ((virtualVariant != null || fileEntry.isFile()) && fileEntry.getName().toLowerCase().endsWith("jar")) {
+				jarFiles.add(fileEntry);
+			}
+		}
+		jarFiles.sort(null);
+		if (virtualVariant != null) {
+			jarFiles.replaceAll(virtualVariant::getOriginalFile);
+		}
+		return jarFiles;
+	}
+
+	private static String getKey(List<String> jarHashes) throws IOException {
+		return FileUtils.getContentHash(
+				new ByteArrayInputStream(String.join("", jarHashes).getBytes(StandardCharsets.UTF_8)));
+	}
+
+	/**
+	 * Close the jar files and forget the indexed jar files. The on-disk index is
+	 * kept.
+	 */
+	public synchronized void clear() {
+		for (JarIndex jarIndex : jarIndexes.values()) {
+			try {
+				jarIndex.jarFile.close();
+			} catch (IOException e) {
+				LOGGER.error(e.getMessage());
+			}
+		}
+		jarIndexes.clear();
+		jarSetTypeSolvers.clear();
+	}
+
+	private String getHash(File jarFile) throws IOException {
+		String path = jarFile.getAbsolutePath();
+		String size = String.valueOf(jarFile.length());
+		String lastModified = String.valueOf(jarFile.lastModified());
+		String[] fingerprint = fingerprints.get(path);
+		if (fingerprint != null && fingerprint[0].equals(size) && fingerprint[1].equals(lastModified)) {
+			return fingerprint[2];
+		}
+		// the central directory of the jar file contains the name, size and crc
+		// of each entry, so there is no need to read the whole content
+		StringBuilder entries = new StringBuilder();
+		try (JarFile jar = new JarFile(jarFile)) {
+			Enumeration<JarEntry> jarEntries = jar.entries();
+			while (jarEntries.hasMoreElements()) {
+				JarEntry entry = jarEntries.nextElement();
+				entries.append(entry.getName() + SEPARATOR + entry.getSize() + SEPARATOR + entry.getCrc() + "\n");
+			}
+		}
+		String hash = FileUtils
+				.getContentHash(new ByteArrayInputStream(entries.toString().getBytes(StandardCharsets.UTF_8)));
+		fingerprints.put(path, new String[] { size, lastModified, hash });
+		newFingerprints.add(path + SEPARATOR + size + SEPARATOR + lastModified + SEPARATOR + hash);
+		return hash;
+	}
+
+	private JarIndex getJarIndex(File jarFile, String hash) throws IOException {
+		JarIndex jarIndex = jarIndexes.get(hash);
+		if (jarIndex != null) {
+			return jarIndex;
+		}
+		Map<String, String> classEntries = new LinkedHashMap<String, String>();
+		File indexFile = indexFolder == null ? null : new File(indexFolder, hash + INDEX_EXTENSION);
+		if (indexFile != null && indexFile.exists()) {
+			for (String line : FileUtils.getLinesOfFile(indexFile)) {
+				String[] parts = line.split(SEPARATOR);
+				classEntries.put(parts[0], parts[1]);
+			}
+		} else {
+			try (JarFile jar = new JarFile(jarFile)) {
+				Enumeration<JarEntry> entries = jar.entries();
+				while (entries.hasMoreElements()) {
+					JarEntry entry = entries.nextElement();
+					// same class names as the JarTypeSolver of JavaParser
+					if (!entry.isDirectory() && entry.getName().endsWith(".class")) {
+						String className = entry.getName().substring(0, entry.getName().length() - ".class".length());
+						className = className.replace('/', '.').replace('$', '.');
+						classEntries.put(className, entry.getName());
+					}
+				}
+			}
+			if (indexFile != null) {
+				indexFolder.mkdirs();
+				try (BufferedWriter output = new BufferedWriter(new FileWriter(indexFile))) {
+					for (String className : classEntries.keySet()) {
+						output.append(className + SEPARATOR + classEntries.get(className));
+						output.newLine();
+					}
+				}
+			}
+		}
+		jarIndex = new JarIndex(jarFile, new JarFile(jarFile), classEntries);
+		jarIndexes.put(hash, jarIndex);
+		return jarIndex;
+	}
+
+	/**
+	 * Append the new fingerprints to the manifest. When it is loaded, the last
+	 * fingerprint of a path wins.
+	 */
+	private void saveManifest() {
+		if (indexFolder != null) {
+			indexFolder.mkdirs();
+			try (BufferedWriter output = new BufferedWriter(
+					new FileWriter(new File(indexFolder, MANIFEST_FILE_NAME), true))) {
+				for (String fingerprint : newFingerprints) {
+					output.append(fingerprint);
+					output.newLine();
+				}
+			} catch (IOException e) {
+				LOGGER.error(e.getMessage());
+			}
+		}
+		newFingerprints.clear();
+	}
+
+	/**
+	 * Class names of a jar file and the jar file to read them.
+	 */
+	private static class JarIndex {
+		private File file;
+		private JarFile jarFile;
+		private Map<String, String> classEntries;
+
+		private JarIndex(File file, JarFile jarFile, Map<String, String> classEntries) {
+			this.file = file;
+			this.jarFile = jarFile;
+			this.classEntries = classEntries;
+		}
+	}
+
+	/**
+	 * Type solver for a set of jar files. It is shared by all the variants with
+	 * the same jar files so it does not keep any state of a variant, and it is
+	 * used by the parser threads concurrently.
+	 */
+	private static class JarSetTypeSolver implements TypeSolver {
+		private TypeSolver parent = null;
+		// jar classes are resolved against the jar files and the JRE only
+		private CombinedTypeSolver root = null;
+		private Map<String, JarIndex> classIndexes = new HashMap<String, JarIndex>();
+		// shared by the parser threads, see tryToSolveType
+		private ClassPool classPool = new ClassPool(false);
+
+		private JarSetTypeSolver(List<JarIndex> jarIndexes) {
+			for (JarIndex jarIndex : jarIndexes) {
+				try {
+					classPool.appendClassPath(jarIndex.file.getPath());
+				} catch (NotFoundException e) {
+					throw new RuntimeException(e);
+				}
+				for (String className : jarIndex.classEntries.keySet()) {
+					// the first jar file containing a class wins
+					classIndexes.putIfAbsent(className, jarIndex);
+				}
+			}
+			classPool.appendSystemPath();
+			root = new CombinedTypeSolver(new ReflectionTypeSolver());
+			root.add(this);
+			setParent(root);
+		}
+
+		@Override
+		public TypeSolver getRoot() {
+			return root;
+		}
+
+		@Override
+		public TypeSolver getParent() {
+			return parent;
+		}
+
+		@Override
+		public void setParent(TypeSolver parent) {
+			this.parent = parent;
+		}
+
+		@Override
+		public SymbolReference<ResolvedReferenceTypeDeclaration> tryToSolveType(String name) {
+			JarIndex jarIndex = classIndexes.get(name);
+			if (jarIndex == null) {
+				return SymbolReference.unsolved(ResolvedReferenceTypeDeclaration.class);
+			}
+			try (InputStream in = jarIndex.jarFile
+					.getInputStream(jarIndex.jarFile.getEntry(jarIndex.classEntries.get(name)))) {
+				CtClass ctClass;
+				// making a class modifies the cache of the class pool, the
+				// classes made are only read later and the class pool
+				// synchronizes the lookups of their super types
+				synchronized (classPool) {
+					ctClass = classPool.makeClass(in);
+				}
+				return SymbolReference.solved(JavassistFactory.toTypeDeclaration(ctClass, getRoot()));
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+
+	/**
+	 * Type solver of one variant that delegates to the shared type solver of its
+	 * jar files.
+	 */
+	private static class DelegatingTypeSolver implements TypeSolver {
+		private TypeSolver parent = null;
+		private TypeSolver delegate = null;
+
+		private DelegatingTypeSolver(TypeSolver delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public TypeSolver getParent() {
+			return parent;
+		}
+
+		@Override
+		public void setParent(TypeSolver parent) {
+			this.parent = parent;
+		}
+
+		@Override
+		public SymbolReference<ResolvedReferenceTypeDeclaration> tryToSolveType(String name) {
+			return delegate.tryToSolveType(name);
+		}
+	}
+}
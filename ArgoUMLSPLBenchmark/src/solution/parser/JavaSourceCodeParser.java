@@ -1,107 +1,235 @@
 package solution.parser;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParseProblemException;
+import com.github.javaparser.ParseResult;
+import com.github.javaparser.ParserConfiguration;
 import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.symbolsolver.JavaSymbolSolver;
+import com.github.javaparser.symbolsolver.model.resolution.TypeSolver;
 import com.github.javaparser.symbolsolver.resolution.typesolvers.CombinedTypeSolver;
-import com.github.javaparser.symbolsolver.resolution.typesolvers.JarTypeSolver;
 import com.github.javaparser.symbolsolver.resolution.typesolvers.JavaParserTypeSolver;
 import com.github.javaparser.symbolsolver.resolution.typesolvers.ReflectionTypeSolver;
 
-import solution.neo4j.GraphDatabaseInserter;
+import solution.neo4j.TraceGraphWriter;
+import solution.parser.visitor.AbstractVisitor;
 import solution.parser.visitor.TypeVisitor;
 import utils.FileUtils;
 
 /**
+ * Scans the variants of a scenario in parallel. Each variant is parsed with its
+ * own parser and type solver. The traces of the scanned variants are passed
+ * through a queue to the database inserter, so the insertion of one variant
+ * overlaps with the parsing of the next ones.
+ * 
+ * Variants share most of their files, so each distinct file content is parsed
+ * once per scenario and its traces are reused by the other variants.
+ * 
+ * The variants of the scenario can be virtual variants (see
+ * utils.VirtualVariant), which are read without being generated on disk.
+ * 
+ * The solved signatures of the methods are cached by file content and
+ * position (see SignatureCache), so they are solved once for all the variants
+ * and the next runs.
+ * 
  * @author Richard Mller
  *
  */
 public class JavaSourceCodeParser {
-	private GraphDatabaseInserter databaseInserter = null;
+	private TraceGraphWriter databaseInserter = null;
 	private String scenarioPath = null;
 	private List<String> variantFolderNames = null;
+	private int threads;
+	// content hash of a java file to its traces, shared by the variants
+	private Map<String, Map<String, List<String>>> fileTracesCache = new ConcurrentHashMap<>();
+	// solved signatures, shared by the variants and the scenarios
+	private SignatureCache signatureCache = SignatureCache.getInstance();
+	private static final List<String> TRACE_KINDS = Arrays.asList("class", "field", "import", "method", "statement");
 	private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
-	public JavaSourceCodeParser(GraphDatabaseInserter databaseInserter, String scenarioPath,
-			List<String> variantFolderNames) throws IOException {
+	public JavaSourceCodeParser(TraceGraphWriter databaseInserter, String scenarioPath,
+			List<String> variantFolderNames) {
+		this(databaseInserter, scenarioPath, variantFolderNames, Runtime.getRuntime().availableProcessors());
+	}
+
+	public JavaSourceCodeParser(TraceGraphWriter databaseInserter, String scenarioPath,
+			List<String> variantFolderNames, int threads) {
 		this.databaseInserter = databaseInserter;
 		this.scenarioPath = scenarioPath;
 		this.variantFolderNames = variantFolderNames;
-		initSolver();
+		this.threads = Math.max(1, threads);
 	}
 
 	public void scanScenarioVariants() throws IOException, InterruptedException {
+		// the queue is bounded so finished variants wait for the inserter
+		// instead of piling up in memory
+		BlockingQueue<ScannedVariant> scannedVariants = new ArrayBlockingQueue<ScannedVariant>(threads);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
 		for (String variantFolderName : variantFolderNames) {
-			LOGGER.info("Scan variant " + variantFolderName);
-			File variantSourceDirectory = new File(scenarioPath + "\\variants\\" + variantFolderName + "\\src");
-			scan(FileUtils.getAllJavaFiles(variantSourceDirectory), variantFolderName);
+			executor.execute(() -> {
+				ScannedVariant scannedVariant;
+				try {
+					scannedVariant = new ScannedVariant(variantFolderName, scanVariant(variantFolderName), null);
+				} catch (Throwable t) {
+					// errors are also passed, the inserter waits for every
+					// variant
+					scannedVariant = new ScannedVariant(variantFolderName, null, t);
+				}
+				try {
+					scannedVariants.put(scannedVariant);
+				} catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+				}
+			});
+		}
+		executor.shutdown();
+		try {
+			for (int i = 0; i < variantFolderNames.size(); i++) {
+				ScannedVariant scannedVariant = scannedVariants.take();
+				if (scannedVariant.error != null) {
+					throw new IOException("Scan of variant " + scannedVariant.configuration + " failed",
+							scannedVariant.error);
+				}
+				databaseInserter.createTraces(scannedVariant.configuration, scannedVariant.traces);
+				LOGGER.info("Inserted traces of variant " + scannedVariant.configuration + " (" + (i + 1) + "/"
+						+ variantFolderNames.size() + ")");
+			}
+		} finally {
+			executor.shutdownNow();
+			signatureCache.save();
 		}
 	}
 
-	private void initSolver() throws IOException {
-		for (String variantFolderName : variantFolderNames) {
-			File variantSourceDirectory = new File(scenarioPath + "\\variants\\" + variantFolderName + "\\src");
-			File variantLibDirectory = new File(scenarioPath + "\\variants\\" + variantFolderName + "\\lib");
-			// create type solver
-			CombinedTypeSolver combinedTypeSolver = new CombinedTypeSolver();
-			// add external jar solvers
-			if (variantLibDirectory.exists()) {
-				int jarCounter = 0;
-				for (final File fileEntry : variantLibDirectory.listFiles()) {
-					if (fileEntry.isFile() && fileEntry.getName().toLowerCase().endsWith("jar")) {
-						combinedTypeSolver.add(new JarTypeSolver(fileEntry.getPath()));
-						jarCounter++;
-					}
-				}
-				LOGGER.info("Added " + jarCounter + " jar " + ((jarCounter == 1) ? "file" : "files")
-						+ " to solver from '{}'.", variantLibDirectory.getPath());
+	private Map<String, List<String>> scanVariant(String variantFolderName) throws IOException {
+		LOGGER.info("Scan variant " + variantFolderName);
+		File variantFolder = new File(new File(scenarioPath, "variants"), variantFolderName);
+		File variantSourceDirectory = new File(variantFolder, "src");
+		JavaParser parser = createParser(variantSourceDirectory, new File(variantFolder, "lib"));
+		SignatureCache.Statistics statistics = new SignatureCache.Statistics();
+		Map<String, List<String>> traces = scan(parser, FileUtils.getAllJavaFiles(variantSourceDirectory), statistics);
+		LOGGER.info("Signature cache of variant " + variantFolderName + ": " + statistics.getHits() + " hits, "
+				+ statistics.getMisses() + " misses");
+		return traces;
+	}
+
+	/**
+	 * Create the parser of a variant with the symbol solver of its jar files, the
+	 * JDK and its source code
+	 *
+	 * @param variantSourceDirectory
+	 *            it can be the src folder of a virtual variant
+	 * @param variantLibDirectory
+	 * @return the parser
+	 * @throws IOException
+	 */
+	static JavaParser createParser(File variantSourceDirectory, File variantLibDirectory) throws IOException {
+		// create type solver
+		CombinedTypeSolver combinedTypeSolver = new CombinedTypeSolver();
+		// add external jar solvers
+		if (FileUtils.exists(variantLibDirectory)) {
+			// the jar files are indexed once and shared by all variants
+			TypeSolver jarTypeSolver = JarTypeSolverCache.getInstance().getTypeSolver(variantLibDirectory);
+			if (jarTypeSolver != null) {
+				combinedTypeSolver.add(jarTypeSolver);
 			}
-			// add reflection solver
-			combinedTypeSolver.add(new ReflectionTypeSolver());
-			// add source solver
+		}
+		// add reflection solver
+		combinedTypeSolver.add(new ReflectionTypeSolver());
+		// add source solver
+		if (variantSourceDirectory.exists()) {
 			combinedTypeSolver.add(new JavaParserTypeSolver(variantSourceDirectory));
-			LOGGER.info("Added source directory to solver " + variantSourceDirectory.getPath());
-			// set created type solver globally
-			StaticJavaParser.getConfiguration().setSymbolResolver(new JavaSymbolSolver(combinedTypeSolver));
+		} else {
+			combinedTypeSolver.add(new VirtualVariantTypeSolver(variantSourceDirectory));
 		}
+		LOGGER.info("Added source directory to solver " + variantSourceDirectory.getPath());
+		// the type solver is only used by the parser of this variant
+		return new JavaParser(new ParserConfiguration().setSymbolResolver(new JavaSymbolSolver(combinedTypeSolver)));
 	}
 
-	private void scan(List<File> javaFiles, String configuration) throws IOException {
-		Map<String, List<String>> traces = new HashMap<String, List<String>>();
-		List<String> classTraces = new ArrayList<String>();
-		List<String> fieldTraces = new ArrayList<String>();
-		List<String> importTraces = new ArrayList<String>();
-		List<String> methodTraces = new ArrayList<String>();
-		List<String> statementTraces = new ArrayList<String>();
-		traces.put("class", classTraces);
-		traces.put("field", fieldTraces);
-		traces.put("import", importTraces);
-		traces.put("method", methodTraces);
-		traces.put("statement", statementTraces);
-
+	private Map<String, List<String>> scan(JavaParser parser, List<File> javaFiles,
+			SignatureCache.Statistics statistics) throws IOException {
+		Map<String, List<String>> traces = createTraces();
+		int reusedFiles = 0;
 		for (File javaFile : javaFiles) {
-			CompilationUnit cu = StaticJavaParser.parse(new FileInputStream(javaFile));
-			if (cu.getPackageDeclaration().isPresent()) {
-				cu.getTypes().accept(new TypeVisitor(cu.getPackageDeclaration().get().getNameAsString(), cu), traces);
+			byte[] content = FileUtils.readAllBytes(javaFile);
+			String hash = FileUtils.getContentHash(new ByteArrayInputStream(content));
+			Map<String, List<String>> fileTraces = fileTracesCache.get(hash);
+			if (fileTraces != null) {
+				reusedFiles++;
+			} else {
+				fileTraces = parse(parser, content, hash, statistics);
+				// files with signatures depending on the type solver are parsed
+				// in each variant
+				if (!fileTraces.containsKey(AbstractVisitor.VARIANT_SPECIFIC)) {
+					fileTracesCache.putIfAbsent(hash, fileTraces);
+				}
+			}
+			for (String traceKind : TRACE_KINDS) {
+				traces.get(traceKind).addAll(fileTraces.get(traceKind));
 			}
 		}
+		LOGGER.info("Reused traces of " + reusedFiles + " of " + javaFiles.size() + " files");
 		LOGGER.info("Found " + traces.get("class").size() + " class traces");
 		LOGGER.info("Found " + traces.get("field").size() + " field traces");
 		LOGGER.info("Found " + traces.get("import").size() + " import traces");
 		LOGGER.info("Found " + traces.get("method").size() + " method traces");
 		LOGGER.info("Found " + traces.get("statement").size() + " statement traces");
-		databaseInserter.createTraces(configuration, traces);
+		return traces;
+	}
+
+	private Map<String, List<String>> parse(JavaParser parser, byte[] content, String hash,
+			SignatureCache.Statistics statistics) {
+		Map<String, List<String>> traces = createTraces();
+		ParseResult<CompilationUnit> result = parser.parse(new ByteArrayInputStream(content));
+		if (!result.isSuccessful()) {
+			throw new ParseProblemException(result.getProblems());
+		}
+		CompilationUnit cu = result.getResult().get();
+		signatureCache.attach(cu, hash, statistics);
+		if (cu.getPackageDeclaration().isPresent()) {
+			cu.getTypes().accept(new TypeVisitor(cu.getPackageDeclaration().get().getNameAsString(), cu), traces);
+		}
+		return traces;
+	}
+
+	private static Map<String, List<String>> createTraces() {
+		Map<String, List<String>> traces = new HashMap<String, List<String>>();
+		for (String traceKind : TRACE_KINDS) {
+			traces.put(traceKind, new ArrayList<String>());
+		}
+		return traces;
+	}
+
+	/**
+	 * Traces of a scanned variant, or the error if the scan failed.
+	 */
+	private static class ScannedVariant {
+		private final String configuration;
+		private final Map<String, List<String>> traces;
+		private final Throwable error;
+
+		private ScannedVariant(String configuration, Map<String, List<String>> traces, Throwable error) {
+			this.configuration = configuration;
+			this.traces = traces;
+			this.error = error;
+		}
 	}
 }
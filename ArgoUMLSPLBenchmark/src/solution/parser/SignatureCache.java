@@ -0,0 +1,256 @@
+package solution.parser;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.net.URISyntaxException;
+import java.security.CodeSource;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.DataKey;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.CallableDeclaration;
+import com.github.javaparser.resolution.declarations.ResolvedReferenceTypeDeclaration;
+import com.github.javaparser.symbolsolver.javaparsermodel.JavaParserFacade;
+import com.github.javaparser.symbolsolver.logic.AbstractTypeDeclaration;
+
+import solution.parser.visitor.AbstractVisitor;
+import solution.parser.visitor.TraceKeyBuilder;
+import utils.FileUtils;
+
+/**
+ * Cache of the methods and constructors whose solved signature is their
+ * declared signature, identified by the content hash of their file and their
+ * position in the file. Solving the symbols is the most expensive part of the
+ * scan, and a method of the same file content has the same signature in all the
+ * variants where it is solved.
+ * 
+ * Only these declarations do not depend on the type solver of the variant (see
+ * AbstractVisitor.VARIANT_SPECIFIC): if the method could not be solved in
+ * another variant, its declared signature would be used, and it is the same. So
+ * the cache only keeps the keys of the declarations, the signature of a hit is
+ * the declared one. The others are solved in each variant as before.
+ * 
+ * Optionally, the keys are saved to a file so the next runs do not need to
+ * solve them. The file is rewritten with the keys used in this run only, so the
+ * keys of file contents that are not scanned anymore are dropped. The file is
+ * discarded if the classes creating the signatures or the JavaParser and symbol
+ * solver jars changed.
+ * 
+ * @author Richard Mller
+ *
+ */
+public class SignatureCache {
+	private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+	public static final File DEFAULT_CACHE_FOLDER = new File("signatureCache");
+	private static final SignatureCache INSTANCE = new SignatureCache(DEFAULT_CACHE_FOLDER);
+	private static final String CACHE_FILE_NAME = "signatures.txt";
+	private static final DataKey<FileSignatures> FILE_SIGNATURES = new DataKey<FileSignatures>() {
+	};
+
+	private File cacheFolder = null;
+	private String version = null;
+	// content hash, line and column of the declarations solved to their
+	// declared signature
+	private Set<String> solvedKeys = ConcurrentHashMap.newKeySet();
+	// keys hit or put in this run, the ones kept in the cache file
+	private Set<String> usedKeys = ConcurrentHashMap.newKeySet();
+	// number of used keys in the cache file, -1 if it was not saved yet
+	private int savedKeys = -1;
+
+	/**
+	 * Get the cache shared by all the scenarios of this JVM.
+	 * 
+	 * @return cache
+	 */
+	public static SignatureCache getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Create a cache.
+	 * 
+	 * @param cacheFolder folder of the cache file or null to keep it in memory
+	 */
+	public SignatureCache(File cacheFolder) {
+		this.cacheFolder = cacheFolder;
+		this.version = getClassHash(AbstractVisitor.class) + getClassHash(TraceKeyBuilder.class)
+				+ getClassHash(SignatureCache.class) + getJarHash(CompilationUnit.class)
+				+ getJarHash(JavaParserFacade.class) + getJarHash(AbstractTypeDeclaration.class)
+				+ getJarHash(ResolvedReferenceTypeDeclaration.class);
+		if (cacheFolder != null) {
+			File cacheFile = new File(cacheFolder, CACHE_FILE_NAME);
+			if (cacheFile.exists()) {
+				List<String> lines = FileUtils.getLinesOfFile(cacheFile);
+				if (!lines.isEmpty() && lines.get(0).equals(version)) {
+					solvedKeys.addAll(lines.subList(1, lines.size()));
+				} else {
+					LOGGER.info("Discard the signature cache of other visitor classes or JavaParser jars");
+				}
+			}
+		}
+	}
+
+	/**
+	 * Attach the signatures of a file to its compilation unit, where the
+	 * visitors find them.
+	 * 
+	 * @param cu         compilation unit
+	 * @param hash       content hash of the file
+	 * @param statistics hits and misses of the variant
+	 */
+	public void attach(CompilationUnit cu, String hash, Statistics statistics) {
+		cu.setData(FILE_SIGNATURES, new FileSignatures(this, hash, statistics));
+	}
+
+	/**
+	 * Get the signatures of the file of a node.
+	 * 
+	 * @param node node of a compilation unit
+	 * @return the signatures or null if the compilation unit was not attached
+	 */
+	public static FileSignatures getFileSignatures(Node node) {
+		return node.findCompilationUnit().filter(cu -> cu.containsData(FILE_SIGNATURES))
+				.map(cu -> cu.getData(FILE_SIGNATURES)).orElse(null);
+	}
+
+	/**
+	 * Rewrite the cache file with the keys used in this run, if they changed
+	 * since the last save. The keys of the file that were not used are dropped.
+	 */
+	public synchronized void save() {
+		int usedKeysCount = usedKeys.size();
+		if (cacheFolder != null && usedKeysCount != savedKeys) {
+			cacheFolder.mkdirs();
+			try (BufferedWriter output = new BufferedWriter(
+					new FileWriter(new File(cacheFolder, CACHE_FILE_NAME)))) {
+				output.append(version);
+				output.newLine();
+				for (String key : usedKeys) {
+					output.append(key);
+					output.newLine();
+				}
+				savedKeys = usedKeysCount;
+			} catch (IOException e) {
+				LOGGER.error(e.getMessage());
+			}
+		}
+	}
+
+	public int size() {
+		return solvedKeys.size();
+	}
+
+	private void put(String key) {
+		solvedKeys.add(key);
+		usedKeys.add(key);
+	}
+
+	private static String getClassHash(Class<?> c) {
+		try (InputStream in = c.getResourceAsStream(c.getSimpleName() + ".class")) {
+			if (in == null) {
+				return "";
+			}
+			return FileUtils.getContentHash(in);
+		} catch (IOException e) {
+			LOGGER.error(e.getMessage());
+			return "";
+		}
+	}
+
+	// hash of the jar of a class, or its location if it is not a jar
+	private static String getJarHash(Class<?> c) {
+		CodeSource codeSource = c.getProtectionDomain().getCodeSource();
+		if (codeSource == null) {
+			return "";
+		}
+		try {
+			File location = new File(codeSource.getLocation().toURI());
+			if (location.isFile()) {
+				return FileUtils.getContentHash(location);
+			}
+			return location.getAbsolutePath();
+		} catch (IOException | URISyntaxException | IllegalArgumentException e) {
+			LOGGER.error(e.getMessage());
+			return "";
+		}
+	}
+
+	/**
+	 * Cached signatures of one file content.
+	 */
+	public static class FileSignatures {
+		private final SignatureCache cache;
+		private final String hash;
+		private final Statistics statistics;
+
+		private FileSignatures(SignatureCache cache, String hash, Statistics statistics) {
+			this.cache = cache;
+			this.hash = hash;
+			this.statistics = statistics;
+		}
+
+		/**
+		 * Whether a declaration was solved to its declared signature in
+		 * another variant.
+		 * 
+		 * @param callableDeclaration method or constructor
+		 * @return true if it is cached
+		 */
+		public boolean isSolvedToDeclared(CallableDeclaration<?> callableDeclaration) {
+			String key = getKey(callableDeclaration);
+			boolean hit = key != null && cache.solvedKeys.contains(key);
+			if (hit) {
+				cache.usedKeys.add(key);
+				statistics.hits.incrementAndGet();
+			} else {
+				statistics.misses.incrementAndGet();
+			}
+			return hit;
+		}
+
+		/**
+		 * Cache a declaration whose solved signature is its declared
+		 * signature.
+		 * 
+		 * @param callableDeclaration method or constructor
+		 */
+		public void putSolvedToDeclared(CallableDeclaration<?> callableDeclaration) {
+			String key = getKey(callableDeclaration);
+			if (key != null) {
+				cache.put(key);
+			}
+		}
+
+		private String getKey(CallableDeclaration<?> callableDeclaration) {
+			return callableDeclaration.getBegin()
+					.map(position -> hash + ":" + position.line + ":" + position.column).orElse(null);
+		}
+	}
+
+	/**
+	 * Hits and misses of the cache, for example while scanning a variant.
+	 */
+	public static class Statistics {
+		private final AtomicInteger hits = new AtomicInteger();
+		private final AtomicInteger misses = new AtomicInteger();
+
+		public int getHits() {
+			return hits.get();
+		}
+
+		public int getMisses() {
+			return misses.get();
+		}
+	}
+}
@@ -0,0 +1,132 @@
+package solution.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParseResult;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.CallableDeclaration;
+import com.github.javaparser.ast.expr.BinaryExpr;
+import com.github.javaparser.ast.expr.InstanceOfExpr;
+import com.github.javaparser.ast.expr.MethodCallExpr;
+
+import solution.parser.visitor.TraceKeyBuilder;
+import utils.FeatureUtils;
+import utils.FileUtils;
+
+/**
+ * Compare the time of building the statement and signature keys of the traces
+ * of a full variant with String.replaceAll, as the visitors did before, against
+ * the TraceKeyBuilder. The keys are checked to be equal before measuring. The
+ * variant is virtual if the scenario was not generated and virtual variants are
+ * enabled (-DvirtualVariants=true).
+ *
+ * @author Richard Mller
+ *
+ */
+public class TraceKeyBenchmark {
+	private static final String SCENARIO_PATH = "scenarios/ScenarioOriginalVariant";
+	private static final int WARMUP_ITERATIONS = 5;
+	private static final int ITERATIONS = 20;
+
+	public static void main(String[] args) throws IOException {
+		FeatureUtils utils = new FeatureUtils(SCENARIO_PATH);
+		File variantFolder = utils.getVariantFolderOfConfig(utils.getConfigurationIds().get(0));
+		File srcFolder = new File(variantFolder, "src");
+		JavaParser parser = JavaSourceCodeParser.createParser(srcFolder, new File(variantFolder, "lib"));
+
+		// the same nodes and signatures as the visitors
+		List<Node> statements = new ArrayList<Node>();
+		List<String> signatures = new ArrayList<String>();
+		List<String> resolvedSignatures = new ArrayList<String>();
+		List<File> javaFiles = FileUtils.getAllJavaFiles(srcFolder);
+		for (File javaFile : javaFiles) {
+			ParseResult<CompilationUnit> result = parser
+					.parse(new ByteArrayInputStream(FileUtils.readAllBytes(javaFile)));
+			if (!result.getResult().isPresent()) {
+				continue;
+			}
+			CompilationUnit cu = result.getResult().get();
+			for (BinaryExpr binaryExpr : cu.findAll(BinaryExpr.class)) {
+				if (!binaryExpr.getLeft().isBinaryExpr() && !binaryExpr.getRight().isBinaryExpr()) {
+					statements.add(binaryExpr.removeComment());
+				}
+			}
+			for (MethodCallExpr methodCallExpr : cu.findAll(MethodCallExpr.class)) {
+				if (!(methodCallExpr.getParentNode().get() instanceof MethodCallExpr)) {
+					statements.add(methodCallExpr.removeComment());
+				}
+			}
+			for (InstanceOfExpr instanceOfExpr : cu.findAll(InstanceOfExpr.class)) {
+				statements.add(instanceOfExpr.removeComment());
+			}
+			for (CallableDeclaration<?> callableDeclaration : cu.findAll(CallableDeclaration.class)) {
+				signatures.add(callableDeclaration.getSignature().asString());
+				try {
+					if (callableDeclaration.isMethodDeclaration()) {
+						resolvedSignatures.add(callableDeclaration.asMethodDeclaration().resolve().getSignature());
+					} else {
+						resolvedSignatures
+								.add(callableDeclaration.asConstructorDeclaration().resolve().getSignature());
+					}
+				} catch (RuntimeException e) {
+					// unsolved, the visitors use the declared signature
+				}
+			}
+		}
+		System.out.println(javaFiles.size() + " files in " + variantFolder.getName() + ", " + statements.size()
+				+ " statements, " + signatures.size() + " signatures, " + resolvedSignatures.size()
+				+ " resolved signatures");
+
+		if (!buildKeys(statements, signatures, resolvedSignatures, false)
+				.equals(buildKeys(statements, signatures, resolvedSignatures, true))) {
+			System.err.println("Different keys");
+			return;
+		}
+
+		for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+			buildKeys(statements, signatures, resolvedSignatures, false);
+			buildKeys(statements, signatures, resolvedSignatures, true);
+		}
+		long replaceAll = 0;
+		long traceKeyBuilder = 0;
+		for (int i = 0; i < ITERATIONS; i++) {
+			long start = System.nanoTime();
+			buildKeys(statements, signatures, resolvedSignatures, false);
+			replaceAll += System.nanoTime() - start;
+			start = System.nanoTime();
+			buildKeys(statements, signatures, resolvedSignatures, true);
+			traceKeyBuilder += System.nanoTime() - start;
+		}
+		System.out.println("replaceAll (ms): " + replaceAll / ITERATIONS / 1000000);
+		System.out.println("TraceKeyBuilder (ms): " + traceKeyBuilder / ITERATIONS / 1000000);
+	}
+
+	private static List<String> buildKeys(List<Node> statements, List<String> signatures,
+			List<String> resolvedSignatures, boolean useBuilder) {
+		List<String> keys = new ArrayList<String>();
+		String parent = "org.argouml.Example__method(String,int)";
+		TraceKeyBuilder traceKey = new TraceKeyBuilder(parent);
+		for (Node statement : statements) {
+			if (useBuilder) {
+				keys.add(traceKey.start().appendWithoutWhitespace(statement.toString()).build());
+			} else {
+				keys.add(parent + "__" + statement.toString().replaceAll(" ", "").replaceAll("\\n", ""));
+			}
+		}
+		for (String signature : signatures) {
+			keys.add(useBuilder ? TraceKeyBuilder.removeSpacesAfterCommas(signature)
+					: signature.replaceAll(", ", ","));
+		}
+		for (String signature : resolvedSignatures) {
+			keys.add(useBuilder ? TraceKeyBuilder.removeQualifiers(signature)
+					: signature.replaceAll("[a-zA-z|0-9|_]*[.]", "").replaceAll(", ", ","));
+		}
+		return keys;
+	}
+}
@@ -0,0 +1,153 @@
+package solution.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParseStart;
+import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.Providers;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.resolution.declarations.ResolvedReferenceTypeDeclaration;
+import com.github.javaparser.symbolsolver.javaparser.Navigator;
+import com.github.javaparser.symbolsolver.javaparsermodel.JavaParserFacade;
+import com.github.javaparser.symbolsolver.model.resolution.SymbolReference;
+import com.github.javaparser.symbolsolver.model.resolution.TypeSolver;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import utils.FileUtils;
+import utils.VirtualVariant;
+
+/**
+ * Solves the types declared in the source folder of a virtual variant. The
+ * JavaParserTypeSolver only reads files on disk, so this type solver follows
+ * the same steps reading the files of the virtual variant: first the file named
+ * as the type and then the other files of the same package.
+ *
+ * @author Richard Mller
+ *
+ */
+public class VirtualVariantTypeSolver implements TypeSolver {
+	private final File srcDirectory;
+	private final VirtualVariant virtualVariant;
+	private final JavaParser javaParser;
+	private TypeSolver parent = null;
+	private final Cache<File, Optional<CompilationUnit>> parsedFiles = CacheBuilder.newBuilder().softValues()
+			.build();
+	private final Cache<File, List<CompilationUnit>> parsedDirectories = CacheBuilder.newBuilder().softValues()
+			.build();
+	private final Cache<String, SymbolReference<ResolvedReferenceTypeDeclaration>> foundTypes = CacheBuilder
+			.newBuilder().softValues().build();
+
+	public VirtualVariantTypeSolver(File srcDirectory) {
+		this.srcDirectory = srcDirectory;
+		this.virtualVariant = VirtualVariant.get(srcDirectory);
+		if (virtualVariant == null || !virtualVariant.isDirectory(srcDirectory)) {
+			throw new IllegalStateException(srcDirectory + " is not a folder of a virtual variant");
+		}
+		this.javaParser = new JavaParser(
+				new ParserConfiguration().setLanguageLevel(ParserConfiguration.LanguageLevel.BLEEDING_EDGE));
+	}
+
+	@Override
+	public String toString() {
+		return "VirtualVariantTypeSolver{srcDirectory=" + srcDirectory + ", parent=" + parent + "}";
+	}
+
+	@Override
+	public TypeSolver getParent() {
+		return parent;
+	}
+
+	@Override
+	public void setParent(TypeSolver parent) {
+		this.parent = parent;
+	}
+
+	@Override
+	public SymbolReference<ResolvedReferenceTypeDeclaration> tryToSolveType(String name) {
+		try {
+			return foundTypes.get(name, () -> tryToSolveTypeUncached(name));
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private SymbolReference<ResolvedReferenceTypeDeclaration> tryToSolveTypeUncached(String name) {
+		String[] nameElements = name.split("\\.");
+		for (int i = nameElements.length; i > 0; i--) {
+			StringBuilder filePath = new StringBuilder();
+			for (int j = 0; j < i; j++) {
+				filePath.append("/").append(nameElements[j]);
+			}
+			filePath.append(".java");
+			StringBuilder typeName = new StringBuilder();
+			for (int j = i - 1; j < nameElements.length; j++) {
+				if (j != i - 1) {
+					typeName.append(".");
+				}
+				typeName.append(nameElements[j]);
+			}
+			// the file named as the type
+			File srcFile = new File(srcDirectory, filePath.toString());
+			Optional<CompilationUnit> compilationUnit = parse(srcFile);
+			if (compilationUnit.isPresent()) {
+				Optional<TypeDeclaration<?>> astTypeDeclaration = Navigator.findType(compilationUnit.get(),
+						typeName.toString());
+				if (astTypeDeclaration.isPresent()) {
+					return SymbolReference
+							.solved(JavaParserFacade.get(this).getTypeDeclaration(astTypeDeclaration.get()));
+				}
+			}
+			// the other files of the package, for types declared in a file
+			// with another name
+			for (CompilationUnit packageCompilationUnit : parseDirectory(srcFile.getParentFile())) {
+				Optional<TypeDeclaration<?>> astTypeDeclaration = Navigator.findType(packageCompilationUnit,
+						typeName.toString());
+				if (astTypeDeclaration.isPresent()) {
+					return SymbolReference
+							.solved(JavaParserFacade.get(this).getTypeDeclaration(astTypeDeclaration.get()));
+				}
+			}
+		}
+		return SymbolReference.unsolved(ResolvedReferenceTypeDeclaration.class);
+	}
+
+	private Optional<CompilationUnit> parse(File srcFile) {
+		try {
+			return parsedFiles.get(srcFile, () -> {
+				if (!virtualVariant.isFile(srcFile)) {
+					return Optional.empty();
+				}
+				byte[] content = FileUtils.readAllBytes(srcFile);
+				return javaParser
+						.parse(ParseStart.COMPILATION_UNIT, Providers.provider(new ByteArrayInputStream(content)))
+						.getResult().map(cu -> cu.setStorage(srcFile.toPath()));
+			});
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Issue while parsing while type solving: " + srcFile.getAbsolutePath(), e);
+		}
+	}
+
+	private List<CompilationUnit> parseDirectory(File directory) {
+		try {
+			return parsedDirectories.get(directory, () -> {
+				List<CompilationUnit> units = new ArrayList<CompilationUnit>();
+				for (File file : virtualVariant.listFiles(directory)) {
+					if (file.getName().toLowerCase().endsWith(".java")) {
+						parse(file).ifPresent(units::add);
+					}
+				}
+				return units;
+			});
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Unable to parse directory " + directory, e);
+		}
+	}
+}
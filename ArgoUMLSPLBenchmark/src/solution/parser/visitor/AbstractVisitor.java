@@ -1,5 +1,6 @@
 package solution.parser.visitor;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -7,11 +8,18 @@ import com.github.javaparser.ast.body.CallableDeclaration;
 import com.github.javaparser.ast.visitor.VoidVisitorAdapter;
 import com.github.javaparser.resolution.UnsolvedSymbolException;
 
+import solution.parser.SignatureCache;
+import solution.parser.SignatureCache.FileSignatures;
+
 /**
  * @author Richard Mller
  *
  */
 public abstract class AbstractVisitor extends VoidVisitorAdapter<Map<String, List<String>>> {
+	/**
+	 * Key of the traces that depend on the type solver of the variant
+	 */
+	public static final String VARIANT_SPECIFIC = "variantSpecific";
 	private String parent = null;
 
 	protected AbstractVisitor(String parent) {
@@ -22,18 +30,35 @@ public abstract class AbstractVisitor extends VoidVisitorAdapter<Map<String, Lis
 		return parent;
 	}
 
-	protected String getSolvedSignature(CallableDeclaration callableDeclaration) {
-
+	protected String getSolvedSignature(CallableDeclaration callableDeclaration, Map<String, List<String>> traces) {
+		String signature = TraceKeyBuilder.removeSpacesAfterCommas(callableDeclaration.getSignature().asString());
+		// solved in another variant with the same file content
+		FileSignatures fileSignatures = SignatureCache.getFileSignatures(callableDeclaration);
+		if (fileSignatures != null && fileSignatures.isSolvedToDeclared(callableDeclaration)) {
+			return signature;
+		}
+		String solvedSignature = null;
+		// the signature could be different with the type solver of another
+		// variant if it was not solved or if solving it changed it
+		boolean variantSpecific = true;
 		try {
 			if (callableDeclaration.isMethodDeclaration()) {
-				return callableDeclaration.asMethodDeclaration().resolve().getSignature()
-						.replaceAll("[a-zA-z|0-9|_]*[.]", "").replaceAll(", ", ",");
+				solvedSignature = TraceKeyBuilder
+						.removeQualifiers(callableDeclaration.asMethodDeclaration().resolve().getSignature());
 			} else {
-				return callableDeclaration.asConstructorDeclaration().resolve().getSignature()
-						.replaceAll("[a-zA-z|0-9|_]*[.]", "").replaceAll(", ", ",");
+				solvedSignature = TraceKeyBuilder
+						.removeQualifiers(callableDeclaration.asConstructorDeclaration().resolve().getSignature());
 			}
+			variantSpecific = !solvedSignature.equals(signature);
 		} catch (UnsolvedSymbolException use) {
-			return callableDeclaration.getSignature().asString().replaceAll(", ", ",");
+			solvedSignature = signature;
+		}
+		if (variantSpecific) {
+			traces.computeIfAbsent(VARIANT_SPECIFIC, key -> new ArrayList<String>())
+					.add(getParent() + "__" + solvedSignature);
+		} else if (fileSignatures != null) {
+			fileSignatures.putSolvedToDeclared(callableDeclaration);
 		}
+		return solvedSignature;
 	}
 }
@@ -23,7 +23,7 @@ public class MethodVisitor extends AbstractVisitor {
 		StringBuilder methodTrace = new StringBuilder();
 		methodTrace.append(getParent());
 		methodTrace.append("__");
-		methodTrace.append(getSolvedSignature(methodDeclaration));
+		methodTrace.append(getSolvedSignature(methodDeclaration, traces));
 		methodTraces.add(methodTrace.toString());
 		addStatements(methodDeclaration, methodTrace.toString(), traces);
 
@@ -35,7 +35,7 @@ public class MethodVisitor extends AbstractVisitor {
 		StringBuilder methodTrace = new StringBuilder();
 		methodTrace.append(getParent());
 		methodTrace.append("__");
-		methodTrace.append(getSolvedSignature(constructorDeclaration));
+		methodTrace.append(getSolvedSignature(constructorDeclaration, traces));
 		methodTraces.add(methodTrace.toString());
 		addStatements(constructorDeclaration, methodTrace.toString(), traces);
 	}
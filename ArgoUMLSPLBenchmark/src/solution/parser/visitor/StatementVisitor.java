@@ -16,16 +16,19 @@ import com.github.javaparser.ast.expr.ObjectCreationExpr;
  */
 public class StatementVisitor extends AbstractVisitor {
 
+	private final TraceKeyBuilder traceKey;
+
 	public StatementVisitor(String parent) {
 		super(parent);
+		this.traceKey = new TraceKeyBuilder(parent);
 	}
 
 	@Override
 	public void visit(BinaryExpr binaryExpr, Map<String, List<String>> traces) {
 		List<String> statementTraces = traces.get("statement");
 		if (!binaryExpr.getLeft().isBinaryExpr() && !binaryExpr.getRight().isBinaryExpr()) {
-			String statementTrace = getParent() + "__"
-					+ binaryExpr.removeComment().toString().replaceAll(" ", "").replaceAll("\\n", "");
+			String statementTrace = traceKey.start().appendWithoutWhitespace(binaryExpr.removeComment().toString())
+					.build();
 			statementTraces.add(statementTrace);
 		}
 		statementTraces.add(getParent() + "__" + binaryExpr.getOperator().asString());
@@ -36,9 +39,8 @@ public class StatementVisitor extends AbstractVisitor {
 	public void visit(MethodCallExpr methodCallExpr, Map<String, List<String>> traces) {
 		List<String> statementTraces = traces.get("statement");
 		if (!(methodCallExpr.getParentNode().get() instanceof MethodCallExpr)) {
-			String statementTrace = getParent() + "__"
-					+ methodCallExpr.removeComment().toString().replaceAll(" ", "").replaceAll("\\n", "") + " "
-					+ methodCallExpr.getBegin().get().column;
+			String statementTrace = traceKey.start().appendWithoutWhitespace(methodCallExpr.removeComment().toString())
+					.append(" ").append(methodCallExpr.getBegin().get().column).build();
 			statementTraces.add(statementTrace);
 		}
 		super.visit(methodCallExpr, traces);
@@ -47,8 +49,8 @@ public class StatementVisitor extends AbstractVisitor {
 	@Override
 	public void visit(InstanceOfExpr instanceOfExpr, Map<String, List<String>> traces) {
 		List<String> statementTraces = traces.get("statement");
-		String statementTrace = getParent() + "__"
-				+ instanceOfExpr.removeComment().toString().replaceAll(" ", "").replaceAll("\\n", "");
+		String statementTrace = traceKey.start().appendWithoutWhitespace(instanceOfExpr.removeComment().toString())
+				.build();
 		statementTraces.add(statementTrace);
 		super.visit(instanceOfExpr, traces);
 	}
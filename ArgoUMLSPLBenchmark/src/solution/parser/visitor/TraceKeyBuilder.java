@@ -0,0 +1,110 @@
+package solution.parser.visitor;
+
+/**
+ * Builds the keys of the traces in a reusable buffer. The keys are the same as
+ * those built with String.replaceAll, but each character is copied once and
+ * no regular expression is compiled.
+ *
+ * @author Richard Mller
+ *
+ */
+public class TraceKeyBuilder {
+	private final StringBuilder buffer = new StringBuilder(128);
+	private final String parent;
+
+	public TraceKeyBuilder(String parent) {
+		this.parent = parent;
+	}
+
+	/**
+	 * Start a new key with the parent trace and the separator
+	 */
+	public TraceKeyBuilder start() {
+		buffer.setLength(0);
+		buffer.append(parent).append("__");
+		return this;
+	}
+
+	public TraceKeyBuilder append(String text) {
+		buffer.append(text);
+		return this;
+	}
+
+	public TraceKeyBuilder append(int number) {
+		buffer.append(number);
+		return this;
+	}
+
+	/**
+	 * Append a pretty printed node without spaces and line feeds, as
+	 * replaceAll(" ", "").replaceAll("\\n", "")
+	 */
+	public TraceKeyBuilder appendWithoutWhitespace(CharSequence text) {
+		buffer.ensureCapacity(buffer.length() + text.length());
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c != ' ' && c != '\n') {
+				buffer.append(c);
+			}
+		}
+		return this;
+	}
+
+	public String build() {
+		return buffer.toString();
+	}
+
+	/**
+	 * Remove the spaces after the commas of a signature, as replaceAll(", ",
+	 * ",")
+	 */
+	public static String removeSpacesAfterCommas(String signature) {
+		if (signature.indexOf(", ") == -1) {
+			return signature;
+		}
+		return simplify(signature, false);
+	}
+
+	/**
+	 * Remove the qualifiers of the types of a resolved signature and the spaces
+	 * after the commas, as replaceAll("[a-zA-z|0-9|_]*[.]", "").replaceAll(",
+	 * ", ","). For example, m(java.lang.String, int) is m(String,int).
+	 */
+	public static String removeQualifiers(String signature) {
+		if (signature.indexOf('.') == -1 && signature.indexOf(", ") == -1) {
+			return signature;
+		}
+		return simplify(signature, true);
+	}
+
+	private static String simplify(String signature, boolean removeQualifiers) {
+		StringBuilder simplified = new StringBuilder(signature.length());
+		// the comma whose following space was removed
+		int usedComma = -1;
+		for (int i = 0; i < signature.length(); i++) {
+			char c = signature.charAt(i);
+			if (c == '.' && removeQualifiers) {
+				// remove the dot and the qualifier before it
+				int length = simplified.length();
+				while (length > 0 && isQualifierChar(simplified.charAt(length - 1))) {
+					length--;
+				}
+				simplified.setLength(length);
+			} else if (c == ' ' && simplified.length() > 0 && simplified.charAt(simplified.length() - 1) == ','
+					&& usedComma != simplified.length() - 1) {
+				usedComma = simplified.length() - 1;
+			} else {
+				simplified.append(c);
+			}
+		}
+		return simplified.toString();
+	}
+
+	/**
+	 * The characters of [a-zA-z|0-9|_], A-z includes the characters between Z
+	 * and a
+	 */
+	private static boolean isQualifierChar(char c) {
+		return (c >= 'A' && c <= 'z') || (c >= '0' && c <= '9') || c == '|';
+	}
+}
@@ -2,176 +2,261 @@ package solution.set;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 
 /**
+ * Calculates which variants are the minuends and which are the subtrahends of
+ * an elementary set. Features are numbered from 1 and a variant is the bit
+ * mask of its features, so feature 1 is the bit 0. Elementary sets are named
+ * like the features of the technique, e.g. 1_or_3, 1_and_3 or not_1. In a set
+ * with both, the or binds stronger, e.g. 1_or_2_and_8 is (1 or 2) and 8.
+ *
+ * By default an and-feature only gets the or-and sets of the ArgoUML SPL
+ * (1_or_2_and_8 for 1_and_8 and 2_and_8), as before. Optionally it gets every
+ * set in which one of its features is or-ed with another feature, which adds
+ * 2 * (n - 2) sets to compute for each and-feature of two of the n features.
+ *
+ * The minuends and subtrahends of an elementary set are only calculated when
+ * they are requested and only over the variants of the scenario, so the
+ * number of features is not limited by the 2^n possible variants.
+ *
  * @author Richard Mller
  *
  */
 public class SetCalculator {
+
+	private static final String OR = "_or_";
+	private static final String AND = "_and_";
+	private static final String NOT = "not_";
+
+	/**
+	 * System property to compute all the or-and sets of the and-features, e.g.
+	 * -DsetCalculator.allOrAndSets=true
+	 */
+	public static final String ALL_OR_AND_SETS_PROPERTY = "setCalculator.allOrAndSets";
+
+	/**
+	 * Code annotated with (1 or 2) and 8 belongs to the features 1_and_8 and
+	 * 2_and_8
+	 */
+	private static final List<String> ARGOUML_OR_AND_SETS = Arrays.asList("1_or_2_and_8");
+
 	int numberOfFeatures = 0;
-	int numberOfVariants = 0;
-	private List<String> elementarySets = null;
-	private Map<String, List<String>> variants = null;
-	private Map<String, List<String>> minuendSets = null;
-	private Map<String, List<String>> subtrahendSets = null;
+	private boolean allOrAndSets = false;
+	private List<Long> variants = null;
+	private Map<String, List<Long>> minuendSets = null;
+	private Map<String, List<Long>> subtrahendSets = null;
 
-	public SetCalculator(int numberOfFeatures) {
-		this.numberOfFeatures = numberOfFeatures;
-		this.numberOfVariants = (int) Math.pow(2, this.numberOfFeatures);
-		this.elementarySets = new ArrayList<String>();
-		this.variants = new HashMap<String, List<String>>();
-		this.minuendSets = new HashMap<String, List<String>>();
-		this.subtrahendSets = new HashMap<String, List<String>>();
+	/**
+	 * @param numberOfFeatures
+	 * @param variants
+	 *            the feature masks of the variants of the scenario
+	 */
+	public SetCalculator(int numberOfFeatures, Collection<Long> variants) {
+		this(numberOfFeatures, variants, false);
+	}
 
-		createElementarySets();
-		createConfigurations();
-		createCalculationsOfElementarySets();
+	/**
+	 * @param numberOfFeatures
+	 * @param variants
+	 *            the feature masks of the variants of the scenario
+	 * @param allOrAndSets
+	 *            true to compute all the or-and sets of the and-features, false
+	 *            for the or-and sets of the ArgoUML SPL
+	 */
+	public SetCalculator(int numberOfFeatures, Collection<Long> variants, boolean allOrAndSets) {
+		if (numberOfFeatures >= Long.SIZE) {
+			throw new IllegalArgumentException("At most " + (Long.SIZE - 1) + " features are supported");
+		}
+		this.numberOfFeatures = numberOfFeatures;
+		this.allOrAndSets = allOrAndSets;
+		this.variants = new ArrayList<Long>(new LinkedHashSet<Long>(variants));
+		this.minuendSets = new HashMap<String, List<Long>>();
+		this.subtrahendSets = new HashMap<String, List<Long>>();
 	}
 
-	public List<String> getMinuendsOfElementarySet(String elementarySet) {
+	/**
+	 * Get the variants that contain the elementary set
+	 *
+	 * @param elementarySet
+	 * @return the feature masks of the variants
+	 */
+	public List<Long> getMinuendsOfElementarySet(String elementarySet) {
+		calculateElementarySet(elementarySet);
 		return minuendSets.get(elementarySet);
 	}
 
-	public List<String> getSubtrahendsOfElementarySet(String elementarySet) {
+	/**
+	 * Get the variants that do not contain the elementary set
+	 *
+	 * @param elementarySet
+	 * @return the feature masks of the variants
+	 */
+	public List<Long> getSubtrahendsOfElementarySet(String elementarySet) {
+		calculateElementarySet(elementarySet);
 		return subtrahendSets.get(elementarySet);
 	}
 
+	/**
+	 * Get the elementary sets whose code belongs to a feature
+	 *
+	 * @param feature
+	 *            e.g. 1, 1_and_3 or not_1
+	 * @return the names of the elementary sets
+	 */
 	public List<String> getElementarySetsOfFeature(String feature) {
 		List<String> elementarySets = new ArrayList<String>();
-		if (feature.contains("_and_")) {
-			// and
+		if (feature.contains(AND)) {
+			// and: code annotated with (f or other) and the rest of the
+			// features also belongs to the feature, as 1_or_2_and_8 belongs to
+			// 1_and_8 and 2_and_8
 			elementarySets.add(feature);
-			if (feature.equals("1_and_8") || feature.equals("2_and_8")) {
-				elementarySets.add("1_or_2_and_8");
-				minuendSets.put("1_or_2_and_8", Arrays.asList(new String[] { "1_or_8", "2_or_8" }));
-				subtrahendSets.put("1_or_2_and_8", Arrays.asList(new String[] { "8", "1", "2", "1_or_2" }));
+			long featureMask = getMask(feature);
+			for (String conjunct : feature.split(AND)) {
+				long conjunctMask = getMask(conjunct);
+				for (int other = 1; other <= numberOfFeatures; other++) {
+					long otherMask = getMask(String.valueOf(other));
+					if ((featureMask & otherMask) == 0) {
+						List<Long> groups = new ArrayList<Long>();
+						for (String rest : feature.split(AND)) {
+							long restMask = getMask(rest);
+							groups.add(restMask == conjunctMask ? restMask | otherMask : restMask);
+						}
+						String orAndSet = getName(groups);
+						if (allOrAndSets || ARGOUML_OR_AND_SETS.contains(orAndSet)) {
+							elementarySets.add(orAndSet);
+						}
+					}
+				}
 			}
-		} else if (feature.startsWith("not_")) {
+		} else if (feature.startsWith(NOT)) {
 			// not
 			elementarySets.add(feature);
 		} else {
-			// complete
-			variants.keySet().forEach(variant -> {
-				if (variant.contains(feature) && variant.split("_or_").length <= 2) {
-					elementarySets.add(variant);
+			// complete: the feature alone or with one other feature
+			int featureNumber = Integer.parseInt(feature);
+			elementarySets.add(feature);
+			for (int other = 1; other <= numberOfFeatures; other++) {
+				if (other < featureNumber) {
+					elementarySets.add(other + OR + feature);
+				} else if (other > featureNumber) {
+					elementarySets.add(feature + OR + other);
 				}
-			});
+			}
 		}
 		return elementarySets;
 	}
 
-	private void createElementarySets() {
-		for (int i = 0; i < numberOfVariants; i++) {
-			StringBuilder orSet = new StringBuilder();
-			int andCounter = 0;
-			for (int j = 0; j < numberOfFeatures; j++) {
-				if ((i & (1 << j)) > 0) {
-					orSet.append(j + 1 + "_or_");
-					andCounter++;
-				}
-			}
-			if (orSet.length() != 0) {
-				orSet.setLength(orSet.length() - 4);
-			}
-			elementarySets.add(orSet.toString());
-			if (andCounter >= 2) {
-				String andSet = orSet.toString().replaceAll("_or_", "_and_");
-				elementarySets.add(andSet);
-			}
+	/**
+	 * Get the feature mask of a set of features, e.g. 1_or_3 or 1_and_3
+	 *
+	 * @param features
+	 * @return the mask
+	 */
+	public static long getMask(String features) {
+		long mask = 0;
+		if (features.isEmpty()) {
+			return mask;
 		}
-		for (int i = 0; i < numberOfFeatures; i++) {
-			elementarySets.add("not_" + (i + 1));
+		for (String feature : features.split(OR + "|" + AND)) {
+			mask |= 1L << (Integer.parseInt(feature) - 1);
 		}
+		return mask;
 	}
 
-	private void createConfigurations() {
-		for (int i = 0; i < elementarySets.size(); i++) {
-			List<String> variant = new ArrayList<String>();
-			String elementarySetElement = elementarySets.get(i);
-			if (elementarySets.get(i).contains("and") || elementarySets.get(i).contains("not")) {
-				// leave out sets with and as well as not
-				continue;
-			}
-			for (int k = 0; k < elementarySets.size(); k++) {
-				String lookupSetElement = elementarySets.get(k);
-				if (contains(elementarySetElement, lookupSetElement) && !variant.contains(lookupSetElement)) {
-					variant.add(lookupSetElement);
+	/**
+	 * Get the name of an elementary set of and-ed groups of or-ed features
+	 *
+	 * @param groups
+	 *            the mask of each group
+	 * @return the name, the features of each group are in ascending order and
+	 *         the groups in ascending order of their last feature, e.g.
+	 *         1_or_2_and_8 or 2_and_1_or_3, so a set has one name whatever
+	 *         and-feature it comes from
+	 */
+	private static String getName(List<Long> groups) {
+		List<Long> sortedGroups = new ArrayList<Long>(groups);
+		sortedGroups.sort((a, b) -> Long.compare(Long.highestOneBit(a), Long.highestOneBit(b)));
+		List<String> names = new ArrayList<String>();
+		for (long group : sortedGroups) {
+			List<String> features = new ArrayList<String>();
+			for (int bit = 0; bit < Long.SIZE; bit++) {
+				if ((group & 1L << bit) != 0) {
+					features.add(String.valueOf(bit + 1));
 				}
 			}
-			variants.put(elementarySetElement, variant);
+			names.add(String.join(OR, features));
 		}
+		return String.join(AND, names);
 	}
 
-	private void createCalculationsOfElementarySets() {
-
-		for (int i = 0; i < elementarySets.size(); i++) {
-			String elementarySetElement = elementarySets.get(i);
-			List<String> minuendSet = new ArrayList<String>();
-			List<String> subtrahendSet = new ArrayList<String>();
-			variants.entrySet().forEach(variant -> {
-				if (variant.getValue().contains(elementarySetElement) && !minuendSet.contains(variant.getKey())) {
-					minuendSet.add(variant.getKey());
-				} else if (!subtrahendSet.contains(variant.getKey())) {
-					subtrahendSet.add(variant.getKey());
-				}
-			});
-			minuendSets.put(elementarySetElement, minuendSet);
-			subtrahendSets.put(elementarySetElement, subtrahendSet);
+	private void calculateElementarySet(String elementarySet) {
+		if (minuendSets.containsKey(elementarySet)) {
+			return;
 		}
-	}
-
-	private boolean contains(String set1, String set2) {
-		List<String> set1Elements = Arrays.asList(set1.split("_or_|_and_"));
-		List<String> set2Elements = Arrays.asList(set2.split("_or_|_and_"));
-
-		if (set2.contains("not")) {
-
-			return !contains(set1, set2.replace("not_", ""));
-
-		} else if (set1Elements.size() == 1) {
-			// pure set
-			if (set2Elements.size() == 1) {
-				return set1Elements.equals(set2Elements);
-			} else if (set2.contains("and")) {
-				return false;
-			} else if (set2.contains("or")) {
-				return set2Elements.contains(set1Elements.get(0));
+		List<Long> minuendSet = new ArrayList<Long>();
+		List<Long> subtrahendSet = new ArrayList<Long>();
+		if (elementarySet.contains(OR) && elementarySet.contains(AND)) {
+			// only the variants with the least features that tell the set
+			// apart: one feature of each group is the set, fewer is not
+			long mask = getMask(elementarySet);
+			List<Long> groups = new ArrayList<Long>();
+			for (String group : elementarySet.split(AND)) {
+				groups.add(getMask(group));
 			}
-		} else if (set1.contains("or")) {
-			// or set
-			if (set2Elements.size() == 1) {
-				return set1Elements.contains(set2);
-			} else if (set2.contains("and")) {
-				return set1Elements.containsAll(set2Elements);
-			} else if (set2.contains("or")) {
-				for (String set1Element : set1Elements) {
-					if (set2Elements.contains(set1Element)) {
-						return true;
-					}
+			for (long variant : variants) {
+				if (variant == 0 || (variant & ~mask) != 0) {
+					continue;
+				}
+				boolean minuend = true;
+				boolean subtrahend = false;
+				for (long group : groups) {
+					int count = Long.bitCount(variant & group);
+					minuend &= count == 1;
+					subtrahend |= count == 0;
+				}
+				if (minuend) {
+					minuendSet.add(variant);
+				} else if (subtrahend) {
+					subtrahendSet.add(variant);
 				}
-				return false;
 			}
-		} else if (set1.contains("and")) {
-			// and set
-			if (set2Elements.size() == 1) {
-				return set1Elements.contains(set2Elements.get(0));
-			} else if (set2.contains("and")) {
-				if (set1Elements.size() > set2Elements.size()) {
-					for (String set2Element : set2Elements) {
-						if (set1Elements.contains(set2Element)) {
-							return true;
-						}
-					}
+		} else {
+			for (long variant : variants) {
+				if (contains(variant, elementarySet)) {
+					minuendSet.add(variant);
 				} else {
-					return set1.equals(set2);
+					subtrahendSet.add(variant);
 				}
-			} else if (set2.contains("or")) {
-				return set2Elements.equals(set1Elements);
 			}
 		}
-		return false;
+		minuendSets.put(elementarySet, minuendSet);
+		subtrahendSets.put(elementarySet, subtrahendSet);
+	}
+
+	/**
+	 * Whether the code of an elementary set is part of a variant
+	 *
+	 * @param variant
+	 * @param elementarySet
+	 * @return true if the variant contains the elementary set
+	 */
+	private static boolean contains(long variant, String elementarySet) {
+		if (elementarySet.startsWith(NOT)) {
+			return (variant & getMask(elementarySet.substring(NOT.length()))) == 0;
+		}
+		long mask = getMask(elementarySet);
+		if (elementarySet.contains(AND)) {
+			return (variant & mask) == mask;
+		}
+		if (mask == 0) {
+			// the empty set is only part of the variant without features
+			return variant == 0;
+		}
+		return (variant & mask) != 0;
 	}
 }
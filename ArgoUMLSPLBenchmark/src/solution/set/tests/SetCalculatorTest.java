@@ -0,0 +1,99 @@
+package solution.set.tests;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import solution.set.SetCalculator;
+
+/**
+ * Tests for the elementary sets of a feature model with three features and all
+ * its variants. The variant masks are 1 for feature 1, 2 for feature 2 and 4
+ * for feature 3.
+ *
+ * @author Richard Mller
+ *
+ */
+public class SetCalculatorTest {
+
+	private final SetCalculator calculator = new SetCalculator(3,
+			Arrays.asList(0L, 1L, 2L, 3L, 4L, 5L, 6L, 7L), true);
+
+	@Test
+	public void elementarySetsOfCompleteFeature() {
+		Assert.assertEquals(Arrays.asList("1", "1_or_2", "1_or_3"), calculator.getElementarySetsOfFeature("1"));
+		Assert.assertEquals(Arrays.asList("2", "1_or_2", "2_or_3"), calculator.getElementarySetsOfFeature("2"));
+	}
+
+	@Test
+	public void elementarySetsOfAndFeature() {
+		Assert.assertEquals(Arrays.asList("1_and_3", "1_or_2_and_3", "1_and_2_or_3"),
+				calculator.getElementarySetsOfFeature("1_and_3"));
+		// (1 or 2) and 3 belongs to 1_and_3 and to 2_and_3
+		Assert.assertEquals(Arrays.asList("2_and_3", "1_or_2_and_3", "2_and_1_or_3"),
+				calculator.getElementarySetsOfFeature("2_and_3"));
+		// 2 and (1 or 3) has the same name from 1_and_2
+		Assert.assertEquals(Arrays.asList("1_and_2", "2_and_1_or_3", "1_and_2_or_3"),
+				calculator.getElementarySetsOfFeature("1_and_2"));
+	}
+
+	@Test
+	public void elementarySetsOfAndFeatureOfArgoUML() {
+		// by default only 1_or_2_and_8 as in the ArgoUML SPL
+		SetCalculator argoUMLCalculator = new SetCalculator(8, Arrays.asList(0L, 1L, 2L, 3L, 128L, 129L, 130L));
+		Assert.assertEquals(Arrays.asList("1_and_8", "1_or_2_and_8"),
+				argoUMLCalculator.getElementarySetsOfFeature("1_and_8"));
+		Assert.assertEquals(Arrays.asList("2_and_8", "1_or_2_and_8"),
+				argoUMLCalculator.getElementarySetsOfFeature("2_and_8"));
+		Assert.assertEquals(Arrays.asList("3_and_8"), argoUMLCalculator.getElementarySetsOfFeature("3_and_8"));
+		Assert.assertEquals(Arrays.asList(129L, 130L), argoUMLCalculator.getMinuendsOfElementarySet("1_or_2_and_8"));
+		Assert.assertEquals(Arrays.asList(1L, 2L, 3L, 128L),
+				argoUMLCalculator.getSubtrahendsOfElementarySet("1_or_2_and_8"));
+	}
+
+	@Test
+	public void elementarySetsOfNotFeature() {
+		Assert.assertEquals(Arrays.asList("not_2"), calculator.getElementarySetsOfFeature("not_2"));
+	}
+
+	@Test
+	public void completeFeature() {
+		Assert.assertEquals(Arrays.asList(1L, 3L, 5L, 7L), calculator.getMinuendsOfElementarySet("1"));
+		Assert.assertEquals(Arrays.asList(0L, 2L, 4L, 6L), calculator.getSubtrahendsOfElementarySet("1"));
+	}
+
+	@Test
+	public void orSet() {
+		Assert.assertEquals(Arrays.asList(1L, 2L, 3L, 5L, 6L, 7L), calculator.getMinuendsOfElementarySet("1_or_2"));
+		Assert.assertEquals(Arrays.asList(0L, 4L), calculator.getSubtrahendsOfElementarySet("1_or_2"));
+	}
+
+	@Test
+	public void andSet() {
+		Assert.assertEquals(Arrays.asList(6L, 7L), calculator.getMinuendsOfElementarySet("2_and_3"));
+		Assert.assertEquals(Arrays.asList(0L, 1L, 2L, 3L, 4L, 5L),
+				calculator.getSubtrahendsOfElementarySet("2_and_3"));
+	}
+
+	@Test
+	public void notSet() {
+		Assert.assertEquals(Arrays.asList(0L, 1L, 4L, 5L), calculator.getMinuendsOfElementarySet("not_2"));
+		Assert.assertEquals(Arrays.asList(2L, 3L, 6L, 7L), calculator.getSubtrahendsOfElementarySet("not_2"));
+	}
+
+	@Test
+	public void orAndSet() {
+		// only the variants with one feature of each group are minuends and
+		// only the variants with the features of the set are subtrahends
+		Assert.assertEquals(Arrays.asList(5L, 6L), calculator.getMinuendsOfElementarySet("1_or_2_and_3"));
+		Assert.assertEquals(Arrays.asList(1L, 2L, 3L, 4L), calculator.getSubtrahendsOfElementarySet("1_or_2_and_3"));
+	}
+
+	@Test
+	public void mask() {
+		Assert.assertEquals(0L, SetCalculator.getMask(""));
+		Assert.assertEquals(5L, SetCalculator.getMask("1_and_3"));
+		Assert.assertEquals(7L, SetCalculator.getMask("1_or_2_and_3"));
+	}
+}
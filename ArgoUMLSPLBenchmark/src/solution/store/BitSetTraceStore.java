@@ -0,0 +1,130 @@
+package solution.store;
+
+import java.io.File;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import solution.neo4j.GraphDatabaseHandler;
+
+/**
+ * Trace store that keeps the trace graph in memory. It is loaded once from the
+ * trace graph: each trace node gets an int id per label and the traces of each
+ * configuration are stored as a bitset. An elementary set is the AND of the
+ * minuend bitsets, AND NOT the OR of the subtrahend bitsets.
+ * 
+ * @author Richard Mueller
+ *
+ */
+public class BitSetTraceStore implements TraceStore {
+	private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+	private static final List<String> LABELS = new ArrayList<String>();
+	static {
+		LABELS.add("Class");
+		LABELS.add("ClassRefinement");
+		LABELS.add("Method");
+		LABELS.add("MethodRefinement");
+	}
+	private Map<String, TraceSet> traceSets = new HashMap<String, TraceSet>();
+
+	public BitSetTraceStore(File dbFolder) {
+		long start = System.currentTimeMillis();
+		for (String label : LABELS) {
+			traceSets.put(label, new TraceSet());
+		}
+		GraphDatabaseHandler scenarioHandler = new GraphDatabaseHandler(dbFolder);
+		try {
+			scenarioHandler.executeQuery("MATCH (config:Configuration)-[:HAS]->(trace:Trace) "
+					+ "RETURN config.name AS config, ID(trace) AS id, trace.name AS name, labels(trace) AS labels")
+					.forEachRemaining(result -> {
+						for (Object label : (List<?>) result.get("labels")) {
+							TraceSet traceSet = traceSets.get(label);
+							if (traceSet != null) {
+								traceSet.add((String) result.get("config"), (Long) result.get("id"),
+										(String) result.get("name"));
+							}
+						}
+					});
+		} finally {
+			scenarioHandler.shutdown();
+		}
+		LOGGER.info("Loaded trace graph in " + (System.currentTimeMillis() - start) + "ms");
+	}
+
+	@Override
+	public void close() {
+		traceSets.clear();
+	}
+
+	@Override
+	public List<String> applySetOperations(List<String> minuendConfigs, List<String> subtrahendConfigs, String label) {
+		TraceSet traceSet = traceSets.get(label);
+		if (traceSet == null || minuendConfigs.isEmpty()) {
+			return new ArrayList<String>();
+		}
+		// union of subtrahends
+		BitSet subtrahendTraces = new BitSet();
+		for (String subtrahendConfig : subtrahendConfigs) {
+			subtrahendTraces.or(traceSet.getTraces(subtrahendConfig));
+		}
+		// intersection of minuends
+		BitSet traces = null;
+		for (String minuendConfig : minuendConfigs) {
+			if (traces == null) {
+				traces = (BitSet) traceSet.getTraces(minuendConfig).clone();
+				traces.andNot(subtrahendTraces);
+			} else {
+				traces.and(traceSet.getTraces(minuendConfig));
+			}
+			if (traces.isEmpty()) {
+				return new ArrayList<String>();
+			}
+		}
+		// transform id into trace, several traces can have the same name
+		Set<String> names = new LinkedHashSet<String>();
+		for (int id = traces.nextSetBit(0); id >= 0; id = traces.nextSetBit(id + 1)) {
+			names.add(traceSet.getName(id));
+		}
+		return new ArrayList<String>(names);
+	}
+
+	/**
+	 * Traces with one label. The node ids of the trace graph are mapped to
+	 * consecutive ids so the bitsets stay small.
+	 */
+	private static class TraceSet {
+		private Map<Long, Integer> nodeIds = new HashMap<Long, Integer>();
+		private List<String> names = new ArrayList<String>();
+		private Map<String, BitSet> configurationTraces = new HashMap<String, BitSet>();
+
+		private void add(String configuration, long nodeId, String name) {
+			Integer id = nodeIds.get(nodeId);
+			if (id == null) {
+				id = names.size();
+				nodeIds.put(nodeId, id);
+				names.add(name);
+			}
+			configurationTraces.computeIfAbsent(configuration, key -> new BitSet()).set(id);
+		}
+
+		private BitSet getTraces(String configuration) {
+			BitSet traces = configurationTraces.get(configuration);
+			if (traces == null) {
+				return new BitSet();
+			}
+			return traces;
+		}
+
+		private String getName(int id) {
+			return names.get(id);
+		}
+	}
+}
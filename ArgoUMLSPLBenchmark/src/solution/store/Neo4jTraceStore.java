@@ -0,0 +1,45 @@
+package solution.store;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import solution.neo4j.GraphDatabaseHandler;
+
+/**
+ * Trace store that computes each elementary set on the trace graph with one
+ * call to the elementary set procedure (see ElementarySetProcedure).
+ * 
+ * @author Richard Mueller
+ *
+ */
+public class Neo4jTraceStore implements TraceStore {
+	private GraphDatabaseHandler scenarioHandler = null;
+
+	public Neo4jTraceStore(File dbFolder) {
+		this.scenarioHandler = new GraphDatabaseHandler(dbFolder);
+	}
+
+	@Override
+	public void close() {
+		scenarioHandler.shutdown();
+	}
+
+	@Override
+	public List<String> applySetOperations(List<String> minuendConfigs, List<String> subtrahendConfigs, String label) {
+		Map<String, Object> params = new HashMap<String, Object>();
+		params.put("minuendConfigs", minuendConfigs);
+		params.put("subtrahendConfigs", subtrahendConfigs);
+		params.put("label", label);
+		// one parameterized query, the sets are computed by the procedure
+		List<String> traces = new ArrayList<String>();
+		scenarioHandler.executeQuery(
+				"CALL solution.elementarySet({minuendConfigs}, {subtrahendConfigs}, {label}) YIELD name RETURN name",
+				params).forEachRemaining(result -> {
+					traces.add((String) result.get("name"));
+				});
+		return traces;
+	}
+}
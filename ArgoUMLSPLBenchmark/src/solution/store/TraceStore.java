@@ -0,0 +1,62 @@
+package solution.store;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Traces of the configurations of a scenario. It computes the traces of an
+ * elementary set, i.e., the traces that are in all the minuend configurations
+ * and in none of the subtrahend configurations.
+ * 
+ * @author Richard Mueller
+ *
+ */
+public interface TraceStore {
+
+	/**
+	 * Available trace store backends.
+	 */
+	public enum Type {
+		/**
+		 * Cypher queries on the trace graph.
+		 */
+		NEO4J,
+		/**
+		 * Bitwise operations on one bitset per configuration, loaded once from the
+		 * trace graph.
+		 */
+		BITSET
+	}
+
+	/**
+	 * Open a trace store on a trace graph.
+	 * 
+	 * @param type
+	 * @param dbFolder folder of the trace graph
+	 * @return trace store
+	 */
+	public static TraceStore open(Type type, File dbFolder) {
+		switch (type) {
+		case BITSET:
+			return new BitSetTraceStore(dbFolder);
+		default:
+			return new Neo4jTraceStore(dbFolder);
+		}
+	}
+
+	/**
+	 * Get the names of the traces with a label that are in all minuend
+	 * configurations and in no subtrahend configuration.
+	 * 
+	 * @param minuendConfigs
+	 * @param subtrahendConfigs
+	 * @param label             trace label, e.g., Class or MethodRefinement
+	 * @return distinct trace names
+	 */
+	public List<String> applySetOperations(List<String> minuendConfigs, List<String> subtrahendConfigs, String label);
+
+	/**
+	 * Release the resources of the trace store.
+	 */
+	public void close();
+}
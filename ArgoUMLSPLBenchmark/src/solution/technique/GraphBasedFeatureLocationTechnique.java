@@ -19,10 +19,13 @@ import java.util.stream.Stream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import solution.neo4j.GraphDatabaseHandler;
 import solution.neo4j.GraphDatabaseInserter;
+import solution.neo4j.GraphDatabaseUpdater;
 import solution.parser.JavaSourceCodeParser;
+import solution.store.TraceStore;
 import utils.FeatureUtils;
+import utils.TraceTrie;
+import utils.VirtualVariant;
 
 /**
  * Creates software graphs for variants of a scenario, a trace graph, queries
@@ -36,45 +39,125 @@ public class GraphBasedFeatureLocationTechnique {
 	private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 	private Map<String, List<String>> featureTraceMap = new LinkedHashMap<String, List<String>>();
 	private FeatureUtils utils = null;
-	private GraphDatabaseHandler scenarioHandler = null;
+	private TraceStore traceStore = null;
+	private TraceStore.Type traceStoreType = null;
 	private List<String> featuresToLocate = null;
 	private String scenarioPath = null;
 	private static final String JQASSISTANT_DATABASE_FOLDER = "/jqassistant/store";
+	private static final String VARIANT_MANIFEST_FILE = "variants.manifest";
 	private Path graphDbFolder = null;
+	private int parserThreads;
 
 	public GraphBasedFeatureLocationTechnique(String scenarioPath, List<String> featuresToLocate)
 			throws RuntimeException, IOException, InterruptedException {
-		// check if variants folder exists
+		this(scenarioPath, featuresToLocate, TraceStore.Type.NEO4J);
+	}
+
+	public GraphBasedFeatureLocationTechnique(String scenarioPath, List<String> featuresToLocate,
+			TraceStore.Type traceStoreType) throws RuntimeException, IOException, InterruptedException {
+		this(scenarioPath, featuresToLocate, traceStoreType, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Technique for a scenario
+	 * 
+	 * @param scenarioPath
+	 * @param featuresToLocate
+	 * @param traceStoreType   backend to compute the elementary sets
+	 * @param parserThreads    threads to parse the variants, e.g., fewer than
+	 *                         the processors if other scenarios run at the
+	 *                         same time
+	 */
+	public GraphBasedFeatureLocationTechnique(String scenarioPath, List<String> featuresToLocate,
+			TraceStore.Type traceStoreType, int parserThreads)
+			throws RuntimeException, IOException, InterruptedException {
+		// check if variants folder exists or virtual variants are enabled
 		File variantsFolder = new File(scenarioPath, "variants");
-		if (!variantsFolder.exists()) {
+		if (!variantsFolder.exists() && !VirtualVariant.isEnabled()) {
 			throw new IOException("The variants folder does not exist yet at " + scenarioPath
 					+ "\nYou should build the scenario before. Use the Ant scripts in the scenario folder.");
 		}
 		this.utils = new FeatureUtils(scenarioPath);
 		this.featuresToLocate = featuresToLocate;
 		this.scenarioPath = scenarioPath;
+		this.traceStoreType = traceStoreType;
+		this.parserThreads = parserThreads;
 		this.graphDbFolder = Paths.get(new File(scenarioPath).getAbsolutePath() + JQASSISTANT_DATABASE_FOLDER);
 	}
 
+	/**
+	 * Create the trace graph of the scenario. If the trace graph exists, it is
+	 * updated with the variants that changed since the last scan according to
+	 * the variant manifest. A trace graph without manifest, or with more than
+	 * half of the variants to scan, is created again.
+	 */
 	public void createTraceGraph() throws RuntimeException, IOException, InterruptedException {
-		if (Files.notExists(graphDbFolder)) {
+		File manifestFile = graphDbFolder.resolveSibling(VARIANT_MANIFEST_FILE).toFile();
+		VariantManifest scannedManifest = Files.exists(graphDbFolder) ? VariantManifest.read(manifestFile) : null;
+		// only the files that changed since the scan are hashed again
+		VariantManifest manifest = VariantManifest.compute(scenarioPath, utils.getConfigurationIds(),
+				scannedManifest);
+		// the batch inserter is faster than updating most of the variants
+		if (scannedManifest == null || manifest.getAdded(scannedManifest).size()
+				+ manifest.getChanged(scannedManifest).size() > utils.getConfigurationIds().size() / 2) {
 			LOGGER.info("Create trace graph for scenario " + scenarioPath);
+			// the manifest is written after the scan, so an interrupted scan
+			// is done again
+			manifestFile.delete();
+			// one batch inserter session for the whole scan
 			GraphDatabaseInserter databaseInserter = new GraphDatabaseInserter(graphDbFolder.toFile());
-			// create a node for each variant
-			databaseInserter.createConfigurations(utils.getConfigurationIds());
-			// scan variants
-			JavaSourceCodeParser scanner = new JavaSourceCodeParser(databaseInserter, scenarioPath,
-					utils.getConfigurationIds());
-			scanner.scanScenarioVariants();
-			databaseInserter.shutdown();
-		} else { // source code of scenario was scanned
+			try {
+				// create a node for each variant
+				databaseInserter.createConfigurations(utils.getConfigurationIds());
+				// scan variants
+				JavaSourceCodeParser scanner = new JavaSourceCodeParser(databaseInserter, scenarioPath,
+						utils.getConfigurationIds(), parserThreads);
+				scanner.scanScenarioVariants();
+			} finally {
+				databaseInserter.shutdown();
+			}
+			manifest.write(manifestFile);
+		} else if (manifest.equals(scannedManifest)) { // source code of scenario was scanned
 			LOGGER.info("Scenario " + scenarioPath + " has already been scanned.");
+		} else {
+			updateTraceGraph(manifest, scannedManifest, manifestFile);
+		}
+	}
+
+	/**
+	 * Update the trace graph with the variants that were added, removed or
+	 * changed.
+	 */
+	private void updateTraceGraph(VariantManifest manifest, VariantManifest scannedManifest, File manifestFile)
+			throws RuntimeException, IOException, InterruptedException {
+		List<String> added = manifest.getAdded(scannedManifest);
+		List<String> removed = manifest.getRemoved(scannedManifest);
+		List<String> changed = manifest.getChanged(scannedManifest);
+		LOGGER.info("Update trace graph for scenario " + scenarioPath + ": " + added.size() + " added, "
+				+ removed.size() + " removed and " + changed.size() + " changed variants");
+		manifestFile.delete();
+		List<String> toRemove = new ArrayList<String>(removed);
+		toRemove.addAll(changed);
+		List<String> toScan = new ArrayList<String>(added);
+		toScan.addAll(changed);
+		GraphDatabaseUpdater databaseUpdater = new GraphDatabaseUpdater(graphDbFolder.toFile());
+		try {
+			databaseUpdater.removeConfigurations(toRemove);
+			databaseUpdater.createConfigurations(toScan);
+			JavaSourceCodeParser scanner = new JavaSourceCodeParser(databaseUpdater, scenarioPath, toScan,
+					parserThreads);
+			scanner.scanScenarioVariants();
+			long orphans = databaseUpdater.removeOrphanTraces();
+			LOGGER.info("Removed " + orphans + " orphaned traces");
+		} finally {
+			databaseUpdater.shutdown();
 		}
+		manifest.write(manifestFile);
 	}
 
 	public void computeTraces() {
 		LOGGER.info("Compute feature traces for " + featuresToLocate);
-		scenarioHandler = new GraphDatabaseHandler(graphDbFolder.toFile());
+		traceStore = TraceStore.open(traceStoreType, graphDbFolder.toFile());
 		Map<String, List<String>> elementarySetTraceMap = new HashMap<String, List<String>>();
 		for (String feature : featuresToLocate) {
 			List<String> elementarySets = utils.getElementarySetsOfFeature(feature);
@@ -95,28 +178,30 @@ public class GraphBasedFeatureLocationTechnique {
 					subtrahends.removeIf(Objects::isNull);
 
 					if (!minuends.isEmpty() && !subtrahends.isEmpty()) {
-						List<String> classAndMethodTraces = new ArrayList<String>();
-						
-						elementaryClassTraces.addAll(applySetOperations(minuends, subtrahends, "Class"));
+						TraceTrie classAndMethodTraces = new TraceTrie();
+
+						elementaryClassTraces.addAll(traceStore.applySetOperations(minuends, subtrahends, "Class"));
 						classAndMethodTraces.addAll(elementaryClassTraces);
-						elementaryClassTraces
-								.removeIf(trace -> classAndMethodTraces.stream().anyMatch(t -> trace.startsWith(t)
-										&& trace.length() > t.length() && (trace.charAt(t.length()) == '.')));
+						// inner classes of a located class
+						elementaryClassTraces.removeIf(trace -> classAndMethodTraces.containsAncestor(trace));
 
 						elementaryClassRefinementTraces
-								.addAll(applySetOperations(minuends, subtrahends, "ClassRefinement"));
+								.addAll(traceStore.applySetOperations(minuends, subtrahends, "ClassRefinement"));
+						// refinements of a located class
 						elementaryClassRefinementTraces
-								.removeIf(trace -> classAndMethodTraces.contains(trace.replace(" Refinement", "")));
+								.removeIf(trace -> classAndMethodTraces.containsAncestor(trace, 1));
 
-						elementaryMethodTraces.addAll(applySetOperations(minuends, subtrahends, "Method"));
+						elementaryMethodTraces.addAll(traceStore.applySetOperations(minuends, subtrahends, "Method"));
 						classAndMethodTraces.addAll(elementaryMethodTraces);
-						elementaryMethodTraces.removeIf(trace -> classAndMethodTraces.contains(trace.split(" ")[0]));
+						// methods of a located class
+						elementaryMethodTraces.removeIf(trace -> classAndMethodTraces.containsAncestor(trace, 1));
 
 						elementaryMethodRefinementTraces
-								.addAll(applySetOperations(minuends, subtrahends, "MethodRefinement"));
+								.addAll(traceStore.applySetOperations(minuends, subtrahends, "MethodRefinement"));
+						// refinements of a located method or of a method of a
+						// located class
 						elementaryMethodRefinementTraces
-								.removeIf(trace -> classAndMethodTraces.contains(trace.split(" ")[0])
-										|| classAndMethodTraces.contains(trace.replace(" Refinement", "")));
+								.removeIf(trace -> classAndMethodTraces.containsAncestor(trace, 2));
 
 						elementarySetTraces = Stream
 								.of(elementaryClassTraces, elementaryClassRefinementTraces, elementaryMethodTraces,
@@ -130,7 +215,7 @@ public class GraphBasedFeatureLocationTechnique {
 			setFeatureTraces(feature, featureTraces);
 			LOGGER.info("Found " + getFeatureTraces(feature).size() + " traces for " + feature);
 		}
-		scenarioHandler.shutdown();
+		traceStore.close();
 	}
 
 	public List<String> getFeatureTraces(String feature) {
@@ -147,55 +232,11 @@ public class GraphBasedFeatureLocationTechnique {
 			featureTraces = new ArrayList<String>();
 			featureTraceMap.put(feature, featureTraces);
 		}
+		TraceTrie addedTraces = new TraceTrie(featureTraces);
 		for (String trace : traces) {
-			if (!featureTraces.contains(trace)) {
+			if (addedTraces.add(trace)) {
 				featureTraces.add(trace);
 			}
 		}
 	}
-
-	private List<String> applySetOperations(List<String> minuendConfigs, List<String> subtrahendConfigs, String label) {
-		Map<String, Object> params = new HashMap<String, Object>();
-		params.put("subtrahendConfigs", subtrahendConfigs);
-
-		// union of subtrahends
-		scenarioHandler
-				.executeQuery("MATCH (config:Configuration)-[:HAS]->(trace:" + label + ") "
-						+ "WHERE config.name IN {subtrahendConfigs} "
-						+ "RETURN collect(DISTINCT ID(trace)) AS subtrahendTraceIds", params)
-				.forEachRemaining(result -> {
-					params.put("subtrahendTraceIds", (List<String>) result.get("subtrahendTraceIds"));
-				});
-
-		// intersection of minuends
-		for (String minuendConfig : minuendConfigs) {
-			if (params.get("traceIds") == null) {
-				scenarioHandler.executeQuery("MATCH (config:Configuration{name:'" + minuendConfig
-						+ "'})-[:HAS]->(trace:" + label + ") " + "WHERE NOT ID(trace) IN {subtrahendTraceIds} "
-						+ "RETURN collect(DISTINCT ID(trace)) AS traceIds", params).forEachRemaining(result -> {
-							params.put("traceIds", (List<String>) result.get("traceIds"));
-						});
-			} else if (!((List<String>) params.get("traceIds")).isEmpty()) {
-				scenarioHandler
-						.executeQuery(
-								"MATCH (config:Configuration{name:'" + minuendConfig + "'})-[:HAS]->(trace:" + label
-										+ ") " + "WHERE NOT ID(trace) IN {subtrahendTraceIds} "
-										+ "WITH collect(DISTINCT ID(trace)) AS minuendTraceIds "
-										+ "RETURN apoc.coll.intersection({traceIds}, minuendTraceIds) AS traceIds",
-								params)
-						.forEachRemaining(result -> {
-							params.put("traceIds", (List<String>) result.get("traceIds"));
-						});
-			} else {
-				return new ArrayList<String>();
-			}
-		}
-		// transform id into trace
-		List<String> traces = new ArrayList<String>();
-		scenarioHandler.executeQuery("MATCH (trace:Trace) " + "WHERE ID(trace) IN {traceIds} "
-				+ "RETURN collect(DISTINCT trace.name) AS traces", params).forEachRemaining(result -> {
-					traces.addAll((List<String>) result.get("traces"));
-				});
-		return traces;
-	}
 }
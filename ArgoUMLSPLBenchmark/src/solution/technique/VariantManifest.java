@@ -0,0 +1,255 @@
+package solution.technique;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import solution.parser.JarTypeSolverCache;
+import utils.FileUtils;
+
+/**
+ * Manifest of the variants scanned into a trace graph. For each configuration
+ * it keeps a hash of the config file, of the paths and contents of the Java
+ * files of the variant and of the jar files of its lib folder (they change the
+ * solved signatures), so a trace graph can be updated with only the variants
+ * that were added, removed or changed since the scan.
+ *
+ * The manifest also keeps the size, last modified time and content hash of each
+ * Java file of the variants. When the manifest is computed again, only the
+ * files whose size or last modified time changed are read and hashed, as the
+ * jar files in JarTypeSolverCache. The files of virtual variants are not on
+ * disk, so they are always hashed.
+ *
+ * The manifest file has one line per configuration with the configuration and
+ * its hash, and one line per Java file with the configuration, the path in the
+ * src folder, the size, the last modified time and the content hash, separated
+ * by tabs.
+ *
+ * @author Richard Mueller
+ *
+ */
+public class VariantManifest {
+	private static final String SEPARATOR = "\t";
+	private Map<String, String> variantHashes;
+	// configuration to path of the Java file to size, last modified time and
+	// content hash
+	private Map<String, Map<String, String[]>> fileFingerprints;
+
+	private VariantManifest(Map<String, String> variantHashes, Map<String, Map<String, String[]>> fileFingerprints) {
+		this.variantHashes = variantHashes;
+		this.fileFingerprints = fileFingerprints;
+	}
+
+	/**
+	 * Compute the manifest of the variants of a scenario.
+	 *
+	 * @param scenarioPath
+	 * @param configurations
+	 * @return manifest
+	 * @throws IOException
+	 */
+	public static VariantManifest compute(String scenarioPath, List<String> configurations) throws IOException {
+		return compute(scenarioPath, configurations, null);
+	}
+
+	/**
+	 * Compute the manifest of the variants of a scenario. The content hashes of
+	 * the Java files of a previous manifest are reused if their size and last
+	 * modified time did not change.
+	 *
+	 * @param scenarioPath
+	 * @param configurations
+	 * @param previous       previous manifest or null to hash all the files
+	 * @return manifest
+	 * @throws IOException
+	 */
+	public static VariantManifest compute(String scenarioPath, List<String> configurations,
+			VariantManifest previous) throws IOException {
+		Map<String, String> variantHashes = new ConcurrentHashMap<String, String>();
+		Map<String, Map<String, String[]>> fileFingerprints = new ConcurrentHashMap<String, Map<String, String[]>>();
+		try {
+			// the variants are hashed in parallel
+			configurations.parallelStream().forEach(configuration -> {
+				try {
+					Map<String, String[]> previousFingerprints = previous == null ? null
+							: previous.fileFingerprints.get(configuration);
+					Map<String, String[]> fingerprints = new TreeMap<String, String[]>();
+					variantHashes.put(configuration,
+							getVariantHash(scenarioPath, configuration, previousFingerprints, fingerprints));
+					fileFingerprints.put(configuration, fingerprints);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		return new VariantManifest(new TreeMap<String, String>(variantHashes),
+				new TreeMap<String, Map<String, String[]>>(fileFingerprints));
+	}
+
+	/**
+	 * Read a manifest file.
+	 *
+	 * @param manifestFile
+	 * @return manifest or null if the file does not exist
+	 */
+	public static VariantManifest read(File manifestFile) {
+		if (!manifestFile.exists()) {
+			return null;
+		}
+		Map<String, String> variantHashes = new TreeMap<String, String>();
+		Map<String, Map<String, String[]>> fileFingerprints = new TreeMap<String, Map<String, String[]>>();
+		for (String line : FileUtils.getLinesOfFile(manifestFile)) {
+			String[] fields = line.split(SEPARATOR);
+			if (fields.length == 2) {
+				variantHashes.put(fields[0], fields[1]);
+			} else if (fields.length == 5) {
+				fileFingerprints.computeIfAbsent(fields[0], configuration -> new TreeMap<String, String[]>())
+						.put(fields[1], Arrays.copyOfRange(fields, 2, 5));
+			}
+		}
+		return new VariantManifest(variantHashes, fileFingerprints);
+	}
+
+	/**
+	 * Write the manifest file.
+	 *
+	 * @param manifestFile
+	 * @throws IOException
+	 */
+	public void write(File manifestFile) throws IOException {
+		StringBuilder content = new StringBuilder();
+		for (String configuration : variantHashes.keySet()) {
+			content.append(configuration + SEPARATOR + variantHashes.get(configuration) + "\n");
+			Map<String, String[]> fingerprints = fileFingerprints.get(configuration);
+			if (fingerprints != null) {
+				for (String path : fingerprints.keySet()) {
+					content.append(configuration + SEPARATOR + path + SEPARATOR
+							+ String.join(SEPARATOR, fingerprints.get(path)) + "\n");
+				}
+			}
+		}
+		try {
+			FileUtils.writeFile(manifestFile, content.toString());
+		} catch (Exception e) {
+			throw new IOException("Error writing " + manifestFile, e);
+		}
+	}
+
+	/**
+	 * Get the configurations that are in this manifest but not in the other.
+	 *
+	 * @param other
+	 * @return configurations
+	 */
+	public List<String> getAdded(VariantManifest other) {
+		List<String> added = new ArrayList<String>();
+		for (String configuration : variantHashes.keySet()) {
+			if (!other.variantHashes.containsKey(configuration)) {
+				added.add(configuration);
+			}
+		}
+		return added;
+	}
+
+	/**
+	 * Get the configurations that are in the other manifest but not in this.
+	 *
+	 * @param other
+	 * @return configurations
+	 */
+	public List<String> getRemoved(VariantManifest other) {
+		return other.getAdded(this);
+	}
+
+	/**
+	 * Get the configurations that are in both manifests with different hashes.
+	 *
+	 * @param other
+	 * @return configurations
+	 */
+	public List<String> getChanged(VariantManifest other) {
+		List<String> changed = new ArrayList<String>();
+		for (String configuration : variantHashes.keySet()) {
+			String otherHash = other.variantHashes.get(configuration);
+			if (otherHash != null && !otherHash.equals(variantHashes.get(configuration))) {
+				changed.add(configuration);
+			}
+		}
+		return changed;
+	}
+
+	private static String getVariantHash(String scenarioPath, String configuration,
+			Map<String, String[]> previousFingerprints, Map<String, String[]> fingerprints) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		// the configuration is the name of the config file
+		File configFile = new File(new File(scenarioPath, "configs"), configuration);
+		digest.update(FileUtils.readAllBytes(configFile));
+		File variantFolder = new File(new File(scenarioPath, "variants"), configuration);
+		File variantSourceDirectory = new File(variantFolder, "src");
+		Path sourcePath = variantSourceDirectory.toPath().toAbsolutePath();
+		List<String> files = new ArrayList<String>();
+		for (File javaFile : FileUtils.getAllJavaFiles(variantSourceDirectory)) {
+			String path = sourcePath.relativize(javaFile.toPath().toAbsolutePath()).toString();
+			files.add(path + SEPARATOR + getFileHash(javaFile, path, previousFingerprints, fingerprints));
+		}
+		// the order of the files in the folder does not matter
+		Collections.sort(files);
+		for (String file : files) {
+			digest.update((file + "\n").getBytes(StandardCharsets.UTF_8));
+		}
+		// the jar files are identified as in the type solver of the variant
+		String libHash = JarTypeSolverCache.getInstance().getLibHash(new File(variantFolder, "lib"));
+		if (libHash != null) {
+			digest.update(("lib" + SEPARATOR + libHash + "\n").getBytes(StandardCharsets.UTF_8));
+		}
+		StringBuilder hash = new StringBuilder();
+		for (byte b : digest.digest()) {
+			hash.append(String.format("%02x", b));
+		}
+		return hash.toString();
+	}
+
+	private static String getFileHash(File javaFile, String path, Map<String, String[]> previousFingerprints,
+			Map<String, String[]> fingerprints) throws IOException {
+		// the files of a virtual variant are not on disk
+		if (!javaFile.isFile()) {
+			return FileUtils.getContentHash(javaFile);
+		}
+		String size = String.valueOf(javaFile.length());
+		String lastModified = String.valueOf(javaFile.lastModified());
+		String[] fingerprint = previousFingerprints == null ? null : previousFingerprints.get(path);
+		if (fingerprint == null || !fingerprint[0].equals(size) || !fingerprint[1].equals(lastModified)) {
+			fingerprint = new String[] { size, lastModified, FileUtils.getContentHash(javaFile) };
+		}
+		fingerprints.put(path, fingerprint);
+		return fingerprint[2];
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof VariantManifest && variantHashes.equals(((VariantManifest) obj).variantHashes);
+	}
+
+	@Override
+	public int hashCode() {
+		return variantHashes.hashCode();
+	}
+}
@@ -0,0 +1,37 @@
+package techniqueBenchmark;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A feature location technique that can be run by the TechniqueBenchmark. The
+ * technique locates the features of one scenario and returns the traces
+ * instead of writing them, so the benchmark can measure and score any
+ * technique in the same way.
+ * 
+ * @author jabier.martinez
+ */
+public interface FeatureLocationTechnique {
+
+	/**
+	 * Name of the technique, used in the leaderboard and as results folder
+	 * 
+	 * @return the name
+	 */
+	String getName();
+
+	/**
+	 * Locate the features of a scenario. Call phases.start at the beginning of
+	 * each phase (for example "Scan" and "Computation") to measure them
+	 * separately.
+	 * 
+	 * @param scenarioPath
+	 *            for example scenarios/ScenarioTraditionalVariants
+	 * @param phases
+	 *            recorder of the phases
+	 * @return map of features to traces
+	 * @throws Exception
+	 *             if the technique failed
+	 */
+	Map<String, List<String>> locate(String scenarioPath, PhaseRecorder phases) throws Exception;
+}
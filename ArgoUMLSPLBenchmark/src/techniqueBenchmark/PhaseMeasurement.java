@@ -0,0 +1,63 @@
+package techniqueBenchmark;
+
+/**
+ * Cost of one phase of a technique
+ * 
+ * @author jabier.martinez
+ */
+public class PhaseMeasurement {
+
+	private final String name;
+	private final long wallTime;
+	private final long cpuTime;
+	private final long allocatedBytes;
+	private final long peakHeap;
+
+	public PhaseMeasurement(String name, long wallTime, long cpuTime, long allocatedBytes, long peakHeap) {
+		this.name = name;
+		this.wallTime = wallTime;
+		this.cpuTime = cpuTime;
+		this.allocatedBytes = allocatedBytes;
+		this.peakHeap = peakHeap;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Elapsed time
+	 * 
+	 * @return milliseconds
+	 */
+	public long getWallTime() {
+		return wallTime;
+	}
+
+	/**
+	 * CPU time of all the threads
+	 * 
+	 * @return milliseconds or -1 if the JVM does not measure it
+	 */
+	public long getCpuTime() {
+		return cpuTime;
+	}
+
+	/**
+	 * Bytes allocated by all the threads
+	 * 
+	 * @return bytes or -1 if the JVM does not measure it
+	 */
+	public long getAllocatedBytes() {
+		return allocatedBytes;
+	}
+
+	/**
+	 * Maximum used heap
+	 * 
+	 * @return bytes
+	 */
+	public long getPeakHeap() {
+		return peakHeap;
+	}
+}
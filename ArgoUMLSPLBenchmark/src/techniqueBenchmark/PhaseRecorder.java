@@ -0,0 +1,172 @@
+package techniqueBenchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures the phases of a technique: wall time, CPU time, allocated bytes and
+ * peak heap. The techniques use several threads (e.g., the scan of the
+ * variants), so a sampler thread reads the CPU time and allocated bytes of all
+ * the threads with the ThreadMXBean every few milliseconds. The work of a
+ * thread that ends between two samples is not counted after the last sample.
+ * 
+ * The peak heap is not sampled, the JVM tracks the peak usage of each heap
+ * memory pool: the peaks are reset at the start of the phase and summed at its
+ * end. The pools can peak at different times, so the sum can be above the real
+ * peak of the heap, but the short spikes between samples are not missed.
+ * 
+ * The CPU time, allocated bytes and peak heap are process-wide: they include
+ * every thread of the JVM, not only the threads of the technique. They only
+ * belong to the phase if nothing else runs at the same time, so the recorded
+ * techniques must run one after the other (as in TechniqueBenchmark). When
+ * several scenarios run concurrently only the wall time of a phase is
+ * meaningful.
+ * 
+ * @author jabier.martinez
+ */
+public class PhaseRecorder {
+
+	private static final long SAMPLE_INTERVAL = 20;
+	private static final int CPU_TIME = 0;
+	private static final int ALLOCATED_BYTES = 1;
+
+	private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+	private final List<MemoryPoolMXBean> heapPools = new ArrayList<MemoryPoolMXBean>();
+	private final boolean cpuTimeSupported;
+	private final boolean allocatedBytesSupported;
+	private final List<PhaseMeasurement> measurements = new ArrayList<PhaseMeasurement>();
+
+	private String phase = null;
+	private long start;
+	// thread id to counters at the start of the phase and at the last sample
+	private Map<Long, long[]> startCounters = new HashMap<Long, long[]>();
+	private Map<Long, long[]> lastCounters = new HashMap<Long, long[]>();
+	private Thread sampler = null;
+
+	public PhaseRecorder() {
+		cpuTimeSupported = threadMXBean.isThreadCpuTimeSupported();
+		if (cpuTimeSupported) {
+			threadMXBean.setThreadCpuTimeEnabled(true);
+		}
+		allocatedBytesSupported = threadMXBean instanceof com.sun.management.ThreadMXBean
+				&& ((com.sun.management.ThreadMXBean) threadMXBean).isThreadAllocatedMemorySupported();
+		if (allocatedBytesSupported) {
+			((com.sun.management.ThreadMXBean) threadMXBean).setThreadAllocatedMemoryEnabled(true);
+		}
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+				heapPools.add(pool);
+			}
+		}
+	}
+
+	/**
+	 * Start a phase. The current phase, if any, is stopped.
+	 * 
+	 * @param name
+	 *            name of the phase
+	 */
+	public synchronized void start(String name) {
+		stop();
+		phase = name;
+		for (MemoryPoolMXBean pool : heapPools) {
+			pool.resetPeakUsage();
+		}
+		sample();
+		startCounters = new HashMap<Long, long[]>();
+		for (Long id : lastCounters.keySet()) {
+			startCounters.put(id, lastCounters.get(id).clone());
+		}
+		start = System.nanoTime();
+		sampler = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				while (!Thread.currentThread().isInterrupted()) {
+					synchronized (PhaseRecorder.this) {
+						if (sampler != Thread.currentThread()) {
+							// the phase was stopped
+							return;
+						}
+						sample();
+					}
+					try {
+						Thread.sleep(SAMPLE_INTERVAL);
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+			}
+		}, "PhaseRecorder");
+		sampler.setDaemon(true);
+		sampler.start();
+	}
+
+	/**
+	 * Stop the current phase, if any, and keep its measurement
+	 */
+	public synchronized void stop() {
+		if (phase == null) {
+			return;
+		}
+		long wallTime = (System.nanoTime() - start) / 1000000;
+		sampler.interrupt();
+		sample();
+		long cpuTime = 0;
+		long allocatedBytes = 0;
+		for (Long id : lastCounters.keySet()) {
+			long[] counters = lastCounters.get(id);
+			long[] startValues = startCounters.get(id);
+			cpuTime += counters[CPU_TIME] - (startValues == null ? 0 : startValues[CPU_TIME]);
+			allocatedBytes += counters[ALLOCATED_BYTES] - (startValues == null ? 0 : startValues[ALLOCATED_BYTES]);
+		}
+		long peakHeap = 0;
+		for (MemoryPoolMXBean pool : heapPools) {
+			peakHeap += pool.getPeakUsage().getUsed();
+		}
+		measurements.add(new PhaseMeasurement(phase, wallTime, cpuTimeSupported ? cpuTime / 1000000 : -1,
+				allocatedBytesSupported ? allocatedBytes : -1, peakHeap));
+		phase = null;
+		sampler = null;
+	}
+
+	/**
+	 * Measurements of the stopped phases
+	 * 
+	 * @return the measurements in the order of the phases
+	 */
+	public synchronized List<PhaseMeasurement> getMeasurements() {
+		return new ArrayList<PhaseMeasurement>(measurements);
+	}
+
+	private void sample() {
+		long[] ids = threadMXBean.getAllThreadIds();
+		long[] allocated = null;
+		if (allocatedBytesSupported) {
+			allocated = ((com.sun.management.ThreadMXBean) threadMXBean).getThreadAllocatedBytes(ids);
+		}
+		for (int i = 0; i < ids.length; i++) {
+			if (sampler != null && ids[i] == sampler.getId()) {
+				continue;
+			}
+			long[] counters = lastCounters.get(ids[i]);
+			if (counters == null) {
+				counters = new long[2];
+				lastCounters.put(ids[i], counters);
+			}
+			// -1 if the thread ended
+			long cpuTime = cpuTimeSupported ? threadMXBean.getThreadCpuTime(ids[i]) : -1;
+			if (cpuTime >= 0) {
+				counters[CPU_TIME] = cpuTime;
+			}
+			if (allocated != null && allocated[i] >= 0) {
+				counters[ALLOCATED_BYTES] = allocated[i];
+			}
+		}
+	}
+}
@@ -0,0 +1,169 @@
+package techniqueBenchmark;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import metricsCalculation.GroundTruth;
+import metricsCalculation.MetricsCalculation;
+import metricsCalculation.MetricsResults;
+import solution.GraphBasedFeatureLocationMain;
+import techniqueExample.ExampleFeatureLocationTechnique;
+import utils.FileUtils;
+import utils.TraceFile;
+import utils.TraceSink;
+
+/**
+ * Runs several feature location techniques on several scenarios, measures the
+ * cost of each phase of each technique (see PhaseRecorder) and scores the
+ * results with the ground-truth. The results of each technique and scenario
+ * are written in benchmarkResults/technique/scenario and the leaderboard with
+ * the costs and the metrics in benchmarkResults/leaderboard.csv
+ * 
+ * If a technique fails in a scenario, its row has the phase FAILED, the costs
+ * until the failure and no metrics.
+ * 
+ * The scenarios can be passed as arguments, for example
+ * scenarios/ScenarioOriginalVariant. By default the traditional scenario is
+ * used.
+ * 
+ * @author jabier.martinez
+ */
+public class TechniqueBenchmark {
+
+	private static final String DEFAULT_SCENARIO_PATH = "scenarios/ScenarioTraditionalVariants";
+	private static final File BENCHMARK_RESULTS = new File("benchmarkResults");
+	private static final String LEADERBOARD_HEADER = "Technique,Scenario,Phase,WallTimeMs,CpuTimeMs,AllocatedMB,PeakHeapMB,"
+			+ "Precision,Recall,FScore";
+	private static final String TOTAL = "Total";
+	private static final String FAILED = "FAILED";
+
+	public static void main(String[] args) {
+		List<String> scenarioPaths = args.length > 0 ? Arrays.asList(args) : Arrays.asList(DEFAULT_SCENARIO_PATH);
+		List<FeatureLocationTechnique> techniques = new ArrayList<FeatureLocationTechnique>();
+		techniques.add(new ExampleFeatureLocationTechnique());
+		techniques.add(new GraphBasedFeatureLocationMain());
+
+		GroundTruth groundTruth = GroundTruth.load(new File("groundTruth"));
+		StringBuilder leaderboard = new StringBuilder(LEADERBOARD_HEADER + "\n");
+		// one technique and scenario at a time, the CPU time and allocations
+		// of the phases are process-wide
+		for (FeatureLocationTechnique technique : techniques) {
+			for (String scenarioPath : scenarioPaths) {
+				String scenarioName = new File(scenarioPath).getName();
+				System.out.println("Benchmarking " + technique.getName() + " in " + scenarioName);
+				PhaseRecorder phases = new PhaseRecorder();
+				Map<String, List<String>> traces;
+				try {
+					traces = technique.locate(scenarioPath, phases);
+				} catch (Exception e) {
+					e.printStackTrace();
+					phases.stop();
+					appendRow(leaderboard, technique.getName(), scenarioName,
+							getTotal(FAILED, phases.getMeasurements()), ",,");
+					continue;
+				} finally {
+					phases.stop();
+				}
+				File resultsFolder = new File(new File(BENCHMARK_RESULTS, technique.getName()), scenarioName);
+				writeResults(resultsFolder, traces);
+				MetricsResults metrics = MetricsCalculation.calculate(groundTruth, resultsFolder);
+				appendRows(leaderboard, technique.getName(), scenarioName, phases.getMeasurements(), metrics);
+			}
+		}
+
+		try {
+			// it does not exist yet if all the techniques failed
+			BENCHMARK_RESULTS.mkdirs();
+			FileUtils.writeFile(new File(BENCHMARK_RESULTS, "leaderboard.csv"), leaderboard.toString());
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+		System.out.println("Finished, check " + new File(BENCHMARK_RESULTS, "leaderboard.csv").getAbsolutePath());
+	}
+
+	/**
+	 * Write the traces of each feature in a txt file and the trace file. The
+	 * txt files of a previous run are removed.
+	 * 
+	 * @param resultsFolder
+	 * @param traces
+	 *            map of features to traces
+	 */
+	private static void writeResults(File resultsFolder, Map<String, List<String>> traces) {
+		resultsFolder.mkdirs();
+		for (File f : resultsFolder.listFiles()) {
+			if (GroundTruth.isFeatureFile(f) || f.getName().equals(TraceFile.FILE_NAME)) {
+				f.delete();
+			}
+		}
+		try {
+			try (TraceSink sink = new TraceSink(resultsFolder)) {
+				for (String feature : traces.keySet()) {
+					if (!traces.get(feature).isEmpty()) {
+						sink.write(feature, traces.get(feature));
+					}
+				}
+			}
+			// after the txt files so it is up to date
+			if (!traces.isEmpty()) {
+				TraceFile.write(new File(resultsFolder, TraceFile.FILE_NAME), traces);
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Append one row for each phase and a total row with the sum of the times
+	 * and allocations and the maximum peak heap. The metrics are the averages
+	 * of the scenario and they are repeated in each row.
+	 */
+	private static void appendRows(StringBuilder leaderboard, String technique, String scenario,
+			List<PhaseMeasurement> measurements, MetricsResults metrics) {
+		String metricsColumns = MetricsResults.getValueOrZero(metrics.getPrecisionAverage()) + ","
+				+ MetricsResults.getValueOrZero(metrics.getRecallAverage()) + ","
+				+ MetricsResults.getValueOrZero(metrics.getF1Average());
+		for (PhaseMeasurement measurement : measurements) {
+			appendRow(leaderboard, technique, scenario, measurement, metricsColumns);
+		}
+		appendRow(leaderboard, technique, scenario, getTotal(TOTAL, measurements), metricsColumns);
+	}
+
+	/**
+	 * Sum of the times and allocations and the maximum peak heap of the phases
+	 */
+	private static PhaseMeasurement getTotal(String name, List<PhaseMeasurement> measurements) {
+		long wallTime = 0;
+		long cpuTime = 0;
+		long allocatedBytes = 0;
+		long peakHeap = 0;
+		for (PhaseMeasurement measurement : measurements) {
+			wallTime += measurement.getWallTime();
+			cpuTime = cpuTime == -1 || measurement.getCpuTime() == -1 ? -1 : cpuTime + measurement.getCpuTime();
+			allocatedBytes = allocatedBytes == -1 || measurement.getAllocatedBytes() == -1 ? -1
+					: allocatedBytes + measurement.getAllocatedBytes();
+			peakHeap = Math.max(peakHeap, measurement.getPeakHeap());
+		}
+		return new PhaseMeasurement(name, wallTime, cpuTime, allocatedBytes, peakHeap);
+	}
+
+	private static void appendRow(StringBuilder leaderboard, String technique, String scenario,
+			PhaseMeasurement measurement, String metricsColumns) {
+		leaderboard.append(technique + "," + scenario + "," + measurement.getName() + ",");
+		leaderboard.append(measurement.getWallTime() + ",");
+		leaderboard.append(measurement.getCpuTime() + ",");
+		leaderboard.append(toMegabytes(measurement.getAllocatedBytes()) + ",");
+		leaderboard.append(toMegabytes(measurement.getPeakHeap()) + ",");
+		leaderboard.append(metricsColumns + "\n");
+	}
+
+	private static String toMegabytes(long bytes) {
+		if (bytes == -1) {
+			return "-1";
+		}
+		return String.valueOf(bytes / (1024 * 1024));
+	}
+}
@@ -1,17 +1,21 @@
 package techniqueExample;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
-import org.eclipse.jdt.core.dom.AST;
-import org.eclipse.jdt.core.dom.ASTParser;
-import org.eclipse.jdt.core.dom.CompilationUnit;
-import org.eclipse.jdt.core.dom.TypeDeclaration;
-
+import techniqueBenchmark.FeatureLocationTechnique;
+import techniqueBenchmark.PhaseRecorder;
 import utils.FeatureUtils;
 import utils.FileUtils;
-import utils.TraceIdUtils;
+import utils.ParsedVariantCache;
+import utils.ParsedVariantCache.TypeSummary;
+import utils.TraceFile;
+import utils.TraceSink;
+import utils.VirtualVariant;
 
 /**
  * A simplistic example of a feature location technique to illustrate how they
@@ -23,25 +27,54 @@ import utils.TraceIdUtils;
  * 
  * @author jabier.martinez
  */
-public class ExampleFeatureLocationTechnique {
+public class ExampleFeatureLocationTechnique implements FeatureLocationTechnique {
 
 	// Modify with the selected scenario. Traditional scenario by default.
 	private static final String SELECTED_SCENARIO_PATH = "scenarios/ScenarioTraditionalVariants";
 
 	public static void main(String[] args) {
 
-		// Check
+		// Check, without the variants folder the variants are virtual if they
+		// are enabled
 		File variantsFolder = new File(SELECTED_SCENARIO_PATH, "variants");
-		if (!variantsFolder.exists()) {
+		if (!variantsFolder.exists() && !VirtualVariant.isEnabled()) {
 			System.err.println("The variants folder does not exist yet at " + SELECTED_SCENARIO_PATH
 					+ "\nYou should build the scenario before. Use the Ant scripts in the scenario folder.");
 			return;
 		}
 
-		long start = System.currentTimeMillis();
+		PhaseRecorder phases = new PhaseRecorder();
+		Map<String, List<String>> results = new ExampleFeatureLocationTechnique().locate(SELECTED_SCENARIO_PATH,
+				phases);
+		phases.stop();
+		createTracesFiles(results);
+		if (!results.isEmpty()) {
+			createTraceFile(results);
+		}
+
+		System.out.println("Finished, check yourResults folder. Time spent (ms): "
+				+ phases.getMeasurements().get(0).getWallTime());
+	}
+
+	@Override
+	public String getName() {
+		return "Example";
+	}
+
+	/**
+	 * Locate the features of a scenario
+	 * 
+	 * @param scenarioPath
+	 * @param phases
+	 *            recorder of the phases, there is only one phase
+	 * @return map of features to traces, only the features with traces
+	 */
+	@Override
+	public Map<String, List<String>> locate(String scenarioPath, PhaseRecorder phases) {
+		phases.start("Location");
 
 		// Utils for information about features and configurations
-		FeatureUtils utils = new FeatureUtils(SELECTED_SCENARIO_PATH);
+		FeatureUtils utils = new FeatureUtils(scenarioPath);
 
 		// Scenario in the console
 		System.out.println("Trying to locate: " + utils.getFeatureIds());
@@ -50,7 +83,11 @@ public class ExampleFeatureLocationTechnique {
 			System.out.println(config + ": " + utils.getFeaturesOfConfiguration(config));
 		}
 
+		// Cache of the parsed files of the variants
+		ParsedVariantCache parsedFiles = new ParsedVariantCache();
+
 		// Locate each feature
+		Map<String, List<String>> results = new LinkedHashMap<String, List<String>>();
 		for (String featureId : utils.getFeatureIds()) {
 			// Get just the first feature name
 			String featureName = utils.getFeatureNames(featureId).get(0);
@@ -69,27 +106,15 @@ public class ExampleFeatureLocationTechnique {
 				File variantFolder = utils.getVariantFolderOfConfig(configurationId);
 				List<File> javaFiles = FileUtils.getAllJavaFiles(variantFolder);
 
-				// Prepare the parser
+				// The files are parsed once for all the features
 				for (File javaFile : javaFiles) {
-					ASTParser parser = ASTParser.newParser(AST.JLS8);
-					String source = FileUtils.getStringOfFile(javaFile);
-					parser.setSource(source.toCharArray());
-					parser.setKind(ASTParser.K_COMPILATION_UNIT);
-					parser.setBindingsRecovery(true);
-
-					// Get the AST
-					CompilationUnit cu = (CompilationUnit) parser.createAST(null);
-					for (Object type : cu.types()) {
-						if (type instanceof TypeDeclaration) {
-							TypeDeclaration typeDeclaration = (TypeDeclaration) type;
-							String typeName = typeDeclaration.getName().toString();
-							// Check if the class contains the feature name
-							if (typeName.contains(featureName)) {
-								// trace found
-								String traceId = TraceIdUtils.getId(typeDeclaration);
-								if (!currentVariantTraces.contains(traceId)) {
-									currentVariantTraces.add(traceId);
-								}
+					for (TypeSummary type : parsedFiles.getTypes(javaFile)) {
+						// Check if the class contains the feature name
+						if (type.getName().contains(featureName)) {
+							// trace found
+							String traceId = type.getTraceId();
+							if (!currentVariantTraces.contains(traceId)) {
+								currentVariantTraces.add(traceId);
 							}
 						}
 					}
@@ -112,34 +137,45 @@ public class ExampleFeatureLocationTechnique {
 				}
 			}
 			System.out.println(traces.size() + " traces found");
-			createTracesFile(featureId, traces);
+			if (!traces.isEmpty()) {
+				results.put(featureId, traces);
+			}
 		}
-
-		long end = System.currentTimeMillis();
-		System.out.println("Finished, check yourResults folder. Time spent (ms): " + (end - start));
+		System.out.println("Parsed files: " + parsedFiles.getMisses() + ", reused: " + parsedFiles.getHits());
+		return results;
 	}
 
 	/**
-	 * Create a txt file with the traces in each line.
+	 * Create a txt file for each feature with the traces in each line.
 	 * 
-	 * @param featureId
-	 * @param traces
+	 * @param results
+	 *            map of features to traces
 	 */
-	private static void createTracesFile(String featureId, List<String> traces) {
-		// If traces were found, write the results in the file
-		if (!traces.isEmpty()) {
-			File resultsFolder = new File("yourResults");
-			File ffile = new File(resultsFolder, featureId + ".txt");
-			if (ffile.exists()) {
-				ffile.delete();
-			}
-			for (String trace : traces) {
-				try {
-					FileUtils.appendToFile(ffile, trace);
-				} catch (Exception e) {
-					e.printStackTrace();
+	private static void createTracesFiles(Map<String, List<String>> results) {
+		try (TraceSink sink = new TraceSink(new File("yourResults"))) {
+			for (String featureId : results.keySet()) {
+				// If traces were found, write the results in the file
+				if (!results.get(featureId).isEmpty()) {
+					sink.write(featureId, results.get(featureId));
 				}
 			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Create the binary trace file with the traces of the txt files (see
+	 * TraceFile). It is created after the txt files so it is up to date.
+	 * 
+	 * @param results
+	 *            map of features to traces
+	 */
+	private static void createTraceFile(Map<String, List<String>> results) {
+		try {
+			TraceFile.write(new File("yourResults", TraceFile.FILE_NAME), results);
+		} catch (Exception e) {
+			e.printStackTrace();
 		}
 	}
 
@@ -1,6 +1,7 @@
 package utils;
 
 import java.io.File;
+import java.lang.invoke.MethodHandles;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -8,6 +9,9 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import solution.set.SetCalculator;
 
 /**
@@ -17,6 +21,8 @@ import solution.set.SetCalculator;
  */
 public class FeatureUtils {
 
+	private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
 	// Features information
 	List<String> featureIds = new ArrayList<String>();
 	Map<String, List<String>> mapIdNames = new LinkedHashMap<String, List<String>>();
@@ -29,13 +35,17 @@ public class FeatureUtils {
 	Map<String, List<String>> mapFeatureConfigs = new LinkedHashMap<String, List<String>>();
 	Map<String, File> mapConfigVariantFolder = new LinkedHashMap<String, File>();
 	Map<String, String> mapFeatureIds = new LinkedHashMap<String, String>();
-	Map<String, String> mapConfigIds = new LinkedHashMap<String, String>();
+	Map<Long, String> mapConfigMasks = new LinkedHashMap<Long, String>();
 	SetCalculator setUtils = null;
 
 	/**
-	 *
+	 * 
 	 * We get all the info in the constructor**
 	 * 
+	 * If the variants of the scenario were not built, virtual variants are
+	 * used when they are enabled (see VirtualVariant.isEnabled) and the ArgoUML
+	 * SPL projects are next to the benchmark project.
+	 * 
 	 * @param scenarioFolderPath
 	 */
 	public FeatureUtils(String scenarioFolderPath) {
@@ -69,19 +79,25 @@ public class FeatureUtils {
 		}
 
 		File variantsFolder = new File(scenarioFolder, "variants");
-		if (!variantsFolder.exists() || variantsFolder.listFiles().length == 0) {
+		boolean virtualVariants = VirtualVariant.isEnabled();
+		if (!virtualVariants && (!variantsFolder.exists() || variantsFolder.listFiles().length == 0)) {
 			System.err.println(variantsFolder.getAbsolutePath()
 					+ " does not exist. You should build the scenario before. Use the Ant scripts in the scenario folder.");
 			return;
 		}
 
 		// Go through all the configs
+		int virtualVariantsCount = 0;
 		for (File config : configsFolder.listFiles()) {
 			// check that it is a config file
 			if (config.getName().endsWith(".config")) {
 				configIds.add(config.getName());
 				File variant = new File(variantsFolder, config.getName());
-				if (!variant.exists()) {
+				if (!variant.exists() && virtualVariants) {
+					// projected from the ArgoUML SPL when it is read
+					VirtualVariant.create(VirtualVariant.DEFAULT_SPL_FOLDER, config, variant);
+					virtualVariantsCount++;
+				} else if (!variant.exists()) {
 					System.err.println(variant.getAbsolutePath()
 							+ " does not exist. You should build the scenario before. Use the Ant scripts in the scenario folder.");
 					return;
@@ -100,6 +116,11 @@ public class FeatureUtils {
 				}
 			}
 		}
+		if (virtualVariantsCount > 0) {
+			LOGGER.warn(virtualVariantsCount + " of " + configIds.size() + " variants of " + scenarioFolder.getName()
+					+ " are not built, they are projected from the ArgoUML SPL in "
+					+ VirtualVariant.DEFAULT_SPL_FOLDER.getAbsoluteFile().toPath().normalize());
+		}
 
 		// create feature id mapping
 		int i = 1;
@@ -108,26 +129,21 @@ public class FeatureUtils {
 			i++;
 		}
 
-		// create config id mapping
+		// create config mask mapping
 		for (String config : configIds) {
-			List<String> features = getFeaturesOfConfiguration(config);
-			List<String> featuresIds = new ArrayList<String>();
-			for (String feature : features) {
-				featuresIds.add(getIdOfFeature(feature));
-			}
-			StringBuilder configId = new StringBuilder();
-			Collections.sort(featuresIds);
-			for (String feature : featuresIds) {
-				configId.append(feature + "_or_");
-			}
-			if (configId.length() != 0) {
-				configId.setLength(configId.length() - 4);
+			long configMask = 0;
+			for (String feature : getFeaturesOfConfiguration(config)) {
+				String featureId = getIdOfFeature(feature);
+				if (!featureId.isEmpty()) {
+					configMask |= SetCalculator.getMask(featureId);
+				}
 			}
-			mapConfigIds.put(configId.toString(), config);
+			mapConfigMasks.put(configMask, config);
 		}
 
 		// solve scenario
-		setUtils = new SetCalculator(getFeatureIds().size());
+		setUtils = new SetCalculator(getFeatureIds().size(), mapConfigMasks.keySet(),
+				Boolean.getBoolean(SetCalculator.ALL_OR_AND_SETS_PROPERTY));
 	}
 
 	/**
@@ -189,7 +205,8 @@ public class FeatureUtils {
 	}
 
 	/**
-	 * Get variant folder of a given configuration
+	 * Get variant folder of a given configuration. The folder does not exist
+	 * for virtual variants but it can be used with the methods of FileUtils.
 	 * 
 	 * @param configurationId
 	 * @return the folder of this variant
@@ -219,19 +236,19 @@ public class FeatureUtils {
 	}
 
 	public List<String> getMinuendsOfElementarySet(String elementarySet) {
-		List<String> configIds = setUtils.getMinuendsOfElementarySet(elementarySet);
+		List<Long> configMasks = setUtils.getMinuendsOfElementarySet(elementarySet);
 		List<String> minuends = new ArrayList<String>();
-		for (String configId : configIds) {
-			minuends.add(getIdOfConfiguration(configId));
+		for (long configMask : configMasks) {
+			minuends.add(getIdOfConfiguration(configMask));
 		}
 		return minuends;
 	}
 
 	public List<String> getSubtrahendsOfElementarySet(String elementarySet) {
-		List<String> configIds = setUtils.getSubtrahendsOfElementarySet(elementarySet);
+		List<Long> configMasks = setUtils.getSubtrahendsOfElementarySet(elementarySet);
 		List<String> subtrahends = new ArrayList<String>();
-		for (String configId : configIds) {
-			subtrahends.add(getIdOfConfiguration(configId));
+		for (long configMask : configMasks) {
+			subtrahends.add(getIdOfConfiguration(configMask));
 		}
 		return subtrahends;
 	}
@@ -272,7 +289,7 @@ public class FeatureUtils {
 		}
 	}
 
-	private String getIdOfConfiguration(String configurationId) {
-		return mapConfigIds.get(configurationId);
+	private String getIdOfConfiguration(long configurationMask) {
+		return mapConfigMasks.get(configurationMask);
 	}
 }
@@ -2,19 +2,29 @@ package utils;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
-import java.io.DataInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
 
 /**
  * General utils
  * 
+ * The files and folders of a virtual variant (see VirtualVariant) can be used
+ * in the methods reading files as long as they do not exist on disk.
+ * 
  * @author jabier.martinez
  */
 public class FileUtils {
@@ -26,19 +36,47 @@ public class FileUtils {
 	 */
 	public static List<String> getLinesOfFile(File file) {
 		List<String> lines = new ArrayList<String>();
-		try {
-			FileInputStream fstream = new FileInputStream(file);
-			DataInputStream in = new DataInputStream(fstream);
-			BufferedReader br = new BufferedReader(new InputStreamReader(in));
-			String strLine;
-			while ((strLine = br.readLine()) != null) {
-				lines.add(strLine);
+		forEachLine(file, lines::add);
+		return lines;
+	}
+
+	/**
+	 * Read the lines of a file one by one without keeping them in memory
+	 * 
+	 * @param file
+	 * @param action
+	 *            called with each line
+	 */
+	public static void forEachLine(File file, Consumer<String> action) {
+		try (BufferedReader reader = openReader(file)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				action.accept(line);
 			}
-			in.close();
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
-		return lines;
+	}
+
+	/**
+	 * Open a reader of a file on disk or in a virtual variant. Files ending with
+	 * .gz (see TraceSink) are decompressed.
+	 * 
+	 * @param file
+	 * @return the reader
+	 * @throws IOException
+	 */
+	public static BufferedReader openReader(File file) throws IOException {
+		InputStream in = openInputStream(file);
+		if (file.getName().endsWith(TraceSink.GZIP_EXTENSION)) {
+			try {
+				in = new GZIPInputStream(in);
+			} catch (IOException e) {
+				in.close();
+				throw e;
+			}
+		}
+		return new BufferedReader(new InputStreamReader(in));
 	}
 
 	/**
@@ -83,6 +121,18 @@ public class FileUtils {
 			files = new ArrayList<File>();
 		}
 
+		if (!dir.exists()) {
+			VirtualVariant variant = VirtualVariant.get(dir);
+			if (variant != null) {
+				for (File file : variant.getAllFiles(dir)) {
+					if (file.getName().endsWith(".java") && !(ignoreStaggingFolder && isInStagingFolder(dir, file))) {
+						files.add(file);
+					}
+				}
+				return files;
+			}
+		}
+
 		if (!dir.isDirectory()) {
 			if (dir.getName().endsWith(".java")) {
 				files.add(dir);
@@ -102,6 +152,66 @@ public class FileUtils {
 		return files;
 	}
 
+	private static boolean isInStagingFolder(File dir, File file) {
+		// the files of a virtual variant are absolute and dir can be relative
+		Path root = dir.toPath().toAbsolutePath().normalize();
+		for (Path parent = file.toPath().toAbsolutePath().normalize().getParent(); parent != null
+				&& !parent.equals(root); parent = parent.getParent()) {
+			if (parent.getFileName() != null && parent.getFileName().toString().equals("staging")) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Whether a file or folder exists on disk or in a virtual variant
+	 * 
+	 * @param file
+	 * @return true if it exists
+	 */
+	public static boolean exists(File file) {
+		if (file.exists()) {
+			return true;
+		}
+		VirtualVariant variant = VirtualVariant.get(file);
+		return variant != null && variant.exists(file);
+	}
+
+	/**
+	 * Read the content of a file on disk or in a virtual variant
+	 * 
+	 * @param file
+	 * @return the content
+	 * @throws IOException
+	 */
+	public static byte[] readAllBytes(File file) throws IOException {
+		if (!file.exists()) {
+			VirtualVariant variant = VirtualVariant.get(file);
+			if (variant != null) {
+				return variant.readAllBytes(file);
+			}
+		}
+		return Files.readAllBytes(file.toPath());
+	}
+
+	/**
+	 * Open a file on disk or in a virtual variant
+	 * 
+	 * @param file
+	 * @return the input stream
+	 * @throws IOException
+	 */
+	public static InputStream openInputStream(File file) throws IOException {
+		if (!file.exists()) {
+			VirtualVariant variant = VirtualVariant.get(file);
+			if (variant != null) {
+				return new ByteArrayInputStream(variant.readAllBytes(file));
+			}
+		}
+		return new FileInputStream(file);
+	}
+
 	/**
 	 * Append line to file
 	 * 
@@ -131,6 +241,46 @@ public class FileUtils {
 		output.close();
 	}
 
+	/**
+	 * Get the SHA-1 hash of the content of a file
+	 * 
+	 * @param file
+	 * @return hexadecimal representation of the hash
+	 * @throws IOException
+	 */
+	public static String getContentHash(File file) throws IOException {
+		try (InputStream in = openInputStream(file)) {
+			return getContentHash(in);
+		}
+	}
+
+	/**
+	 * Get the SHA-1 hash of the content of a stream. The stream is not closed.
+	 * 
+	 * @param in
+	 * @return hexadecimal representation of the hash
+	 * @throws IOException
+	 */
+	public static String getContentHash(InputStream in) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			// SHA-1 is available in every Java platform
+			throw new IllegalStateException(e);
+		}
+		byte[] buffer = new byte[8192];
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			digest.update(buffer, 0, read);
+		}
+		StringBuilder hash = new StringBuilder();
+		for (byte b : digest.digest()) {
+			hash.append(String.format("%02x", b));
+		}
+		return hash.toString();
+	}
+
 	/**
 	 * Copy file content (not directory) inside another file. It will replace
 	 * the content if it already exists.
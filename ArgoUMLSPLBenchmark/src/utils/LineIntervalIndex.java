@@ -0,0 +1,339 @@
+package utils;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Line-level ground truth. For each Java file it keeps the #if defined blocks
+ * with their start and end offsets and lines and the features of the block (the
+ * same feature names of the txt files of the ground-truth, nested blocks are
+ * features with _and_ and #else blocks are features with not_).
+ * 
+ * A block owns the lines between its opening and its closing jpp comments,
+ * except the lines of the blocks nested inside it, as in the LoC_info of the
+ * extraction. The blocks of each file are flattened into sorted segments
+ * without overlaps, so the features that own a line are found with a binary
+ * search.
+ * 
+ * The index file has one line per block: the path of the file from its package
+ * root, the start offset, end offset, start line and end line, and the features
+ * separated by commas. The fields are separated by tabs.
+ * 
+ * @author jabier.martinez
+ */
+public class LineIntervalIndex {
+
+	public static final String FILE_NAME = "lines.index";
+
+	private static final String SEPARATOR = "\t";
+	private static final String FEATURE_SEPARATOR = ",";
+
+	// path to the segments of the file, in the order of the paths
+	private final Map<String, Segments> files = new TreeMap<String, Segments>();
+	// feature to the number of lines that it owns
+	private final Map<String, Integer> lineCounts = new TreeMap<String, Integer>();
+
+	/**
+	 * Block of a file from a #if defined, #elif defined or #else jpp comment to
+	 * the next #elif defined, #else or #endif jpp comment
+	 */
+	public static class Block {
+		private final String path;
+		private final int startOffset;
+		private final int endOffset;
+		private final int startLine;
+		private final int endLine;
+		private final List<String> features;
+
+		/**
+		 * Block of a file
+		 * 
+		 * @param path
+		 *            of the file from its package root, for example
+		 *            org/argouml/kernel/Project.java
+		 * @param startOffset
+		 *            of the opening jpp comment
+		 * @param endOffset
+		 *            of the end of the closing jpp comment
+		 * @param startLine
+		 *            of the opening jpp comment, the first line is 1
+		 * @param endLine
+		 *            of the closing jpp comment
+		 * @param features
+		 */
+		public Block(String path, int startOffset, int endOffset, int startLine, int endLine, List<String> features) {
+			this.path = path;
+			this.startOffset = startOffset;
+			this.endOffset = endOffset;
+			this.startLine = startLine;
+			this.endLine = endLine;
+			this.features = Collections.unmodifiableList(new ArrayList<String>(features));
+		}
+
+		public String getPath() {
+			return path;
+		}
+
+		public int getStartOffset() {
+			return startOffset;
+		}
+
+		public int getEndOffset() {
+			return endOffset;
+		}
+
+		public int getStartLine() {
+			return startLine;
+		}
+
+		public int getEndLine() {
+			return endLine;
+		}
+
+		public List<String> getFeatures() {
+			return features;
+		}
+
+		/**
+		 * Line of the index file
+		 */
+		@Override
+		public String toString() {
+			return path + SEPARATOR + startOffset + SEPARATOR + endOffset + SEPARATOR + startLine + SEPARATOR
+					+ endLine + SEPARATOR + String.join(FEATURE_SEPARATOR, features);
+		}
+
+		/**
+		 * Parse a line of the index file
+		 * 
+		 * @param line
+		 * @return the block or null if the line is not a block
+		 */
+		public static Block parse(String line) {
+			// keep the last field even if the block does not have features
+			String[] fields = line.split(SEPARATOR, -1);
+			if (fields.length != 6) {
+				return null;
+			}
+			List<String> features = fields[5].isEmpty() ? Collections.<String>emptyList()
+					: Arrays.asList(fields[5].split(FEATURE_SEPARATOR));
+			return new Block(fields[0], Integer.parseInt(fields[1]), Integer.parseInt(fields[2]),
+					Integer.parseInt(fields[3]), Integer.parseInt(fields[4]), features);
+		}
+	}
+
+	/**
+	 * Sorted segments of lines of a file without overlaps
+	 */
+	private static class Segments {
+		final List<Block> blocks;
+		final int[] starts;
+		final int[] ends;
+		final List<List<String>> owners;
+
+		Segments(List<Block> blocks, int[] starts, int[] ends, List<List<String>> owners) {
+			this.blocks = blocks;
+			this.starts = starts;
+			this.ends = ends;
+			this.owners = owners;
+		}
+	}
+
+	/**
+	 * Create the index of the blocks of several files
+	 * 
+	 * @param blocks
+	 *            in any order
+	 */
+	public LineIntervalIndex(Collection<Block> blocks) {
+		Map<String, List<Block>> blocksByPath = new LinkedHashMap<String, List<Block>>();
+		for (Block block : blocks) {
+			List<Block> fileBlocks = blocksByPath.get(block.getPath());
+			if (fileBlocks == null) {
+				fileBlocks = new ArrayList<Block>();
+				blocksByPath.put(block.getPath(), fileBlocks);
+			}
+			fileBlocks.add(block);
+		}
+		for (String path : blocksByPath.keySet()) {
+			Segments segments = flatten(blocksByPath.get(path));
+			files.put(path, segments);
+			for (int i = 0; i < segments.starts.length; i++) {
+				for (String feature : segments.owners.get(i)) {
+					Integer count = lineCounts.get(feature);
+					lineCounts.put(feature, (count == null ? 0 : count) + segments.ends[i] - segments.starts[i] + 1);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Flatten the blocks of a file. The jpp blocks are nested or consecutive, so
+	 * the blocks are assigned from the outermost to the innermost and each line
+	 * keeps the innermost block that contains it.
+	 */
+	private static Segments flatten(List<Block> fileBlocks) {
+		List<Block> blocks = new ArrayList<Block>(fileBlocks);
+		blocks.sort((a, b) -> Integer.compare(a.getStartOffset(), b.getStartOffset()));
+		int lastLine = 0;
+		for (Block block : blocks) {
+			lastLine = Math.max(lastLine, block.getEndLine());
+		}
+		// block index of each line, -1 if not owned
+		int[] lineOwners = new int[lastLine + 1];
+		Arrays.fill(lineOwners, -1);
+		List<Integer> order = new ArrayList<Integer>();
+		for (int i = 0; i < blocks.size(); i++) {
+			order.add(i);
+		}
+		// the outer blocks have more lines than the blocks nested inside them
+		order.sort((a, b) -> Integer.compare(blocks.get(b).getEndLine() - blocks.get(b).getStartLine(),
+				blocks.get(a).getEndLine() - blocks.get(a).getStartLine()));
+		for (int i : order) {
+			Block block = blocks.get(i);
+			// the lines of the jpp comments are not owned by any block
+			lineOwners[block.getStartLine()] = -1;
+			lineOwners[block.getEndLine()] = -1;
+			for (int line = block.getStartLine() + 1; line < block.getEndLine(); line++) {
+				lineOwners[line] = i;
+			}
+		}
+		// consecutive lines of the same block are one segment
+		List<int[]> ranges = new ArrayList<int[]>();
+		List<List<String>> owners = new ArrayList<List<String>>();
+		for (int line = 1; line <= lastLine; line++) {
+			int owner = lineOwners[line];
+			if (owner == -1) {
+				continue;
+			}
+			int[] last = ranges.isEmpty() ? null : ranges.get(ranges.size() - 1);
+			if (last != null && last[1] == line - 1 && lineOwners[last[1]] == owner) {
+				last[1] = line;
+			} else {
+				ranges.add(new int[] { line, line });
+				owners.add(blocks.get(owner).getFeatures());
+			}
+		}
+		int[] starts = new int[ranges.size()];
+		int[] ends = new int[ranges.size()];
+		for (int i = 0; i < ranges.size(); i++) {
+			starts[i] = ranges.get(i)[0];
+			ends[i] = ranges.get(i)[1];
+		}
+		return new Segments(Collections.unmodifiableList(blocks), starts, ends, owners);
+	}
+
+	/**
+	 * Load an index file
+	 * 
+	 * @param indexFile
+	 * @return the index or null if the file does not exist
+	 */
+	public static LineIntervalIndex load(File indexFile) {
+		if (!indexFile.exists()) {
+			return null;
+		}
+		List<Block> blocks = new ArrayList<Block>();
+		for (String line : FileUtils.getLinesOfFile(indexFile)) {
+			Block block = Block.parse(line);
+			if (block != null) {
+				blocks.add(block);
+			}
+		}
+		return new LineIntervalIndex(blocks);
+	}
+
+	/**
+	 * Write the index file
+	 * 
+	 * @param indexFile
+	 * @throws IOException
+	 */
+	public void write(File indexFile) throws IOException {
+		try (BufferedWriter output = new BufferedWriter(new FileWriter(indexFile, false))) {
+			for (Segments segments : files.values()) {
+				for (Block block : segments.blocks) {
+					output.append(block.toString());
+					output.newLine();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get the features that own a line of a file
+	 * 
+	 * @param path
+	 *            of the file from its package root
+	 * @param line
+	 *            the first line is 1
+	 * @return the features, empty if the line is not inside a block
+	 */
+	public List<String> getFeatures(String path, int line) {
+		Segments segments = files.get(path);
+		if (segments == null) {
+			return Collections.emptyList();
+		}
+		// last segment starting before or at the line
+		int i = Arrays.binarySearch(segments.starts, line);
+		if (i < 0) {
+			i = -i - 2;
+		}
+		if (i < 0 || line > segments.ends[i]) {
+			return Collections.emptyList();
+		}
+		return segments.owners.get(i);
+	}
+
+	/**
+	 * Get the blocks of a file
+	 * 
+	 * @param path
+	 *            of the file from its package root
+	 * @return the blocks in the order of the source code
+	 */
+	public List<Block> getBlocks(String path) {
+		Segments segments = files.get(path);
+		return segments == null ? Collections.<Block>emptyList() : segments.blocks;
+	}
+
+	/**
+	 * Paths of the files with blocks
+	 * 
+	 * @return the paths
+	 */
+	public Set<String> getPaths() {
+		return Collections.unmodifiableSet(files.keySet());
+	}
+
+	/**
+	 * Features that own at least one line
+	 * 
+	 * @return feature names
+	 */
+	public Set<String> getFeatures() {
+		return Collections.unmodifiableSet(lineCounts.keySet());
+	}
+
+	/**
+	 * Get the number of lines that a feature owns
+	 * 
+	 * @param feature
+	 * @return the number of lines
+	 */
+	public int getLineCount(String feature) {
+		Integer count = lineCounts.get(feature);
+		return count == null ? 0 : count;
+	}
+}
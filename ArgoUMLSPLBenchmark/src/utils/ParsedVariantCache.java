@@ -0,0 +1,252 @@
+package utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.TypeDeclaration;
+
+/**
+ * Cache of the parsed Java files of the variants of a scenario. Each file is
+ * parsed once with JDT and only a compact summary is kept: the type
+ * declarations with their names, trace ids and the trace ids of their methods
+ * (see TraceIdUtils). A technique that visits the same variants for each
+ * feature can use this cache instead of parsing the files again.
+ * 
+ * The summaries are cached by the hash of the content of the file, so the
+ * same file in several variants is parsed only once. The least recently used
+ * summaries are evicted when the estimated memory of the summaries exceeds the
+ * memory budget.
+ * 
+ * @author jabier.martinez
+ */
+public class ParsedVariantCache {
+
+	public static final long DEFAULT_MEMORY_BUDGET = 64 * 1024 * 1024;
+
+	// rough size of an object header and a reference
+	private static final int OBJECT_SIZE = 16;
+	private static final int REFERENCE_SIZE = 8;
+
+	private final long memoryBudget;
+	// content hash to summary in access order, the first one is the least
+	// recently used
+	private final LinkedHashMap<String, List<TypeSummary>> summaries = new LinkedHashMap<String, List<TypeSummary>>(
+			16, 0.75f, true);
+	private final Map<String, Long> sizes = new HashMap<String, Long>();
+	private long usedMemory = 0;
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+
+	/**
+	 * Summary of a type declaration
+	 */
+	public static class TypeSummary {
+		private final String name;
+		private final String traceId;
+		private final List<String> methodTraceIds;
+		private final List<TypeSummary> memberTypes;
+
+		private TypeSummary(TypeDeclaration typeDeclaration) {
+			name = typeDeclaration.getName().toString();
+			traceId = TraceIdUtils.getId(typeDeclaration);
+			List<String> methods = new ArrayList<String>();
+			for (MethodDeclaration method : typeDeclaration.getMethods()) {
+				methods.add(TraceIdUtils.getId(method));
+			}
+			methodTraceIds = Collections.unmodifiableList(methods);
+			List<TypeSummary> types = new ArrayList<TypeSummary>();
+			for (TypeDeclaration memberType : typeDeclaration.getTypes()) {
+				types.add(new TypeSummary(memberType));
+			}
+			memberTypes = Collections.unmodifiableList(types);
+		}
+
+		/**
+		 * Simple name of the type
+		 * 
+		 * @return the name
+		 */
+		public String getName() {
+			return name;
+		}
+
+		public String getTraceId() {
+			return traceId;
+		}
+
+		/**
+		 * Trace ids of the methods declared in the type
+		 * 
+		 * @return the trace ids in the order of the source code
+		 */
+		public List<String> getMethodTraceIds() {
+			return methodTraceIds;
+		}
+
+		/**
+		 * Types declared inside the type
+		 * 
+		 * @return the member types in the order of the source code
+		 */
+		public List<TypeSummary> getMemberTypes() {
+			return memberTypes;
+		}
+
+		private long estimateSize() {
+			long size = OBJECT_SIZE + 4 * REFERENCE_SIZE + estimateStringSize(name) + estimateStringSize(traceId);
+			size += OBJECT_SIZE + methodTraceIds.size() * REFERENCE_SIZE;
+			for (String method : methodTraceIds) {
+				size += estimateStringSize(method);
+			}
+			size += OBJECT_SIZE + memberTypes.size() * REFERENCE_SIZE;
+			for (TypeSummary memberType : memberTypes) {
+				size += memberType.estimateSize();
+			}
+			return size;
+		}
+	}
+
+	public ParsedVariantCache() {
+		this(DEFAULT_MEMORY_BUDGET);
+	}
+
+	/**
+	 * Cache with a memory budget
+	 * 
+	 * @param memoryBudget
+	 *            estimated bytes of the summaries to keep
+	 */
+	public ParsedVariantCache(long memoryBudget) {
+		this.memoryBudget = memoryBudget;
+	}
+
+	/**
+	 * Get the top-level type declarations of a Java file, parsing it if it
+	 * is not in the cache
+	 * 
+	 * @param javaFile
+	 *            a file on disk or in a virtual variant
+	 * @return the summaries of the types in the order of the source code
+	 */
+	public List<TypeSummary> getTypes(File javaFile) {
+		// the file is read once for the hash and the parser
+		byte[] content;
+		String hash;
+		try {
+			content = FileUtils.readAllBytes(javaFile);
+			hash = FileUtils.getContentHash(new ByteArrayInputStream(content));
+		} catch (IOException e) {
+			e.printStackTrace();
+			return Collections.emptyList();
+		}
+		synchronized (this) {
+			List<TypeSummary> types = summaries.get(hash);
+			if (types != null) {
+				hits++;
+				return types;
+			}
+			misses++;
+		}
+		// parse outside the lock so several threads can parse at the same time
+		// default charset as FileUtils.getStringOfFile
+		List<TypeSummary> types = parse(new String(content));
+		put(hash, types);
+		return types;
+	}
+
+	/**
+	 * Parse the source code of a Java file
+	 * 
+	 * @param source
+	 * @return the summaries of the top-level types
+	 */
+	public static List<TypeSummary> parse(String source) {
+		ASTParser parser = ASTParser.newParser(AST.JLS8);
+		parser.setSource(source.toCharArray());
+		parser.setKind(ASTParser.K_COMPILATION_UNIT);
+		parser.setBindingsRecovery(true);
+		CompilationUnit cu = (CompilationUnit) parser.createAST(null);
+		List<TypeSummary> types = new ArrayList<TypeSummary>();
+		for (Object type : cu.types()) {
+			if (type instanceof TypeDeclaration) {
+				types.add(new TypeSummary((TypeDeclaration) type));
+			}
+		}
+		return Collections.unmodifiableList(types);
+	}
+
+	private synchronized void put(String hash, List<TypeSummary> types) {
+		if (summaries.containsKey(hash)) {
+			// parsed by another thread at the same time
+			return;
+		}
+		long size = estimateStringSize(hash) + OBJECT_SIZE + types.size() * REFERENCE_SIZE;
+		for (TypeSummary type : types) {
+			size += type.estimateSize();
+		}
+		summaries.put(hash, types);
+		sizes.put(hash, size);
+		usedMemory += size;
+		// evict the least recently used, but keep the new one
+		Iterator<String> hashes = summaries.keySet().iterator();
+		while (usedMemory > memoryBudget && summaries.size() > 1) {
+			String evicted = hashes.next();
+			hashes.remove();
+			usedMemory -= sizes.remove(evicted);
+			evictions++;
+		}
+	}
+
+	private static long estimateStringSize(String string) {
+		return OBJECT_SIZE + REFERENCE_SIZE + OBJECT_SIZE + 2 * string.length();
+	}
+
+	/**
+	 * Number of files found in the cache
+	 * 
+	 * @return the hits
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Number of files that were parsed
+	 * 
+	 * @return the misses
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Number of summaries evicted because of the memory budget
+	 * 
+	 * @return the evictions
+	 */
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * Estimated memory of the cached summaries
+	 * 
+	 * @return bytes
+	 */
+	public synchronized long getUsedMemory() {
+		return usedMemory;
+	}
+}
@@ -0,0 +1,128 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dictionary of traces. Each trace (e.g., org.argouml.x.Y m(String)
+ * Refinement) gets a dense int id the first time it is added so the traces can
+ * be compared and sorted as ints instead of long strings.
+ * 
+ * A dictionary can extend a parent dictionary, for example the dictionary of
+ * the ground-truth. The traces of the parent keep their ids and the new traces
+ * get ids after the last id of the parent, so the parent is never modified and
+ * can be shared by several threads as long as nothing is added to it.
+ * 
+ * @author jabier.martinez
+ */
+public class TraceDictionary {
+
+	private final TraceDictionary parent;
+	private final int firstId;
+	private final Map<String, Integer> ids = new HashMap<String, Integer>();
+	private final List<String> traces = new ArrayList<String>();
+
+	public TraceDictionary() {
+		this(null);
+	}
+
+	/**
+	 * Dictionary extending a parent dictionary
+	 * 
+	 * @param parent
+	 *            it will not be modified, it can be null
+	 */
+	public TraceDictionary(TraceDictionary parent) {
+		this.parent = parent;
+		this.firstId = parent == null ? 0 : parent.size();
+	}
+
+	/**
+	 * Get the id of a trace adding it if it was not in the dictionary
+	 * 
+	 * @param trace
+	 * @return the id
+	 */
+	public int getId(String trace) {
+		int id = find(trace);
+		if (id == -1) {
+			id = firstId + traces.size();
+			ids.put(trace, id);
+			traces.add(trace);
+		}
+		return id;
+	}
+
+	/**
+	 * Get the ids of the traces adding those that were not in the dictionary
+	 * 
+	 * @param traces
+	 * @return the sorted ids, repeated traces are repeated ids
+	 */
+	public int[] getIds(Collection<String> traces) {
+		int[] result = new int[traces.size()];
+		int i = 0;
+		for (String trace : traces) {
+			result[i++] = getId(trace);
+		}
+		Arrays.sort(result);
+		return result;
+	}
+
+	/**
+	 * Get the id of a trace without adding it
+	 * 
+	 * @param trace
+	 * @return the id or -1 if it is not in the dictionary
+	 */
+	public int find(String trace) {
+		if (parent != null) {
+			int id = parent.find(trace);
+			if (id != -1) {
+				return id;
+			}
+		}
+		Integer id = ids.get(trace);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * Get the trace of an id
+	 * 
+	 * @param id
+	 * @return the trace
+	 */
+	public String getTrace(int id) {
+		if (id < firstId) {
+			return parent.getTrace(id);
+		}
+		return traces.get(id - firstId);
+	}
+
+	/**
+	 * Get the traces of some ids
+	 * 
+	 * @param ids
+	 * @return the traces in the order of the ids
+	 */
+	public List<String> getTraces(int[] ids) {
+		List<String> result = new ArrayList<String>(ids.length);
+		for (int id : ids) {
+			result.add(getTrace(id));
+		}
+		return result;
+	}
+
+	/**
+	 * Number of traces including those of the parent
+	 * 
+	 * @return the number of traces, the ids are between 0 and size - 1
+	 */
+	public int size() {
+		return firstId + traces.size();
+	}
+}
@@ -0,0 +1,234 @@
+package utils;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Binary file with the traces of the features of a folder (ground-truth or
+ * results of a technique). It contains the trace dictionary and the sorted ids
+ * of the traces of each feature, so it can be read with a memory-mapped buffer
+ * without parsing the txt files.
+ * 
+ * The txt files remain the export format. The binary file is written after the
+ * txt files, so it is only used if it is not older than any txt file of the
+ * folder.
+ * 
+ * Layout (big-endian): magic, version, number of traces, number of features,
+ * offsets of the traces (number of traces + 1 ints), the traces in UTF-8 and
+ * for each feature the length of its name, the name in UTF-8, the number of
+ * ids and the ids.
+ * 
+ * @author jabier.martinez
+ */
+public class TraceFile {
+
+	public static final String FILE_NAME = "traces.bin";
+
+	private static final int MAGIC = 0x54524346;
+	private static final int VERSION = 1;
+	private static final String TXT_EXTENSION = ".txt";
+
+	private final MappedByteBuffer buffer;
+	private final int traceCount;
+	private final int tracesPosition;
+	// feature name to position of its number of ids
+	private final Map<String, Integer> features = new LinkedHashMap<String, Integer>();
+
+	private TraceFile(MappedByteBuffer buffer) throws IOException {
+		this.buffer = buffer;
+		if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+			throw new IOException("Not a trace file of version " + VERSION);
+		}
+		traceCount = buffer.getInt(8);
+		int featureCount = buffer.getInt(12);
+		tracesPosition = 16 + (traceCount + 1) * 4;
+		int position = tracesPosition + getOffset(traceCount);
+		for (int i = 0; i < featureCount; i++) {
+			int nameLength = buffer.getInt(position);
+			byte[] name = new byte[nameLength];
+			get(position + 4, name);
+			position += 4 + nameLength;
+			features.put(new String(name, StandardCharsets.UTF_8), position);
+			position += 4 + buffer.getInt(position) * 4;
+		}
+	}
+
+	/**
+	 * Map a trace file in memory
+	 * 
+	 * @param file
+	 * @return the trace file
+	 * @throws IOException
+	 */
+	public static TraceFile open(File file) throws IOException {
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+				FileChannel channel = randomAccessFile.getChannel()) {
+			// the mapping remains valid after closing the channel
+			return new TraceFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	/**
+	 * Open the trace file of a folder if it is up to date with the txt files
+	 * 
+	 * @param folder
+	 * @return the trace file or null if there is no trace file, it is older
+	 *         than a txt file of the folder or it cannot be read
+	 */
+	public static TraceFile openIfUpToDate(File folder) {
+		File file = new File(folder, FILE_NAME);
+		if (!file.isFile()) {
+			return null;
+		}
+		File[] files = folder.listFiles();
+		for (File f : files) {
+			if ((f.getName().endsWith(TXT_EXTENSION) || f.getName().endsWith(TXT_EXTENSION + TraceSink.GZIP_EXTENSION))
+					&& f.lastModified() > file.lastModified()) {
+				return null;
+			}
+		}
+		try {
+			return open(file);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * Write the trace file of some features
+	 * 
+	 * @param file
+	 * @param traces
+	 *            map of features to traces, repeated traces are kept
+	 * @throws IOException
+	 */
+	public static void write(File file, Map<String, ? extends Collection<String>> traces) throws IOException {
+		TraceDictionary dictionary = new TraceDictionary();
+		Map<String, int[]> ids = new LinkedHashMap<String, int[]>();
+		for (String feature : traces.keySet()) {
+			ids.put(feature, dictionary.getIds(traces.get(feature)));
+		}
+		byte[][] encoded = new byte[dictionary.size()][];
+		for (int id = 0; id < encoded.length; id++) {
+			encoded[id] = dictionary.getTrace(id).getBytes(StandardCharsets.UTF_8);
+		}
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(file, false)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(encoded.length);
+			out.writeInt(ids.size());
+			int offset = 0;
+			for (byte[] trace : encoded) {
+				out.writeInt(offset);
+				offset += trace.length;
+			}
+			out.writeInt(offset);
+			for (byte[] trace : encoded) {
+				out.write(trace);
+			}
+			for (String feature : ids.keySet()) {
+				byte[] name = feature.getBytes(StandardCharsets.UTF_8);
+				out.writeInt(name.length);
+				out.write(name);
+				int[] featureIds = ids.get(feature);
+				out.writeInt(featureIds.length);
+				for (int id : featureIds) {
+					out.writeInt(id);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Features of the file, including those without traces
+	 * 
+	 * @return feature names
+	 */
+	public Set<String> getFeatures() {
+		return Collections.unmodifiableSet(features.keySet());
+	}
+
+	public boolean contains(String feature) {
+		return features.containsKey(feature);
+	}
+
+	/**
+	 * Get the ids of the traces of a feature
+	 * 
+	 * @param feature
+	 * @return the sorted ids or null if the feature is not in the file
+	 */
+	public int[] getIds(String feature) {
+		Integer position = features.get(feature);
+		if (position == null) {
+			return null;
+		}
+		int[] ids = new int[buffer.getInt(position)];
+		ByteBuffer view = buffer.duplicate();
+		view.position(position + 4);
+		view.asIntBuffer().get(ids);
+		return ids;
+	}
+
+	/**
+	 * Number of different traces
+	 * 
+	 * @return the number of traces, the ids are between 0 and size - 1
+	 */
+	public int size() {
+		return traceCount;
+	}
+
+	/**
+	 * Get the trace of an id
+	 * 
+	 * @param id
+	 * @return the trace
+	 */
+	public String getTrace(int id) {
+		int offset = getOffset(id);
+		byte[] trace = new byte[getOffset(id + 1) - offset];
+		get(tracesPosition + offset, trace);
+		return new String(trace, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Read the dictionary of the file. The ids of the dictionary are the ids
+	 * of the file.
+	 * 
+	 * @return the dictionary
+	 */
+	public TraceDictionary getDictionary() {
+		TraceDictionary dictionary = new TraceDictionary();
+		for (int id = 0; id < traceCount; id++) {
+			dictionary.getId(getTrace(id));
+		}
+		return dictionary;
+	}
+
+	private void get(int position, byte[] bytes) {
+		// the buffer is shared so its position is not modified
+		ByteBuffer view = buffer.duplicate();
+		view.position(position);
+		view.get(bytes);
+	}
+
+	private int getOffset(int id) {
+		return buffer.getInt(16 + id * 4);
+	}
+}
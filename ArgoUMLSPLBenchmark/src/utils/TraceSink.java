@@ -0,0 +1,152 @@
+package utils;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes the traces of the features in a folder, one txt file per feature with
+ * one trace per line. The file of a feature is opened once, with a FileChannel,
+ * the first time that a trace of the feature is written, and the traces are
+ * buffered until the sink is closed. An existing file of the feature is
+ * replaced.
+ * 
+ * In gzip mode the files are compressed and their names end with .txt.gz. They
+ * can be read with FileUtils.openReader or FileUtils.getLinesOfFile, and the
+ * metrics calculation reads them as the txt files. The file of the feature in
+ * the other mode is removed, so a folder has one file per feature.
+ * 
+ * A sink is not thread-safe.
+ * 
+ * @author jabier.martinez
+ */
+public class TraceSink implements Closeable {
+
+	public static final String TXT_EXTENSION = ".txt";
+	public static final String GZIP_EXTENSION = ".gz";
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final File folder;
+	private final boolean gzip;
+	// feature to the writer of its file, in the order of the first trace
+	private final Map<String, BufferedWriter> writers = new LinkedHashMap<String, BufferedWriter>();
+
+	/**
+	 * Sink of txt files
+	 * 
+	 * @param folder
+	 *            it is created if it does not exist
+	 */
+	public TraceSink(File folder) {
+		this(folder, false);
+	}
+
+	/**
+	 * Sink of txt files
+	 * 
+	 * @param folder
+	 *            it is created if it does not exist
+	 * @param gzip
+	 *            true to compress the files
+	 */
+	public TraceSink(File folder, boolean gzip) {
+		this.folder = folder;
+		this.gzip = gzip;
+		folder.mkdirs();
+	}
+
+	/**
+	 * Get the file of a feature
+	 * 
+	 * @param feature
+	 * @return the file, it might not exist yet
+	 */
+	public File getFile(String feature) {
+		return new File(folder, feature + TXT_EXTENSION + (gzip ? GZIP_EXTENSION : ""));
+	}
+
+	/**
+	 * Write a trace of a feature
+	 * 
+	 * @param feature
+	 * @param trace
+	 * @throws IOException
+	 */
+	public void write(String feature, String trace) throws IOException {
+		BufferedWriter writer = getWriter(feature);
+		writer.write(trace);
+		writer.newLine();
+	}
+
+	/**
+	 * Write the traces of a feature in their order
+	 * 
+	 * @param feature
+	 * @param traces
+	 * @throws IOException
+	 */
+	public void write(String feature, Collection<String> traces) throws IOException {
+		BufferedWriter writer = getWriter(feature);
+		for (String trace : traces) {
+			writer.write(trace);
+			writer.newLine();
+		}
+	}
+
+	private BufferedWriter getWriter(String feature) throws IOException {
+		BufferedWriter writer = writers.get(feature);
+		if (writer == null) {
+			// the file of the other mode would be read instead
+			new File(folder, feature + TXT_EXTENSION + (gzip ? "" : GZIP_EXTENSION)).delete();
+			FileChannel channel = FileChannel.open(getFile(feature).toPath(), StandardOpenOption.CREATE,
+					StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+			try {
+				OutputStream out = Channels.newOutputStream(channel);
+				if (gzip) {
+					out = new GZIPOutputStream(out, BUFFER_SIZE);
+				}
+				// the writer is the only buffer of the text, default charset as
+				// the FileWriter used before
+				writer = new BufferedWriter(new OutputStreamWriter(out), BUFFER_SIZE);
+			} catch (IOException | RuntimeException | Error e) {
+				channel.close();
+				throw e;
+			}
+			writers.put(feature, writer);
+		}
+		return writer;
+	}
+
+	/**
+	 * Flush and close all the files. If a file cannot be closed the others are
+	 * closed anyway and the first exception is thrown.
+	 */
+	@Override
+	public void close() throws IOException {
+		IOException exception = null;
+		for (BufferedWriter writer : writers.values()) {
+			try {
+				writer.close();
+			} catch (IOException e) {
+				if (exception == null) {
+					exception = e;
+				}
+			}
+		}
+		writers.clear();
+		if (exception != null) {
+			throw exception;
+		}
+	}
+}
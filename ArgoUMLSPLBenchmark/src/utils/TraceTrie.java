@@ -0,0 +1,181 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Set of traces organized as a tree of packages, classes, methods and
+ * refinements, so checking whether a trace or one of its ancestors was added
+ * only visits the elements of its path.
+ * 
+ * The ancestors of a trace are obtained by removing the last element of its
+ * path. For example, the path of org.argouml.x.Y m(String) Refinement is org,
+ * argouml, x, Y, m(String) and Refinement, so its parent is org.argouml.x.Y
+ * m(String), then org.argouml.x.Y, org.argouml.x etc.
+ * 
+ * @author jabier.martinez
+ */
+public class TraceTrie {
+
+	private static final String REFINEMENT = " Refinement";
+
+	private final Node root = new Node();
+	private int size = 0;
+
+	private static class Node {
+		// keys start with their separator (except the first package) so the
+		// keys of a path are the trace
+		private Map<String, Node> children = null;
+		private boolean trace = false;
+
+		private Node getChild(String key) {
+			return children == null ? null : children.get(key);
+		}
+
+		private Node getOrCreateChild(String key) {
+			if (children == null) {
+				children = new HashMap<String, Node>(4);
+			}
+			Node child = children.get(key);
+			if (child == null) {
+				child = new Node();
+				children.put(key, child);
+			}
+			return child;
+		}
+	}
+
+	public TraceTrie() {
+	}
+
+	public TraceTrie(Collection<String> traces) {
+		addAll(traces);
+	}
+
+	/**
+	 * Add a trace
+	 * 
+	 * @param trace
+	 * @return true if it was not already added
+	 */
+	public boolean add(String trace) {
+		Node node = root;
+		for (String key : getKeys(trace)) {
+			node = node.getOrCreateChild(key);
+		}
+		if (node.trace) {
+			return false;
+		}
+		node.trace = true;
+		size++;
+		return true;
+	}
+
+	/**
+	 * Add some traces
+	 * 
+	 * @param traces
+	 */
+	public void addAll(Collection<String> traces) {
+		for (String trace : traces) {
+			add(trace);
+		}
+	}
+
+	/**
+	 * Whether a trace was added
+	 * 
+	 * @param trace
+	 * @return true if it was added
+	 */
+	public boolean contains(String trace) {
+		Node node = root;
+		for (String key : getKeys(trace)) {
+			node = node.getChild(key);
+			if (node == null) {
+				return false;
+			}
+		}
+		return node.trace;
+	}
+
+	/**
+	 * Whether an ancestor of a trace was added, for example the declaring class
+	 * of a method or the enclosing class of an inner class. The trace itself is
+	 * not considered.
+	 * 
+	 * @param trace
+	 * @return true if an ancestor was added
+	 */
+	public boolean containsAncestor(String trace) {
+		return containsAncestor(trace, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Whether one of the closest ancestors of a trace was added. For example,
+	 * with maxDistance 1 only the parent is considered (the class of a class
+	 * refinement or the declaring class of a method) and with maxDistance 2 a
+	 * method refinement is covered by its method or its declaring class.
+	 * 
+	 * @param trace
+	 * @param maxDistance
+	 *            number of ancestors to consider
+	 * @return true if one of these ancestors was added
+	 */
+	public boolean containsAncestor(String trace, int maxDistance) {
+		List<String> keys = getKeys(trace);
+		int firstAncestor = Math.max(0, keys.size() - 1 - maxDistance);
+		Node node = root;
+		for (int i = 0; i < keys.size() - 1; i++) {
+			node = node.getChild(keys.get(i));
+			if (node == null) {
+				return false;
+			}
+			if (node.trace && i >= firstAncestor) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Number of different traces
+	 * 
+	 * @return the number of traces
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Split a trace in the keys of its path. The packages and classes are
+	 * separated by dots, the method by the first space and the refinement is
+	 * the suffix " Refinement".
+	 */
+	private static List<String> getKeys(String trace) {
+		List<String> keys = new ArrayList<String>();
+		int space = trace.indexOf(' ');
+		int classEnd = space == -1 ? trace.length() : space;
+		int start = 0;
+		for (int dot = trace.indexOf('.'); dot != -1 && dot < classEnd; dot = trace.indexOf('.', dot + 1)) {
+			keys.add(trace.substring(start, dot));
+			start = dot;
+		}
+		keys.add(trace.substring(start, classEnd));
+		if (space != -1) {
+			if (trace.endsWith(REFINEMENT)) {
+				if (space != trace.length() - REFINEMENT.length()) {
+					// method refinement
+					keys.add(trace.substring(space, trace.length() - REFINEMENT.length()));
+				}
+				keys.add(REFINEMENT);
+			} else {
+				keys.add(trace.substring(space));
+			}
+		}
+		return keys;
+	}
+}
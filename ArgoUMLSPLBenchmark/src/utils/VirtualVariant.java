@@ -0,0 +1,333 @@
+package utils;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import scenarioGenerator.VariantGenerator;
+
+/**
+ * A read-only variant that is not written to disk. The files of the variant
+ * are projected from the annotated ArgoUML SPL source code when they are read,
+ * so the feature location techniques can use the variants of large scenarios
+ * without generating them.
+ * 
+ * A virtual variant is registered at the folder where the variant would be
+ * generated (scenario/variants/config). The methods of FileUtils accept the
+ * files and folders inside this folder as if they were on disk, as long as the
+ * folder does not exist. The projected content of a file is cached by the
+ * features of the configuration used in the file and shared by all the
+ * variants.
+ * 
+ * Virtual variants are opt-in with the system property virtualVariants (e.g.
+ * -DvirtualVariants=true), otherwise a scenario must be built before locating
+ * the features.
+ * 
+ * @author jabier.martinez
+ */
+public class VirtualVariant {
+
+	/**
+	 * The ArgoUML SPL projects are next to the benchmark project
+	 */
+	public static final File DEFAULT_SPL_FOLDER = new File("..");
+
+	/**
+	 * System property to use virtual variants for the variants that were not
+	 * built
+	 */
+	public static final String ENABLED_PROPERTY = "virtualVariants";
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	// tokenized SPL by its folder
+	private static final Map<File, VariantGenerator> spls = new HashMap<File, VariantGenerator>();
+	// virtual variants by their folder
+	private static final Map<File, VirtualVariant> variants = new ConcurrentHashMap<File, VirtualVariant>();
+
+	private final File folder;
+	private final VariantGenerator spl;
+	private final Set<String> features;
+	// paths of the files of the variant, calculated on demand
+	private Set<String> paths = null;
+	// paths of the files directly inside each folder of the variant
+	private Map<String, List<String>> folders = null;
+
+	private VirtualVariant(File folder, VariantGenerator spl, Set<String> features) {
+		this.folder = folder;
+		this.spl = spl;
+		this.features = features;
+	}
+
+	/**
+	 * Whether the variants that were not built are read as virtual variants:
+	 * the system property ENABLED_PROPERTY is true and the ArgoUML SPL projects
+	 * are in the default folder
+	 * 
+	 * @return true if virtual variants can be used
+	 */
+	public static boolean isEnabled() {
+		return Boolean.getBoolean(ENABLED_PROPERTY) && isSPLFolder(DEFAULT_SPL_FOLDER);
+	}
+
+	/**
+	 * Whether a folder contains the ArgoUML SPL projects needed to project the
+	 * variants
+	 * 
+	 * @param splFolder
+	 * @return true if the folder contains the ArgoUML SPL
+	 */
+	public static boolean isSPLFolder(File splFolder) {
+		return new File(splFolder, VariantGenerator.APP_PROJECT + "/src").isDirectory()
+				&& new File(splFolder, VariantGenerator.GENERATOR_PROJECT + "/templates").isDirectory();
+	}
+
+	/**
+	 * Create and register a virtual variant. The SPL is tokenized the first
+	 * time it is used.
+	 * 
+	 * @param splFolder
+	 *            the folder containing the ArgoUML SPL projects
+	 * @param config
+	 *            file with the features of the variant, one per line
+	 * @param variantFolder
+	 *            the folder of the variant, it should not exist
+	 * @return the virtual variant
+	 */
+	public static VirtualVariant create(File splFolder, File config, File variantFolder) {
+		VariantGenerator spl;
+		synchronized (spls) {
+			File splKey = normalize(splFolder);
+			spl = spls.get(splKey);
+			if (spl == null) {
+				spl = new VariantGenerator(splFolder);
+				spls.put(splKey, spl);
+				LOGGER.info("Tokenized " + spl.getPaths().size() + " files of the ArgoUML SPL in "
+						+ spl.getTokenizationTime() + " ms");
+			}
+		}
+		VirtualVariant variant = new VirtualVariant(normalize(variantFolder), spl,
+				VariantGenerator.getFeatures(config));
+		variants.put(variant.folder, variant);
+		return variant;
+	}
+
+	/**
+	 * Get the virtual variant containing a file or folder
+	 * 
+	 * @param file
+	 * @return the virtual variant or null if the file is not inside a virtual
+	 *         variant
+	 */
+	public static VirtualVariant get(File file) {
+		if (variants.isEmpty()) {
+			return null;
+		}
+		for (File parent = normalize(file); parent != null; parent = parent.getParentFile()) {
+			VirtualVariant variant = variants.get(parent);
+			if (variant != null) {
+				return variant;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Get the folder of the variant
+	 * 
+	 * @return the folder
+	 */
+	public File getFolder() {
+		return folder;
+	}
+
+	/**
+	 * Get the features of the configuration
+	 * 
+	 * @return the features
+	 */
+	public Set<String> getFeatures() {
+		return features;
+	}
+
+	/**
+	 * Whether a file or folder is part of the variant
+	 * 
+	 * @param file
+	 * @return true if it exists
+	 */
+	public boolean exists(File file) {
+		return isFile(file) || isDirectory(file);
+	}
+
+	/**
+	 * Whether a file is part of the variant
+	 * 
+	 * @param file
+	 * @return true if it is a file of the variant
+	 */
+	public boolean isFile(File file) {
+		String path = getPath(file);
+		return path != null && getPaths().contains(path);
+	}
+
+	/**
+	 * Whether a folder is part of the variant
+	 * 
+	 * @param file
+	 * @return true if it is a folder of the variant
+	 */
+	public boolean isDirectory(File file) {
+		String path = getPath(file);
+		if (path == null) {
+			return false;
+		}
+		getPaths();
+		return folders.containsKey(path);
+	}
+
+	/**
+	 * Get all the files (not folders) inside a folder recursively
+	 * 
+	 * @param dir
+	 * @return list of files
+	 */
+	public List<File> getAllFiles(File dir) {
+		List<File> files = new ArrayList<File>();
+		String path = getPath(dir);
+		if (path == null) {
+			return files;
+		}
+		String prefix = path.isEmpty() ? "" : path + "/";
+		for (String filePath : getPaths()) {
+			if (filePath.startsWith(prefix) || filePath.equals(path)) {
+				files.add(new File(folder, filePath));
+			}
+		}
+		return files;
+	}
+
+	/**
+	 * Get the files (not folders) directly inside a folder
+	 * 
+	 * @param dir
+	 * @return list of files
+	 */
+	public List<File> listFiles(File dir) {
+		List<File> files = new ArrayList<File>();
+		String path = getPath(dir);
+		if (path == null) {
+			return files;
+		}
+		getPaths();
+		List<String> folderPaths = folders.get(path);
+		if (folderPaths != null) {
+			for (String filePath : folderPaths) {
+				files.add(new File(folder, filePath));
+			}
+		}
+		return files;
+	}
+
+	/**
+	 * Get the content of a file of the variant
+	 * 
+	 * @param file
+	 * @return the content
+	 * @throws IOException
+	 *             if the file is not part of the variant
+	 */
+	public byte[] readAllBytes(File file) throws IOException {
+		String path = getPath(file);
+		byte[] content = path == null ? null : spl.getContent(path, features);
+		if (content == null) {
+			throw new FileNotFoundException(
+					file.getPath() + " is not part of the virtual variant " + folder.getName());
+		}
+		return content;
+	}
+
+	/**
+	 * Get the original file on disk of a file whose content does not depend on
+	 * the configuration, for example the jar files of the lib folder
+	 * 
+	 * @param file
+	 * @return the original file or null if the file is preprocessed
+	 */
+	public File getOriginalFile(File file) {
+		String path = getPath(file);
+		return path == null ? null : spl.getOriginalFile(path);
+	}
+
+	/**
+	 * The java files that are empty in this configuration are not part of the
+	 * variant, so all the annotated files are projected the first time
+	 */
+	private synchronized Set<String> getPaths() {
+		if (paths == null) {
+			Set<String> variantPaths = new LinkedHashSet<String>();
+			Map<String, List<String>> variantFolders = new LinkedHashMap<String, List<String>>();
+			variantFolders.put("", new ArrayList<String>());
+			try {
+				for (String path : spl.getPaths()) {
+					if (spl.getOriginalFile(path) != null || spl.getContent(path, features) != null) {
+						variantPaths.add(path);
+						addToFolders(variantFolders, path);
+					}
+				}
+			} catch (IOException e) {
+				throw new RuntimeException("Failed to project the virtual variant " + folder.getName(), e);
+			}
+			folders = variantFolders;
+			paths = variantPaths;
+		}
+		return paths;
+	}
+
+	/**
+	 * Add a file to its folder and create the parent folders
+	 */
+	private static void addToFolders(Map<String, List<String>> variantFolders, String path) {
+		int separator = path.lastIndexOf('/');
+		String parent = separator == -1 ? "" : path.substring(0, separator);
+		variantFolders.get(getFolder(variantFolders, parent)).add(path);
+	}
+
+	private static String getFolder(Map<String, List<String>> variantFolders, String path) {
+		if (!variantFolders.containsKey(path)) {
+			int separator = path.lastIndexOf('/');
+			getFolder(variantFolders, separator == -1 ? "" : path.substring(0, separator));
+			variantFolders.put(path, new ArrayList<String>());
+		}
+		return path;
+	}
+
+	/**
+	 * Get the path of a file relative to the variant folder
+	 * 
+	 * @return the path or null if the file is outside the variant
+	 */
+	private String getPath(File file) {
+		File normalized = normalize(file);
+		if (!normalized.toPath().startsWith(folder.toPath())) {
+			return null;
+		}
+		return folder.toPath().relativize(normalized.toPath()).toString().replace(File.separatorChar, '/');
+	}
+
+	private static File normalize(File file) {
+		return file.toPath().toAbsolutePath().normalize().toFile();
+	}
+}
@@ -0,0 +1,128 @@
+package utils.tests;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import utils.LineIntervalIndex;
+import utils.LineIntervalIndex.Block;
+
+/**
+ * Tests for the line-level ground truth. The file has a block of A from line 2
+ * to 12 with a nested block of A_and_B from line 4 to 6, an #else block of
+ * not_A from line 12 to 15, and a block of C from line 20 to 22.
+ * 
+ * @author jabier.martinez
+ */
+public class LineIntervalIndexTest {
+
+	private static final String PATH = "org/argouml/x/Y.java";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static List<Block> getBlocks() {
+		// not in the order of the source code
+		return Arrays.asList(new Block(PATH, 400, 450, 20, 22, Arrays.asList("C")),
+				new Block(PATH, 60, 100, 4, 6, Arrays.asList("A_and_B")),
+				new Block(PATH, 20, 250, 2, 12, Arrays.asList("A")),
+				new Block(PATH, 240, 300, 12, 15, Arrays.asList("not_A")));
+	}
+
+	@Test
+	public void nestedBlock() {
+		LineIntervalIndex index = new LineIntervalIndex(getBlocks());
+		// the lines of the jpp comments are not owned
+		Assert.assertEquals(Collections.emptyList(), index.getFeatures(PATH, 2));
+		Assert.assertEquals(Arrays.asList("A"), index.getFeatures(PATH, 3));
+		Assert.assertEquals(Collections.emptyList(), index.getFeatures(PATH, 4));
+		Assert.assertEquals(Arrays.asList("A_and_B"), index.getFeatures(PATH, 5));
+		Assert.assertEquals(Collections.emptyList(), index.getFeatures(PATH, 6));
+		// the outer block continues after the nested block
+		Assert.assertEquals(Arrays.asList("A"), index.getFeatures(PATH, 7));
+		Assert.assertEquals(Arrays.asList("A"), index.getFeatures(PATH, 11));
+	}
+
+	@Test
+	public void elseBlock() {
+		LineIntervalIndex index = new LineIntervalIndex(getBlocks());
+		// the #else comment closes one block and opens the other
+		Assert.assertEquals(Collections.emptyList(), index.getFeatures(PATH, 12));
+		Assert.assertEquals(Arrays.asList("not_A"), index.getFeatures(PATH, 13));
+		Assert.assertEquals(Arrays.asList("not_A"), index.getFeatures(PATH, 14));
+		Assert.assertEquals(Collections.emptyList(), index.getFeatures(PATH, 15));
+	}
+
+	@Test
+	public void segmentBoundaries() {
+		LineIntervalIndex index = new LineIntervalIndex(getBlocks());
+		// before the first segment
+		Assert.assertEquals(Collections.emptyList(), index.getFeatures(PATH, 0));
+		Assert.assertEquals(Collections.emptyList(), index.getFeatures(PATH, 1));
+		// between two segments
+		Assert.assertEquals(Collections.emptyList(), index.getFeatures(PATH, 16));
+		Assert.assertEquals(Collections.emptyList(), index.getFeatures(PATH, 20));
+		// a segment of one line
+		Assert.assertEquals(Arrays.asList("C"), index.getFeatures(PATH, 21));
+		// after the last segment
+		Assert.assertEquals(Collections.emptyList(), index.getFeatures(PATH, 22));
+		Assert.assertEquals(Collections.emptyList(), index.getFeatures(PATH, 100));
+		Assert.assertEquals(Collections.emptyList(), index.getFeatures("org/argouml/x/Z.java", 3));
+	}
+
+	@Test
+	public void lineCounts() {
+		LineIntervalIndex index = new LineIntervalIndex(getBlocks());
+		Assert.assertEquals(6, index.getLineCount("A"));
+		Assert.assertEquals(1, index.getLineCount("A_and_B"));
+		Assert.assertEquals(2, index.getLineCount("not_A"));
+		Assert.assertEquals(1, index.getLineCount("C"));
+		Assert.assertEquals(0, index.getLineCount("D"));
+		Assert.assertEquals(Arrays.asList("A", "A_and_B", "C", "not_A"),
+				Arrays.asList(index.getFeatures().toArray()));
+	}
+
+	@Test
+	public void blocksInSourceOrder() {
+		LineIntervalIndex index = new LineIntervalIndex(getBlocks());
+		List<Block> blocks = index.getBlocks(PATH);
+		Assert.assertEquals(4, blocks.size());
+		Assert.assertEquals(Arrays.asList("A"), blocks.get(0).getFeatures());
+		Assert.assertEquals(Arrays.asList("A_and_B"), blocks.get(1).getFeatures());
+		Assert.assertEquals(Arrays.asList("not_A"), blocks.get(2).getFeatures());
+		Assert.assertEquals(Arrays.asList("C"), blocks.get(3).getFeatures());
+	}
+
+	@Test
+	public void parseBlock() {
+		Block block = Block.parse(PATH + "\t60\t100\t4\t6\tA,B");
+		Assert.assertEquals(PATH, block.getPath());
+		Assert.assertEquals(60, block.getStartOffset());
+		Assert.assertEquals(100, block.getEndOffset());
+		Assert.assertEquals(4, block.getStartLine());
+		Assert.assertEquals(6, block.getEndLine());
+		Assert.assertEquals(Arrays.asList("A", "B"), block.getFeatures());
+		Assert.assertEquals(PATH + "\t60\t100\t4\t6\tA,B", block.toString());
+		// without features
+		Assert.assertEquals(Collections.emptyList(), Block.parse(PATH + "\t60\t100\t4\t6\t").getFeatures());
+		Assert.assertNull(Block.parse(PATH + "\t60\t100"));
+	}
+
+	@Test
+	public void writeAndLoad() throws Exception {
+		File indexFile = new File(folder.getRoot(), LineIntervalIndex.FILE_NAME);
+		Assert.assertNull(LineIntervalIndex.load(indexFile));
+		new LineIntervalIndex(getBlocks()).write(indexFile);
+		LineIntervalIndex index = LineIntervalIndex.load(indexFile);
+		Assert.assertEquals(Collections.singleton(PATH), index.getPaths());
+		Assert.assertEquals(Arrays.asList("A_and_B"), index.getFeatures(PATH, 5));
+		Assert.assertEquals(Arrays.asList("not_A"), index.getFeatures(PATH, 13));
+		Assert.assertEquals(6, index.getLineCount("A"));
+	}
+}
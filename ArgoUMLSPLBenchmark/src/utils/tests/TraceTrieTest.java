@@ -0,0 +1,93 @@
+package utils.tests;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import utils.TraceTrie;
+
+/**
+ * Tests for the trie of traces and the distance of the ancestors of a trace.
+ * 
+ * @author jabier.martinez
+ */
+public class TraceTrieTest {
+
+	private static final String CLASS = "org.argouml.x.Y";
+	private static final String CLASS_REFINEMENT = "org.argouml.x.Y Refinement";
+	private static final String INNER_CLASS = "org.argouml.x.Y.Inner";
+	private static final String METHOD = "org.argouml.x.Y m(java.lang.String)";
+	private static final String METHOD_REFINEMENT = "org.argouml.x.Y m(java.lang.String) Refinement";
+
+	@Test
+	public void addAndContains() {
+		TraceTrie trie = new TraceTrie(Arrays.asList(CLASS, METHOD));
+		Assert.assertEquals(2, trie.size());
+		Assert.assertFalse(trie.add(CLASS));
+		Assert.assertEquals(2, trie.size());
+		Assert.assertTrue(trie.contains(CLASS));
+		Assert.assertTrue(trie.contains(METHOD));
+		// the path of the method exists but they were not added
+		Assert.assertFalse(trie.contains("org.argouml.x"));
+		Assert.assertFalse(trie.contains(METHOD_REFINEMENT));
+		Assert.assertFalse(trie.contains(CLASS_REFINEMENT));
+		Assert.assertFalse(trie.contains("org.argouml.x.Y m(int)"));
+	}
+
+	@Test
+	public void dotsOfTheParametersAreNotPackages() {
+		TraceTrie trie = new TraceTrie(Arrays.asList("java.lang.String"));
+		Assert.assertFalse(trie.containsAncestor(METHOD));
+		trie = new TraceTrie(Arrays.asList(CLASS));
+		Assert.assertTrue(trie.containsAncestor(METHOD, 1));
+	}
+
+	@Test
+	public void containsAncestor() {
+		TraceTrie trie = new TraceTrie(Arrays.asList(CLASS));
+		Assert.assertFalse(trie.containsAncestor(CLASS));
+		Assert.assertTrue(trie.containsAncestor(CLASS_REFINEMENT));
+		Assert.assertTrue(trie.containsAncestor(INNER_CLASS));
+		Assert.assertTrue(trie.containsAncestor(METHOD));
+		Assert.assertTrue(trie.containsAncestor(METHOD_REFINEMENT));
+		Assert.assertTrue(trie.containsAncestor("org.argouml.x.Y.Inner.Inner2 m()"));
+		Assert.assertFalse(trie.containsAncestor("org.argouml.x.Z m()"));
+		Assert.assertFalse(trie.containsAncestor("org.argouml.x.YY"));
+	}
+
+	@Test
+	public void containsAncestorAtDistanceOne() {
+		TraceTrie trie = new TraceTrie(Arrays.asList(CLASS));
+		// the parent
+		Assert.assertTrue(trie.containsAncestor(CLASS_REFINEMENT, 1));
+		Assert.assertTrue(trie.containsAncestor(INNER_CLASS, 1));
+		Assert.assertTrue(trie.containsAncestor(METHOD, 1));
+		// the grandparent
+		Assert.assertFalse(trie.containsAncestor(METHOD_REFINEMENT, 1));
+		Assert.assertFalse(trie.containsAncestor("org.argouml.x.Y.Inner m()", 1));
+		Assert.assertFalse(trie.containsAncestor(CLASS, 1));
+	}
+
+	@Test
+	public void containsAncestorAtDistanceTwo() {
+		TraceTrie trie = new TraceTrie(Arrays.asList(CLASS));
+		// a method refinement is covered by its declaring class
+		Assert.assertTrue(trie.containsAncestor(METHOD_REFINEMENT, 2));
+		Assert.assertTrue(trie.containsAncestor("org.argouml.x.Y.Inner m()", 2));
+		Assert.assertFalse(trie.containsAncestor("org.argouml.x.Y.Inner.Inner2 m()", 2));
+		Assert.assertTrue(trie.containsAncestor("org.argouml.x.Y.Inner.Inner2 m()", 3));
+		// and by its method
+		trie = new TraceTrie(Arrays.asList(METHOD));
+		Assert.assertTrue(trie.containsAncestor(METHOD_REFINEMENT, 1));
+		Assert.assertTrue(trie.containsAncestor(METHOD_REFINEMENT, 2));
+		Assert.assertFalse(trie.containsAncestor(CLASS_REFINEMENT, 2));
+	}
+
+	@Test
+	public void containsAncestorWithoutDistance() {
+		TraceTrie trie = new TraceTrie(Arrays.asList(CLASS));
+		Assert.assertFalse(trie.containsAncestor(METHOD, 0));
+		Assert.assertFalse(new TraceTrie().containsAncestor(METHOD));
+	}
+}